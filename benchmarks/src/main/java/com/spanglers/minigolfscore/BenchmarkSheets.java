@@ -0,0 +1,61 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.util.Random;
+
+/**
+ * Score sheets for the benchmarks to work on.
+ */
+final class BenchmarkSheets {
+	// Sheet sizes, as "players x holes", from a family outing up to the largest allowed
+	static final String SIZE_SMALL = "2x9";
+	static final String SIZE_CLUB = "4x18";
+	static final String SIZE_LEAGUE = "100x72";
+	static final String SIZE_TOURNAMENT = "5000x500";
+
+	private static final long SEED = 20000613;	// Same sheets on every run
+
+	private BenchmarkSheets() {
+	}
+
+	static int players(String size) {
+		return Integer.parseInt(size.substring(0, size.indexOf('x')));
+	}
+
+	static int holes(String size) {
+		return Integer.parseInt(size.substring(size.indexOf('x') + 1));
+	}
+
+	/**
+	 * Build a sheet of the specified size, with names and par set and most holes played.
+	 */
+	static ScoreData create(String size) {
+		Random r = new Random(SEED);
+		ScoreData data = new ScoreData();
+		data.setDimensions(players(size), holes(size));
+		for (int h = 0; h < data.getHoleCount(); h++)
+			data.setPar(h, 2 + r.nextInt(3));
+		for (int p = 0; p < data.getPlayerCount(); p++) {
+			data.setPlayerName(p, "Player " + (char) ('A' + p % 26) + p);
+			for (int h = 0; h < data.getHoleCount(); h++) {
+				if (r.nextInt(10) < 8)
+					data.setScore(p, h, 1 + r.nextInt(6));
+			}
+		}
+		return data;
+	}
+}
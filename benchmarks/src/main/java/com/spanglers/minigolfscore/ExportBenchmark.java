@@ -0,0 +1,97 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exporting a score card in each format, as sharing it does.  The text format is what used to
+ * be built as the e-mail body.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExportBenchmark {
+	@Param({ BenchmarkSheets.SIZE_SMALL, BenchmarkSheets.SIZE_CLUB, BenchmarkSheets.SIZE_LEAGUE,
+			BenchmarkSheets.SIZE_TOURNAMENT })
+	public String size;
+
+	@Param({ "0", "1", "2", "3" })	// ScoreExporter.FORMAT_*
+	public int format;
+
+	private ScoreData mData;
+	private final CountingWriter mOut = new CountingWriter();
+
+	/**
+	 * Writer which just counts characters, so the benchmark measures formatting rather than
+	 * buffer growth.
+	 */
+	static class CountingWriter extends Writer {
+		long mCount = 0;
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			mCount += len;
+		}
+
+		@Override
+		public void write(int c) {
+			mCount++;
+		}
+
+		@Override
+		public void write(String str) {
+			mCount += str.length();
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		mData = BenchmarkSheets.create(size);
+	}
+
+	@Benchmark
+	public long export() throws IOException {
+		ScoreExporter.write(mData, true, format, mOut);
+		return mOut.mCount;
+	}
+}
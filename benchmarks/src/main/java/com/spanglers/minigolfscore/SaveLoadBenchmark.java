@@ -0,0 +1,87 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing and reading the save file format, in memory so the disk doesn't dominate.  Reading
+ * includes recomputing the running totals and statistics.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveLoadBenchmark {
+	@Param({ BenchmarkSheets.SIZE_SMALL, BenchmarkSheets.SIZE_CLUB, BenchmarkSheets.SIZE_LEAGUE,
+			BenchmarkSheets.SIZE_TOURNAMENT })
+	public String size;
+
+	private ScoreData mData;
+	private byte[] mSaved;		// mData in the save format
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mData = BenchmarkSheets.create(size);
+		mSaved = save(mData);
+	}
+
+	private static byte[] save(ScoreData data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		data.writeSaveData(out);
+		return out.toByteArray();
+	}
+
+	private static ScoreData load(byte[] saved) throws IOException, ClassNotFoundException {
+		ScoreData data = new ScoreData();
+		if (!data.readSaveData(new ByteArrayInputStream(saved)))
+			throw new IOException("Save data wasn't read");
+		return data;
+	}
+
+	@Benchmark
+	public byte[] save() throws IOException {
+		return save(mData);
+	}
+
+	@Benchmark
+	public ScoreData load() throws IOException, ClassNotFoundException {
+		return load(mSaved);
+	}
+
+	@Benchmark
+	public ScoreData roundTrip() throws IOException, ClassNotFoundException {
+		return load(save(mData));
+	}
+}
@@ -0,0 +1,123 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Edits to a score sheet: the work done on every tap.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreDataBenchmark {
+	@Param({ BenchmarkSheets.SIZE_SMALL, BenchmarkSheets.SIZE_CLUB, BenchmarkSheets.SIZE_LEAGUE,
+			BenchmarkSheets.SIZE_TOURNAMENT })
+	public String size;
+
+	private ScoreData mData;
+	private int mPlayers, mHoles;
+	private int mCell = 0;		// Next cell to edit
+	private boolean mGrown = false;	// Did the last setDimensions() add a row and column?
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		mData = BenchmarkSheets.create(size);
+		mPlayers = mData.getPlayerCount();
+		mHoles = mData.getHoleCount();
+	}
+
+	/**
+	 * Walk across the sheet, so edits hit different rows and blocks.
+	 */
+	private int nextCell() {
+		mCell = (mCell + 7919) % (mPlayers * mHoles);
+		return mCell;
+	}
+
+	@Benchmark
+	public void setScore() {
+		int cell = nextCell();
+		int p = cell / mHoles, h = cell % mHoles;
+		mData.setScore(p, h, 1 + (mData.getScore(p, h) % 6));
+	}
+
+	@Benchmark
+	public boolean setScoreThenUndo() {
+		int cell = nextCell();
+		int p = cell / mHoles, h = cell % mHoles;
+		mData.setScore(p, h, 1 + (mData.getScore(p, h) % 6));
+		return mData.undoLast();
+	}
+
+	@Benchmark
+	public void setDimensions() {
+		// Alternate between adding and removing a player and a hole, so the size stays put
+		if (mGrown)
+			mData.setDimensions(mPlayers, mHoles);
+		else
+			mData.setDimensions(Math.min(mPlayers + 1, ScoreData.MAX_PLAYERS),
+					Math.min(mHoles + 1, ScoreData.MAX_HOLES));
+		mGrown = !mGrown;
+	}
+
+	/**
+	 * Read every running total, as drawing the totals column does.
+	 */
+	@Benchmark
+	public void readTotals(Blackhole bh) {
+		for (int p = 0; p < mPlayers; p++) {
+			bh.consume(mData.getTotalStrokes(p));
+			bh.consume(mData.getTotalVsPar(p));
+		}
+		bh.consume(mData.getTotalPar());
+	}
+
+	/**
+	 * Copy the sheet, as every background save does.
+	 */
+	@Benchmark
+	public ScoreData snapshot() {
+		return mData.snapshot();
+	}
+
+	/**
+	 * Rank every player from scratch.
+	 */
+	@Benchmark
+	public int rankPlayers() {
+		Leaderboard l = new Leaderboard(mData, Leaderboard.ORDER_VS_PAR,
+				Leaderboard.TIEBREAK_BACK_NINE);
+		return l.getPlayerAt(0);
+	}
+}
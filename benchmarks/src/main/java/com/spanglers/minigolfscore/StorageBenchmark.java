@@ -0,0 +1,97 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saving and loading through each storage backend, to compare what they add to the cost of the
+ * save format itself (see SaveLoadBenchmark).  The file backends use a temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+	static final String FILENAME = "save.dat";
+
+	@Param({ ScoreStorage.BACKEND_MEMORY, ScoreStorage.BACKEND_STREAM,
+			ScoreStorage.BACKEND_CHANNEL })
+	public String backend;
+
+	@Param({ BenchmarkSheets.SIZE_SMALL, BenchmarkSheets.SIZE_CLUB, BenchmarkSheets.SIZE_LEAGUE })
+	public String size;
+
+	private File mDirectory;		// Directory for the file backends
+	private ScoreStorage mStorage;
+	private ScoreData mData;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mDirectory = Files.createTempDirectory("minigolfscore").toFile();
+		if (ScoreStorage.BACKEND_MEMORY.equals(backend))
+			mStorage = new MemoryStorage();
+		else if (ScoreStorage.BACKEND_CHANNEL.equals(backend))
+			mStorage = new ChannelFileStorage(mDirectory);
+		else
+			mStorage = new StreamFileStorage(mDirectory);
+
+		mData = BenchmarkSheets.create(size);
+		if (!mData.writeToFile(mStorage, FILENAME))
+			throw new IOException("Save file wasn't written");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		File[] files = mDirectory.listFiles();
+		if (files != null) {
+			for (File f : files)
+				f.delete();
+		}
+		mDirectory.delete();
+	}
+
+	@Benchmark
+	public boolean save() {
+		return mData.writeToFile(mStorage, FILENAME);
+	}
+
+	@Benchmark
+	public ScoreData load() {
+		ScoreData data = new ScoreData();
+		data.loadFromFile(mStorage, FILENAME);
+		return data;
+	}
+}
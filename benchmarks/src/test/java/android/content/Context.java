@@ -0,0 +1,28 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.content;
+
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+
+/**
+ * Framework stand-in for the tests, with just what a view needs to be constructed.
+ */
+public class Context {
+	public TypedArray obtainStyledAttributes(AttributeSet set, int[] attrs) {
+		return new TypedArray();
+	}
+}
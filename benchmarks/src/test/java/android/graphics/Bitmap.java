@@ -0,0 +1,56 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/**
+ * Framework stand-in for the tests.  There are no pixels; only the size is kept.
+ */
+public final class Bitmap {
+	public enum Config {
+		RGB_565, ARGB_8888
+	}
+
+	private final int mWidth;
+	private final int mHeight;
+	private boolean mRecycled = false;
+
+	private Bitmap(int width, int height) {
+		mWidth = width;
+		mHeight = height;
+	}
+
+	public static Bitmap createBitmap(int width, int height, Config config) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("width and height must be > 0");
+		return new Bitmap(width, height);
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	public void recycle() {
+		mRecycled = true;
+	}
+
+	public boolean isRecycled() {
+		return mRecycled;
+	}
+}
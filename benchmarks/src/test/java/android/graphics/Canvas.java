@@ -0,0 +1,127 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/**
+ * Framework stand-in for the tests: a canvas which records how many of each operation it was
+ * asked for, instead of drawing.  Recording uses only counters, so it allocates nothing itself.
+ * Like the real class, it refuses to draw with a recycled bitmap or to restore more than it
+ * saved.
+ */
+public class Canvas {
+	private Bitmap mBitmap;
+	private int mSaveCount = 1;
+
+	// Operations recorded since the last reset()
+	private int mBitmaps;
+	private int mTexts;
+	private int mLines;
+	private int mRects;
+
+	public Canvas() {
+	}
+
+	public Canvas(Bitmap bitmap) {
+		setBitmap(bitmap);
+	}
+
+	public void setBitmap(Bitmap bitmap) {
+		checkBitmap(bitmap);
+		mBitmap = bitmap;
+		mSaveCount = 1;
+	}
+
+	public int save() {
+		return mSaveCount++;
+	}
+
+	public void restore() {
+		if (mSaveCount <= 1)
+			throw new IllegalStateException("Underflow in restore");
+		mSaveCount--;
+	}
+
+	public int getSaveCount() {
+		return mSaveCount;
+	}
+
+	public void translate(float dx, float dy) {
+	}
+
+	public boolean clipRect(Rect rect) {
+		return !(rect.left >= rect.right || rect.top >= rect.bottom);
+	}
+
+	public boolean clipRect(int left, int top, int right, int bottom) {
+		return !(left >= right || top >= bottom);
+	}
+
+	public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+		checkBitmap(bitmap);
+		mBitmaps++;
+	}
+
+	public void drawText(String text, float x, float y, Paint paint) {
+		checkBitmap(mBitmap);
+		mTexts++;
+	}
+
+	public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+		checkBitmap(mBitmap);
+		mLines++;
+	}
+
+	public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+		checkBitmap(mBitmap);
+		mRects++;
+	}
+
+	private static void checkBitmap(Bitmap bitmap) {
+		if (bitmap != null && bitmap.isRecycled())
+			throw new RuntimeException("Canvas: trying to use a recycled bitmap");
+	}
+
+	/**
+	 * Forget the operations recorded so far.
+	 */
+	public void reset() {
+		mBitmaps = 0;
+		mTexts = 0;
+		mLines = 0;
+		mRects = 0;
+	}
+
+	/**
+	 * @return Number of bitmaps drawn since the last reset().
+	 */
+	public int getBitmapCount() {
+		return mBitmaps;
+	}
+
+	/**
+	 * @return Number of strings drawn since the last reset().
+	 */
+	public int getTextCount() {
+		return mTexts;
+	}
+
+	/**
+	 * @return Number of lines and rectangles drawn since the last reset().
+	 */
+	public int getShapeCount() {
+		return mLines + mRects;
+	}
+}
@@ -0,0 +1,112 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/**
+ * Framework stand-in for the tests.  Text is measured as if every character were the same
+ * width, which is enough for laying out a sheet.
+ */
+public class Paint {
+	public static final int ANTI_ALIAS_FLAG = 0x01;
+
+	private static final float CHAR_WIDTH = 0.6f;	// Width of a character, per unit of size
+	private static final float ASCENT = -0.9f;		// Ascent, per unit of size
+	private static final float DESCENT = 0.25f;		// Descent, per unit of size
+
+	public enum Align {
+		LEFT, CENTER, RIGHT
+	}
+
+	public enum Style {
+		FILL, STROKE, FILL_AND_STROKE
+	}
+
+	private int mFlags = 0;
+	private int mColor = 0xFF000000;
+	private float mTextSize = 12;
+	private Typeface mTypeface = null;
+	private Align mTextAlign = Align.LEFT;
+	private Style mStyle = Style.FILL;
+
+	public void setAntiAlias(boolean aa) {
+		mFlags = aa ? mFlags | ANTI_ALIAS_FLAG : mFlags & ~ANTI_ALIAS_FLAG;
+	}
+
+	public int getFlags() {
+		return mFlags;
+	}
+
+	public void setColor(int color) {
+		mColor = color;
+	}
+
+	public int getColor() {
+		return mColor;
+	}
+
+	public void setTextSize(float textSize) {
+		mTextSize = textSize;
+	}
+
+	public float getTextSize() {
+		return mTextSize;
+	}
+
+	public float getTextScaleX() {
+		return 1;
+	}
+
+	public float getTextSkewX() {
+		return 0;
+	}
+
+	public Typeface setTypeface(Typeface typeface) {
+		mTypeface = typeface;
+		return typeface;
+	}
+
+	public Typeface getTypeface() {
+		return mTypeface;
+	}
+
+	public void setTextAlign(Align align) {
+		mTextAlign = align;
+	}
+
+	public Align getTextAlign() {
+		return mTextAlign;
+	}
+
+	public void setStyle(Style style) {
+		mStyle = style;
+	}
+
+	public Style getStyle() {
+		return mStyle;
+	}
+
+	public float measureText(String text) {
+		return text.length() * CHAR_WIDTH * mTextSize;
+	}
+
+	public float ascent() {
+		return ASCENT * mTextSize;
+	}
+
+	public float descent() {
+		return DESCENT * mTextSize;
+	}
+}
@@ -0,0 +1,70 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+/**
+ * Framework stand-in for the tests.  Gestures aren't recognized; the listener is kept so that
+ * views can be constructed.
+ */
+public class GestureDetector {
+	public interface OnGestureListener {
+		boolean onDown(MotionEvent e);
+
+		void onShowPress(MotionEvent e);
+
+		boolean onSingleTapUp(MotionEvent e);
+
+		boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY);
+
+		void onLongPress(MotionEvent e);
+
+		boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY);
+	}
+
+	public static class SimpleOnGestureListener implements OnGestureListener {
+		public boolean onDown(MotionEvent e) {
+			return false;
+		}
+
+		public void onShowPress(MotionEvent e) {
+		}
+
+		public boolean onSingleTapUp(MotionEvent e) {
+			return false;
+		}
+
+		public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+			return false;
+		}
+
+		public void onLongPress(MotionEvent e) {
+		}
+
+		public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+			return false;
+		}
+	}
+
+	private final OnGestureListener mListener;
+
+	public GestureDetector(OnGestureListener listener) {
+		mListener = listener;
+	}
+
+	public boolean onTouchEvent(MotionEvent ev) {
+		return false;
+	}
+}
@@ -0,0 +1,31 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+/**
+ * Framework stand-in for the tests.
+ */
+public class KeyEvent {
+	public static final int KEYCODE_DPAD_UP = 19;
+	public static final int KEYCODE_DPAD_DOWN = 20;
+	public static final int KEYCODE_DPAD_LEFT = 21;
+	public static final int KEYCODE_DPAD_RIGHT = 22;
+	public static final int KEYCODE_DPAD_CENTER = 23;
+
+	public int getRepeatCount() {
+		return 0;
+	}
+}
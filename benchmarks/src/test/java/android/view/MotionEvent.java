@@ -0,0 +1,50 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+/**
+ * Framework stand-in for the tests: a single touch at a fixed position.
+ */
+public final class MotionEvent {
+	public static final int ACTION_DOWN = 0;
+	public static final int ACTION_UP = 1;
+	public static final int ACTION_MOVE = 2;
+
+	private final int mAction;
+	private final float mX, mY;
+
+	public MotionEvent(int action, float x, float y) {
+		mAction = action;
+		mX = x;
+		mY = y;
+	}
+
+	public int getAction() {
+		return mAction;
+	}
+
+	public float getX() {
+		return mX;
+	}
+
+	public float getY() {
+		return mY;
+	}
+
+	public int getHistorySize() {
+		return 0;
+	}
+}
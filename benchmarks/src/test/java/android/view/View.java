@@ -0,0 +1,238 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+
+/**
+ * Framework stand-in for the tests.  Keeps the geometry, padding, scroll position and focus
+ * that a view works from, and calls the same hooks as the real class when they change.
+ * Nothing is drawn unless the test calls onDraw() itself.
+ */
+public class View {
+	public static final int SCROLLBARS_INSIDE_INSET = 0x01000000;
+
+	public static class MeasureSpec {
+		private static final int MODE_SHIFT = 30;
+		private static final int MODE_MASK = 0x3 << MODE_SHIFT;
+
+		public static final int UNSPECIFIED = 0 << MODE_SHIFT;
+		public static final int EXACTLY = 1 << MODE_SHIFT;
+		public static final int AT_MOST = 2 << MODE_SHIFT;
+
+		public static int makeMeasureSpec(int size, int mode) {
+			return (size & ~MODE_MASK) | (mode & MODE_MASK);
+		}
+
+		public static int getMode(int measureSpec) {
+			return measureSpec & MODE_MASK;
+		}
+
+		public static int getSize(int measureSpec) {
+			return measureSpec & ~MODE_MASK;
+		}
+	}
+
+	private final Context mContext;
+	private int mLeft, mTop, mRight, mBottom;
+	private int mPaddingLeft, mPaddingTop, mPaddingRight, mPaddingBottom;
+	private int mScrollX, mScrollY;
+	private int mMeasuredWidth, mMeasuredHeight;
+	private boolean mFocused = false;
+
+	public View(Context context) {
+		mContext = context;
+	}
+
+	public View(Context context, AttributeSet attrs) {
+		mContext = context;
+	}
+
+	public Context getContext() {
+		return mContext;
+	}
+
+	// Layout
+
+	public final void measure(int widthMeasureSpec, int heightMeasureSpec) {
+		onMeasure(widthMeasureSpec, heightMeasureSpec);
+	}
+
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec),
+				MeasureSpec.getSize(heightMeasureSpec));
+	}
+
+	protected final void setMeasuredDimension(int measuredWidth, int measuredHeight) {
+		mMeasuredWidth = measuredWidth;
+		mMeasuredHeight = measuredHeight;
+	}
+
+	public final int getMeasuredWidth() {
+		return mMeasuredWidth;
+	}
+
+	public final int getMeasuredHeight() {
+		return mMeasuredHeight;
+	}
+
+	public void layout(int l, int t, int r, int b) {
+		int oldWidth = getWidth();
+		int oldHeight = getHeight();
+		mLeft = l;
+		mTop = t;
+		mRight = r;
+		mBottom = b;
+		if (getWidth() != oldWidth || getHeight() != oldHeight)
+			onSizeChanged(getWidth(), getHeight(), oldWidth, oldHeight);
+	}
+
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+	}
+
+	public void requestLayout() {
+	}
+
+	public final int getWidth() {
+		return mRight - mLeft;
+	}
+
+	public final int getHeight() {
+		return mBottom - mTop;
+	}
+
+	public void setPadding(int left, int top, int right, int bottom) {
+		mPaddingLeft = left;
+		mPaddingTop = top;
+		mPaddingRight = right;
+		mPaddingBottom = bottom;
+	}
+
+	public int getPaddingLeft() {
+		return mPaddingLeft;
+	}
+
+	public int getPaddingTop() {
+		return mPaddingTop;
+	}
+
+	public int getPaddingRight() {
+		return mPaddingRight;
+	}
+
+	public int getPaddingBottom() {
+		return mPaddingBottom;
+	}
+
+	// Scrolling
+
+	public void scrollTo(int x, int y) {
+		mScrollX = x;
+		mScrollY = y;
+	}
+
+	public void scrollBy(int x, int y) {
+		scrollTo(mScrollX + x, mScrollY + y);
+	}
+
+	public final int getScrollX() {
+		return mScrollX;
+	}
+
+	public final int getScrollY() {
+		return mScrollY;
+	}
+
+	public void setScrollBarStyle(int style) {
+	}
+
+	public void setHorizontalScrollBarEnabled(boolean enabled) {
+	}
+
+	public void setVerticalScrollBarEnabled(boolean enabled) {
+	}
+
+	protected int computeHorizontalScrollRange() {
+		return getWidth();
+	}
+
+	protected int computeHorizontalScrollExtent() {
+		return getWidth();
+	}
+
+	protected int computeVerticalScrollRange() {
+		return getHeight();
+	}
+
+	protected int computeVerticalScrollExtent() {
+		return getHeight();
+	}
+
+	// Drawing
+
+	public void setWillNotDraw(boolean willNotDraw) {
+	}
+
+	public void invalidate() {
+	}
+
+	public void invalidate(int l, int t, int r, int b) {
+	}
+
+	protected void onDraw(Canvas canvas) {
+	}
+
+	protected void onDetachedFromWindow() {
+	}
+
+	// Focus and input
+
+	public void setFocusable(boolean focusable) {
+	}
+
+	public void setFocusableInTouchMode(boolean focusableInTouchMode) {
+	}
+
+	public boolean hasFocus() {
+		return mFocused;
+	}
+
+	public final boolean requestFocus() {
+		if (!mFocused) {
+			mFocused = true;
+			onFocusChanged(true, 0, null);
+		}
+		return true;
+	}
+
+	protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect) {
+	}
+
+	public boolean onTouchEvent(MotionEvent event) {
+		return false;
+	}
+
+	public boolean onTrackballEvent(MotionEvent event) {
+		return false;
+	}
+
+	public boolean onKeyDown(int keyCode, KeyEvent event) {
+		return false;
+	}
+}
@@ -0,0 +1,27 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spanglers.minigolfscore;
+
+/**
+ * Stand-in for the generated resource class, which only the Android build produces.  SheetView
+ * reads no attributes yet, so an empty set is all it needs.
+ */
+public final class R {
+	public static final class styleable {
+		public static final int[] SheetView = {};
+	}
+}
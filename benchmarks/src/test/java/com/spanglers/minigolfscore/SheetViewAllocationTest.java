@@ -0,0 +1,155 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spanglers.minigolfscore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View.MeasureSpec;
+
+/**
+ * Holds SheetView.onDraw() to its allocation budget for a 20 player, 90 hole sheet: no bytes at
+ * all per frame, once the tiles in view have been rendered.  That includes frames which
+ * repaint tiles after an edit, since they reuse the tiles' bitmaps.
+ *
+ * Allocation is counted with the JVM's count of bytes allocated by the current thread, around
+ * onDraw() alone; the edits which set up a frame may allocate.  The build runs this with the
+ * JIT off, so that the count is exact.  Drawing goes to a recording canvas, which is also
+ * checked to make sure the frame did draw something.
+ */
+public class SheetViewAllocationTest {
+	private static final String SIZE = "20x90";
+	private static final int SCREEN_WIDTH = 480;
+	private static final int SCREEN_HEIGHT = 800;
+	private static final int WARMUP_FRAMES = 3;	// Render the tiles and load the classes
+
+	private ScoreData mData;
+	private SheetView mView;
+	private Canvas mCanvas;
+	private com.sun.management.ThreadMXBean mThreads;
+	private long mThreadId;
+	private long mOverhead;		// Bytes counted when measuring nothing
+
+	@Before
+	public void setUp() {
+		mData = BenchmarkSheets.create(SIZE);
+		mView = new SheetView(new Context());
+		mView.setScoreData(mData);
+		mView.measure(MeasureSpec.makeMeasureSpec(SCREEN_WIDTH, MeasureSpec.EXACTLY),
+				MeasureSpec.makeMeasureSpec(SCREEN_HEIGHT, MeasureSpec.EXACTLY));
+		mView.layout(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+		mCanvas = new Canvas(Bitmap.createBitmap(SCREEN_WIDTH, SCREEN_HEIGHT,
+				Bitmap.Config.ARGB_8888));
+
+		mThreads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		mThreads.setThreadAllocatedMemoryEnabled(true);
+		mThreadId = Thread.currentThread().getId();
+		for (int i = 0; i < 2; i++) {
+			long before = mThreads.getThreadAllocatedBytes(mThreadId);
+			mOverhead = mThreads.getThreadAllocatedBytes(mThreadId) - before;
+		}
+
+		for (int i = 0; i < WARMUP_FRAMES; i++)
+			mView.onDraw(mCanvas);
+	}
+
+	/**
+	 * Draw one frame.
+	 *
+	 * @return Bytes allocated while drawing it.
+	 */
+	private long drawFrame() {
+		mCanvas.reset();
+		long before = mThreads.getThreadAllocatedBytes(mThreadId);
+		mView.onDraw(mCanvas);
+		long bytes = mThreads.getThreadAllocatedBytes(mThreadId) - before - mOverhead;
+		assertTrue("frame drew no tiles", mCanvas.getBitmapCount() > 0);
+		assertEquals("frame left the canvas saved", 1, mCanvas.getSaveCount());
+		return bytes;
+	}
+
+	/**
+	 * Select the cell in a corner of the sheet, which scrolls it into view.
+	 */
+	private void selectCorner(boolean last) {
+		mView.setSelectedPlayer(last ? mData.getPlayerCount() - 1 : 0);
+		mView.setSelectedHole(last ? mData.getHoleCount() - 1 : 0);
+	}
+
+	@Test
+	public void cachedFrameAllocatesNothing() {
+		assertEquals(0, drawFrame());
+		assertTrue("frame drew no header text", mCanvas.getTextCount() > 0);
+	}
+
+	@Test
+	public void scrolledFrameAllocatesNothing() {
+		// Render the far corner, then scroll back and forth between the two
+		selectCorner(true);
+		mView.onDraw(mCanvas);
+		selectCorner(false);
+		assertEquals(0, drawFrame());
+		selectCorner(true);
+		assertEquals(0, drawFrame());
+	}
+
+	@Test
+	public void editedFrameAllocatesNothing() {
+		for (int score = 1; score <= 7; score++) {
+			mData.setScore(0, 0, score);
+			assertEquals("score " + score, 0, drawFrame());
+		}
+		mData.setPar(0, 5);
+		assertEquals(0, drawFrame());
+	}
+
+	@Test
+	public void relativeFrameAllocatesNothing() {
+		mView.setScoreRelative(true);
+		assertEquals(0, drawFrame());
+		for (int score = 1; score <= 7; score++) {
+			mData.setScore(1, 1, score);
+			assertEquals("score " + score, 0, drawFrame());
+		}
+	}
+
+	@Test
+	public void largeTotalParAllocatesNothing() {
+		// Past the numbers ScoreText caches, the view keeps the text it last drew
+		for (int h = 0; h < mData.getHoleCount(); h++)
+			mData.setPar(h, 20);
+		mView.onDraw(mCanvas);
+		assertEquals(0, drawFrame());
+	}
+
+	@Test
+	public void selectionFrameAllocatesNothing() {
+		mView.setSelectedPlayer(3);
+		mView.setSelectedHole(4);
+		assertEquals(0, drawFrame());
+		mView.setSelectedHole(5);
+		assertEquals(0, drawFrame());
+	}
+}
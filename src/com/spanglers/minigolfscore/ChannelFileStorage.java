@@ -0,0 +1,99 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Storage which keeps files in a directory and moves each one whole through a FileChannel.  A
+ * file is read with one channel read into a buffer sized from the file, and written with one
+ * channel write when its stream is closed, so the number of system calls doesn't depend on the
+ * size of the file.  Save files are small enough to hold in memory.
+ *
+ * A replaced file is written whole to a temporary file, which is then renamed over it; see
+ * FileReplacer.  Appends go straight to the end of the file.
+ */
+class ChannelFileStorage implements ScoreStorage {
+	private final File mDirectory;		// Directory holding the files
+
+	ChannelFileStorage(File directory) {
+		mDirectory = directory;
+	}
+
+	public InputStream openInput(String name) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(getFile(name), "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer b = ByteBuffer.allocate((int) channel.size());
+			while (b.hasRemaining() && channel.read(b) >= 0) {
+			}
+			return new ByteArrayInputStream(b.array(), 0, b.position());
+		} finally {
+			raf.close();
+		}
+	}
+
+	public OutputStream openOutput(final String name, final boolean append) {
+		return new ByteArrayOutputStream() {
+			private boolean mClosed = false;
+
+			@Override
+			public void close() throws IOException {
+				if (mClosed)
+					return;
+				mClosed = true;
+				File file = getFile(name);
+				RandomAccessFile raf = new RandomAccessFile(
+						append ? file : FileReplacer.tempFileFor(file), "rw");
+				try {
+					FileChannel channel = raf.getChannel();
+					long start = append ? channel.size() : 0;
+					ByteBuffer b = ByteBuffer.wrap(buf, 0, count);
+					while (b.hasRemaining())
+						channel.write(b, start + b.position());
+					if (!append) {
+						channel.truncate(count);
+						channel.force(true);
+					}
+				} finally {
+					raf.close();
+				}
+				if (!append)
+					FileReplacer.commit(file);
+			}
+		};
+	}
+
+	public long lastModified(String name) {
+		return getFile(name).lastModified();
+	}
+
+	public long length(String name) {
+		return getFile(name).length();
+	}
+
+	public File getFile(String name) {
+		return new File(mDirectory, name);
+	}
+}
@@ -0,0 +1,52 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replaces files on disk so that dying part way through leaves either the old contents or all
+ * of the new ones, never a mixture or an empty file.  The new contents are written to a
+ * temporary file in the same directory and forced to the disk, then the temporary file is
+ * renamed over the old one, which is atomic within a filesystem.
+ */
+final class FileReplacer {
+	static final String TEMP_SUFFIX = ".new";	// Appended to a filename to get its temporary file
+
+	private FileReplacer() {
+	}
+
+	/**
+	 * @return The temporary file to write a replacement for a file into.  Any leftover from an
+	 *         earlier attempt is overwritten.
+	 */
+	static File tempFileFor(File file) {
+		return new File(file.getPath() + TEMP_SUFFIX);
+	}
+
+	/**
+	 * Rename the temporary file, which must already have been forced to the disk, over the file
+	 * it replaces.
+	 */
+	static void commit(File file) throws IOException {
+		File temp = tempFileFor(file);
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("Unable to replace " + file);
+		}
+	}
+}
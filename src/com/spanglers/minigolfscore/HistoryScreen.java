@@ -0,0 +1,149 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+/**
+ * Lists the archived rounds, newest first.  Summaries are read from the archive's index a page
+ * at a time as the list scrolls, so the list opens at once however many rounds there are.  The
+ * rounds are counted on the save thread, so the count includes a round which was just cleared
+ * without waiting for it here.
+ */
+public class HistoryScreen extends Activity {
+	static final int PAGE_SIZE = 50;		// Rounds read from the index at a time
+	static final int PAGES_CACHED = 8;		// Pages kept in memory
+
+	private RoundArchive mArchive;
+	private int mCount = 0;		// Number of rounds when the list was opened; 0 until counted
+	private RoundAdapter mAdapter;
+	private final DateFormat mDateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT,
+			DateFormat.SHORT);
+
+	// Pages of summaries which have been read, by page number, least recently used first
+	private final LinkedHashMap<Integer, RoundArchive.Summary[]> mPages =
+			new LinkedHashMap<Integer, RoundArchive.Summary[]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, RoundArchive.Summary[]> eldest) {
+			return size() > PAGES_CACHED;
+		}
+	};
+
+    /** Called when the activity is first created. */
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        mArchive = new RoundArchive(this);
+        ListView lv = new ListView(this);
+        mAdapter = new RoundAdapter();
+        lv.setAdapter(mAdapter);
+        setContentView(lv);
+
+        // Count the rounds after any round which was just cleared has been archived
+        ScoreSaver.run(new Runnable() {
+        	public void run() {
+        		final int count = mArchive.getCount();
+        		runOnUiThread(new Runnable() {
+        			public void run() {
+        				mCount = count;
+        				mAdapter.notifyDataSetChanged();
+        			}
+        		});
+        	}
+        });
+    }
+
+    /**
+     * @return Summary of the round at a position in the archive, or null if it can't be read.
+     */
+    private RoundArchive.Summary getSummary(int index) {
+    	Integer page = index / PAGE_SIZE;
+    	RoundArchive.Summary[] summaries = mPages.get(page);
+    	if (summaries == null) {
+    		try {
+    			summaries = mArchive.readPage(page * PAGE_SIZE, PAGE_SIZE);
+    		} catch (IOException e) {
+    			summaries = new RoundArchive.Summary[0];
+    		}
+    		mPages.put(page, summaries);
+    	}
+    	int i = index - page * PAGE_SIZE;
+    	return i < summaries.length ? summaries[i] : null;
+    }
+
+    /**
+     * Adapter which shows one round per row: when and where it was played, then the leaders.
+     */
+    private class RoundAdapter extends BaseAdapter {
+		public int getCount() {
+			return mCount;
+		}
+
+		public Object getItem(int position) {
+			return getSummary(mCount - 1 - position);	// Newest first
+		}
+
+		public long getItemId(int position) {
+			return mCount - 1 - position;
+		}
+
+		public View getView(int position, View convertView, ViewGroup parent) {
+			View v = convertView;
+			if (v == null)
+				v = LayoutInflater.from(HistoryScreen.this).inflate(
+						android.R.layout.simple_list_item_2, parent, false);
+			TextView title = (TextView) v.findViewById(android.R.id.text1);
+			TextView leaders = (TextView) v.findViewById(android.R.id.text2);
+
+			RoundArchive.Summary s = (RoundArchive.Summary) getItem(position);
+			if (s == null) {
+				title.setText("Round can't be read");
+				leaders.setText("");
+				return v;
+			}
+			title.setText(mDateFormat.format(new Date(s.mDate)) + " - " + s.mHoleCount
+					+ " holes, par " + s.mTotalPar);
+
+			StringBuilder b = new StringBuilder();
+			for (int i = 0; i < s.mNames.length; i++) {
+				if (i > 0)
+					b.append(", ");
+				b.append(s.mNames[i]).append(' ').append(ScoreText.number(s.mTotalStrokes[i]));
+				b.append(" (").append(ScoreText.signed(s.mTotalVsPar[i])).append(')');
+			}
+			if (s.mPlayerCount > s.mNames.length)
+				b.append(", and ").append(s.mPlayerCount - s.mNames.length).append(" more");
+			leaders.setText(b);
+			return v;
+		}
+    }
+}
@@ -0,0 +1,376 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.util.Random;
+
+/**
+ * Players of a score sheet in order of standing.  The leaderboard doesn't listen to the data
+ * itself; whoever owns it keeps it up to date by passing it the data's changes, before acting
+ * on them, so the standings are never behind when it looks at them.
+ *
+ * Players are ranked on the holes they've played so far, by total strokes or by total relative
+ * to par, lowest first.  Players who haven't played a hole rank after everyone who has.  Ties
+ * are broken by a configurable countback, then by entry order, so every player has a distinct
+ * rank.
+ *
+ * The standings are a treap (a binary search tree balanced by random priorities) whose nodes
+ * are player indices, with the links kept in arrays.  Each node also holds the size of its
+ * subtree, so a player's rank, or the player at a rank, can be found in O(log players).
+ * Changing a score moves just that player, also in O(log players).  Changing par, the
+ * dimensions or the order rebuilds the whole tree.
+ */
+class Leaderboard implements ScoreData.OnChangeListener {
+	// Orders
+	static final int ORDER_STROKES = 0;		// Fewest total strokes first
+	static final int ORDER_VS_PAR = 1;		// Lowest total relative to par first
+
+	// Tie-breaks
+	static final int TIEBREAK_NONE = 0;			// Entry order
+	static final int TIEBREAK_BACK_NINE = 1;	// Lowest relative to par over the last 9 holes
+	static final int TIEBREAK_LAST_HOLE = 2;	// Lowest relative to par on the last hole
+
+	private static final int NIL = -1;			// No node
+	private static final int BACK_NINE = 9;		// Holes in the back nine
+	private static final int UNPLAYED = Integer.MAX_VALUE;	// Tie-break key if the hole wasn't played
+
+	/**
+	 * Interface for listeners to be told when players change places.
+	 */
+	interface OnRanksChangedListener {
+		/**
+		 * Called when the players at a range of ranks have changed.  Players outside the range
+		 * have kept their ranks.
+		 *
+		 * @param firstRank, lastRank
+		 *            Range of ranks which changed, inclusive.
+		 */
+		void onRanksChanged(int firstRank, int lastRank);
+	}
+
+	private final ScoreData mData;		// Data being ranked
+	private int mOrder;					// ORDER_*
+	private int mTiebreak;				// TIEBREAK_*
+	private OnRanksChangedListener mListener;
+
+	// Tree, indexed by player
+	private int mRoot = NIL;
+	private int mCount = 0;			// Number of players in the tree
+	private int[] mLeft = new int[0];
+	private int[] mRight = new int[0];
+	private int[] mSize = new int[0];		// Number of nodes in the subtree
+	private int[] mPriority = new int[0];	// Heap priority; parents have higher priority
+	private final Random mRandom = new Random(20000615);
+
+	// Sort keys, indexed by player.  A player's keys only change while it's out of the tree.
+	private boolean[] mPlayed = new boolean[0];	// Has played at least one hole
+	private int[] mKey = new int[0];			// Total being ranked on
+	private int[] mTieKey = new int[0];			// Countback total
+
+	/**
+	 * Constructor.  Ranks the players as the data stands now.
+	 *
+	 * @param order
+	 *            One of the ORDER_* constants.
+	 * @param tiebreak
+	 *            One of the TIEBREAK_* constants.
+	 */
+	Leaderboard(ScoreData data, int order, int tiebreak) {
+		mData = data;
+		mOrder = order;
+		mTiebreak = tiebreak;
+		rebuild();
+	}
+
+	void setOnRanksChangedListener(OnRanksChangedListener listener) {
+		mListener = listener;
+	}
+
+	/**
+	 * Change how players are ordered.
+	 */
+	void setOrder(int order, int tiebreak) {
+		if (order == mOrder && tiebreak == mTiebreak)
+			return;
+		mOrder = order;
+		mTiebreak = tiebreak;
+		rebuild();
+		notifyRanksChanged(0, mCount - 1);
+	}
+
+	int getOrder() {
+		return mOrder;
+	}
+
+	int getTiebreak() {
+		return mTiebreak;
+	}
+
+	/**
+	 * @return Number of players ranked.
+	 */
+	int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return Rank of a player, where 0 is the leader.
+	 */
+	int getRank(int player) {
+		int rank = 0;
+		int t = mRoot;
+		while (t != player) {
+			if (ranksBefore(player, t)) {
+				t = mLeft[t];
+			} else {
+				rank += size(mLeft[t]) + 1;
+				t = mRight[t];
+			}
+		}
+		return rank + size(mLeft[player]);
+	}
+
+	/**
+	 * @return Player at a rank, where 0 is the leader.
+	 */
+	int getPlayerAt(int rank) {
+		int t = mRoot;
+		while (true) {
+			int leftSize = size(mLeft[t]);
+			if (rank < leftSize) {
+				t = mLeft[t];
+			} else if (rank == leftSize) {
+				return t;
+			} else {
+				rank -= leftSize + 1;
+				t = mRight[t];
+			}
+		}
+	}
+
+	/**
+	 * Get the leading players.
+	 *
+	 * @param dst
+	 *            Filled in with players in order of rank, leader first.
+	 * @param k
+	 *            Number of players to get.
+	 * @return Number of players filled in; less than k if there aren't that many.
+	 */
+	int getTop(int[] dst, int k) {
+		k = Math.min(k, mCount);
+		for (int rank = 0; rank < k; rank++)
+			dst[rank] = getPlayerAt(rank);
+		return k;
+	}
+
+	/* ScoreData.OnChangeListener */
+	public void onScoreChanged(int player, int hole) {
+		int oldRank = getRank(player);
+		mRoot = remove(mRoot, player);
+		computeKeys(player);
+		mRoot = insert(mRoot, player);
+		int newRank = getRank(player);
+		if (newRank != oldRank)
+			notifyRanksChanged(Math.min(oldRank, newRank), Math.max(oldRank, newRank));
+	}
+
+	public void onParChanged(int hole) {
+		// Shifts the total relative to par of everyone who has played the hole
+		int holes = mData.getHoleCount();
+		if (mOrder == ORDER_VS_PAR
+				|| (mTiebreak == TIEBREAK_BACK_NINE && hole >= holes - BACK_NINE)
+				|| (mTiebreak == TIEBREAK_LAST_HOLE && hole == holes - 1)) {
+			rebuild();
+			notifyRanksChanged(0, mCount - 1);
+		}
+	}
+
+	public void onPlayerNameChanged(int player) {
+		// Names don't affect standings
+	}
+
+	public void onSheetChanged() {
+		rebuild();
+		notifyRanksChanged(0, mCount - 1);
+	}
+
+	private void notifyRanksChanged(int firstRank, int lastRank) {
+		if (mListener != null && lastRank >= firstRank)
+			mListener.onRanksChanged(firstRank, lastRank);
+	}
+
+	/**
+	 * Rank all players from scratch.
+	 */
+	private void rebuild() {
+		int players = mData.getPlayerCount();
+		if (players > mLeft.length) {
+			mLeft = new int[players];
+			mRight = new int[players];
+			mSize = new int[players];
+			mPriority = new int[players];
+			mPlayed = new boolean[players];
+			mKey = new int[players];
+			mTieKey = new int[players];
+			for (int p = 0; p < players; p++)
+				mPriority[p] = mRandom.nextInt();
+		}
+
+		mRoot = NIL;
+		mCount = players;
+		for (int p = 0; p < players; p++) {
+			computeKeys(p);
+			mRoot = insert(mRoot, p);
+		}
+	}
+
+	/**
+	 * Compute a player's sort keys from the data.  The player must not be in the tree.
+	 */
+	private void computeKeys(int player) {
+		mPlayed[player] = mData.getHolesPlayed(player) > 0;
+		mKey[player] = (mOrder == ORDER_STROKES) ? mData.getTotalStrokes(player)
+				: mData.getTotalVsPar(player);
+
+		int holes = mData.getHoleCount();
+		switch (mTiebreak) {
+		case TIEBREAK_BACK_NINE: {
+			int vsPar = 0;
+			for (int h = Math.max(0, holes - BACK_NINE); h < holes; h++) {
+				int score = mData.getScore(player, h);
+				if (score > 0)
+					vsPar += score - mData.getPar(h);
+			}
+			mTieKey[player] = vsPar;
+			break;
+		}
+		case TIEBREAK_LAST_HOLE: {
+			int score = mData.getScore(player, holes - 1);
+			mTieKey[player] = (score > 0) ? score - mData.getPar(holes - 1) : UNPLAYED;
+			break;
+		}
+		default:
+			mTieKey[player] = 0;
+		}
+	}
+
+	/**
+	 * @return true if player a ranks ahead of player b.
+	 */
+	private boolean ranksBefore(int a, int b) {
+		if (mPlayed[a] != mPlayed[b])
+			return mPlayed[a];
+		if (mKey[a] != mKey[b])
+			return mKey[a] < mKey[b];
+		if (mTieKey[a] != mTieKey[b])
+			return mTieKey[a] < mTieKey[b];
+		return a < b;
+	}
+
+	private int size(int t) {
+		return (t == NIL) ? 0 : mSize[t];
+	}
+
+	/**
+	 * Insert a player into a subtree.
+	 *
+	 * @return New root of the subtree.
+	 */
+	private int insert(int t, int player) {
+		if (t == NIL) {
+			mLeft[player] = NIL;
+			mRight[player] = NIL;
+			mSize[player] = 1;
+			return player;
+		}
+		mSize[t]++;
+		if (ranksBefore(player, t)) {
+			mLeft[t] = insert(mLeft[t], player);
+			if (mPriority[mLeft[t]] > mPriority[t])
+				t = rotateRight(t);
+		} else {
+			mRight[t] = insert(mRight[t], player);
+			if (mPriority[mRight[t]] > mPriority[t])
+				t = rotateLeft(t);
+		}
+		return t;
+	}
+
+	/**
+	 * Remove a player from a subtree which contains it.
+	 *
+	 * @return New root of the subtree.
+	 */
+	private int remove(int t, int player) {
+		if (t == player)
+			return merge(mLeft[t], mRight[t]);
+		mSize[t]--;
+		if (ranksBefore(player, t))
+			mLeft[t] = remove(mLeft[t], player);
+		else
+			mRight[t] = remove(mRight[t], player);
+		return t;
+	}
+
+	/**
+	 * Join two subtrees, where everyone in the first ranks ahead of everyone in the second.
+	 *
+	 * @return Root of the joined tree.
+	 */
+	private int merge(int a, int b) {
+		if (a == NIL)
+			return b;
+		if (b == NIL)
+			return a;
+		if (mPriority[a] > mPriority[b]) {
+			mRight[a] = merge(mRight[a], b);
+			mSize[a] = 1 + size(mLeft[a]) + size(mRight[a]);
+			return a;
+		}
+		mLeft[b] = merge(a, mLeft[b]);
+		mSize[b] = 1 + size(mLeft[b]) + size(mRight[b]);
+		return b;
+	}
+
+	/**
+	 * Rotate a node's left child up into its place.
+	 *
+	 * @return The new root of the subtree.
+	 */
+	private int rotateRight(int t) {
+		int l = mLeft[t];
+		mLeft[t] = mRight[l];
+		mRight[l] = t;
+		mSize[l] = mSize[t];
+		mSize[t] = 1 + size(mLeft[t]) + size(mRight[t]);
+		return l;
+	}
+
+	/**
+	 * Rotate a node's right child up into its place.
+	 *
+	 * @return The new root of the subtree.
+	 */
+	private int rotateLeft(int t) {
+		int r = mRight[t];
+		mRight[t] = mLeft[r];
+		mLeft[r] = t;
+		mSize[r] = mSize[t];
+		mSize[t] = 1 + size(mLeft[t]) + size(mRight[t]);
+		return r;
+	}
+}
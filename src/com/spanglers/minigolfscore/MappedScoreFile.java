@@ -0,0 +1,358 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Save file with a fixed layout, so that it can be memory-mapped and each field updated in
+ * place.  Every score and par has a known offset, so changing one writes only that byte.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   0  int    cookie
+ *   4  int    version
+ *   8  short  player count
+ *  10  short  hole count
+ *  12  short  name slot size
+ *  14  byte   flags
+ *  15  byte   undo type
+ *  16  short  saved selected player
+ *  18  short  saved selected hole
+ *  20  short  undo hole
+ *  22  short  undo player
+ *  24  byte   undo value
+ *  28  slot   undo name
+ *      slot   player names, one slot per player
+ *      byte   par, one per hole
+ *      byte   scores, one per player,hole (row-major by player)
+ * </pre>
+ * Each name slot holds a short length followed by that many bytes of UTF-8.
+ */
+class MappedScoreFile {
+	// Constants
+	static final int FLUSH_NEVER = 0;		// Leave writeback to the OS
+	static final int FLUSH_ON_SAVE = 1;		// Force to disk when the data is saved
+	static final int FLUSH_EVERY_WRITE = 2;	// Force to disk after each change
+	static final int DEFAULT_NAME_SLOT_SIZE = 64;	// Default bytes reserved per name
+
+	private static final int OFFSET_COOKIE = 0;
+	private static final int OFFSET_VERSION = 4;
+	private static final int OFFSET_PLAYER_COUNT = 8;
+	private static final int OFFSET_HOLE_COUNT = 10;
+	private static final int OFFSET_NAME_SLOT_SIZE = 12;
+	private static final int OFFSET_FLAGS = 14;
+	private static final int OFFSET_UNDO_TYPE = 15;
+	private static final int OFFSET_SEL_PLAYER = 16;
+	private static final int OFFSET_SEL_HOLE = 18;
+	private static final int OFFSET_UNDO_HOLE = 20;
+	private static final int OFFSET_UNDO_PLAYER = 22;
+	private static final int OFFSET_UNDO_VALUE = 24;
+	private static final int OFFSET_UNDO_NAME = 28;
+
+	// Mapped data
+	private final File mFile;			// File backing the buffer
+	private final ByteBuffer mBuffer;	// Mapped (or, when only reading, heap) buffer
+	private final int mPlayerCount;		// Number of players in the layout
+	private final int mHoleCount;		// Number of holes in the layout
+	private final int mNameSlotSize;	// Bytes per name slot
+	private final int mOffsetNames;		// Offset of first player name slot
+	private final int mOffsetPar;		// Offset of par for first hole
+	private final int mOffsetScores;	// Offset of score for first player, first hole
+	private int mFlushPolicy = FLUSH_ON_SAVE;	// When to force changes to disk
+	private boolean mNeedsForce = false;	// Are there writes which haven't been forced?
+
+	/**
+	 * Constructor.  Reads the layout from the header of the buffer.
+	 */
+	private MappedScoreFile(File file, ByteBuffer buffer) {
+		mFile = file;
+		mBuffer = buffer;
+		mPlayerCount = buffer.getShort(OFFSET_PLAYER_COUNT) & 0xFFFF;
+		mHoleCount = buffer.getShort(OFFSET_HOLE_COUNT) & 0xFFFF;
+		mNameSlotSize = buffer.getShort(OFFSET_NAME_SLOT_SIZE) & 0xFFFF;
+		mOffsetNames = OFFSET_UNDO_NAME + mNameSlotSize;
+		mOffsetPar = mOffsetNames + mPlayerCount * mNameSlotSize;
+		mOffsetScores = mOffsetPar + mHoleCount;
+	}
+
+	/**
+	 * @return Size in bytes of a file with the specified layout.
+	 */
+	static int layoutSize(int players, int holes, int nameSlotSize) {
+		return OFFSET_UNDO_NAME + (players + 1) * nameSlotSize + holes + players * holes;
+	}
+
+	/**
+	 * @return Bytes needed in a name slot to hold the string.
+	 */
+	static int slotSizeFor(String name) {
+		try {
+			return 2 + name.getBytes("UTF-8").length;
+		} catch (UnsupportedEncodingException e) {
+			return DEFAULT_NAME_SLOT_SIZE;	// UTF-8 is always supported
+		}
+	}
+
+	/**
+	 * Check whether a buffer starts with a valid header for this layout.
+	 */
+	private static boolean isValid(ByteBuffer b, long length) {
+		if (length < OFFSET_UNDO_NAME)
+			return false;
+		if (b.getInt(OFFSET_COOKIE) != ScoreData.SAVE_FILE_COOKIE
+				|| b.getInt(OFFSET_VERSION) != ScoreData.MAPPED_FILE_VERSION)
+			return false;
+		int players = b.getShort(OFFSET_PLAYER_COUNT) & 0xFFFF;
+		int holes = b.getShort(OFFSET_HOLE_COUNT) & 0xFFFF;
+		int slot = b.getShort(OFFSET_NAME_SLOT_SIZE) & 0xFFFF;
+		if (players < 1 || holes < 1 || slot < 2)
+			return false;
+		return length >= layoutSize(players, holes, slot);
+	}
+
+	/**
+	 * Map an existing file.
+	 *
+	 * @return The mapped file, or null if the file doesn't exist or isn't in this layout.
+	 */
+	static MappedScoreFile open(File file) throws IOException {
+		if (!file.exists())
+			return null;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel c = raf.getChannel();
+			long length = c.size();
+			if (length < OFFSET_UNDO_NAME)
+				return null;
+			MappedByteBuffer b = c.map(FileChannel.MapMode.READ_WRITE, 0, length);
+			if (!isValid(b, length))
+				return null;
+			return new MappedScoreFile(file, b);
+		} finally {
+			// The mapping stays valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Wrap an in-memory copy of a file, for reading only.
+	 *
+	 * @return The wrapped data, or null if it isn't in this layout.
+	 */
+	static MappedScoreFile wrap(byte[] data) {
+		ByteBuffer b = ByteBuffer.wrap(data);
+		if (!isValid(b, data.length))
+			return null;
+		return new MappedScoreFile(null, b);
+	}
+
+	/**
+	 * Create an empty layout of the specified size in the temporary file for a file, and map
+	 * it.  The file itself isn't touched, so dying part way through leaves the old one intact.
+	 * The caller is responsible for filling in the fields, forcing them, and then calling
+	 * FileReplacer.commit() to put the new file in place; the mapping follows the rename.
+	 */
+	static MappedScoreFile create(File file, int players, int holes, int nameSlotSize)
+			throws IOException {
+		int length = layoutSize(players, holes, nameSlotSize);
+		RandomAccessFile raf = new RandomAccessFile(FileReplacer.tempFileFor(file), "rw");
+		try {
+			raf.setLength(0);	// Discard any leftover from an earlier attempt
+			raf.setLength(length);
+			MappedByteBuffer b = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+			b.putInt(OFFSET_COOKIE, ScoreData.SAVE_FILE_COOKIE);
+			b.putInt(OFFSET_VERSION, ScoreData.MAPPED_FILE_VERSION);
+			b.putShort(OFFSET_PLAYER_COUNT, (short) players);
+			b.putShort(OFFSET_HOLE_COUNT, (short) holes);
+			b.putShort(OFFSET_NAME_SLOT_SIZE, (short) nameSlotSize);
+			MappedScoreFile m = new MappedScoreFile(file, b);
+			m.mNeedsForce = true;	// The whole file is new
+			return m;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/* Getters */
+	File getFile() {
+		return mFile;
+	}
+	int getPlayerCount() {
+		return mPlayerCount;
+	}
+	int getHoleCount() {
+		return mHoleCount;
+	}
+	int getNameSlotSize() {
+		return mNameSlotSize;
+	}
+	int getFlags() {
+		return mBuffer.get(OFFSET_FLAGS) & 0xFF;
+	}
+	int getSelPlayer() {
+		return mBuffer.getShort(OFFSET_SEL_PLAYER);
+	}
+	int getSelHole() {
+		return mBuffer.getShort(OFFSET_SEL_HOLE);
+	}
+	int getUndoType() {
+		return mBuffer.get(OFFSET_UNDO_TYPE) & 0xFF;
+	}
+	int getUndoHole() {
+		return mBuffer.getShort(OFFSET_UNDO_HOLE) & 0xFFFF;
+	}
+	int getUndoPlayer() {
+		return mBuffer.getShort(OFFSET_UNDO_PLAYER) & 0xFFFF;
+	}
+	int getUndoValue() {
+		return mBuffer.get(OFFSET_UNDO_VALUE) & 0xFF;
+	}
+	String getUndoName() throws IOException {
+		return getSlot(OFFSET_UNDO_NAME);
+	}
+	String getPlayerName(int player) throws IOException {
+		return getSlot(mOffsetNames + player * mNameSlotSize);
+	}
+	int getPar(int hole) {
+		return mBuffer.get(mOffsetPar + hole) & 0xFF;
+	}
+
+	/**
+	 * Copy the scores for a player into an array, starting at the specified offset.
+	 */
+	void getScores(int player, byte[] dst, int offset) {
+		for (int h = 0; h < mHoleCount; h++)
+			dst[offset + h] = mBuffer.get(mOffsetScores + player * mHoleCount + h);
+	}
+
+	/* Setters.  Each writes only the bytes for the field. */
+	void putFlags(int flags) {
+		mBuffer.put(OFFSET_FLAGS, (byte) flags);
+		wrote();
+	}
+	void putSelPlayer(int player) {
+		mBuffer.putShort(OFFSET_SEL_PLAYER, (short) player);
+		wrote();
+	}
+	void putSelHole(int hole) {
+		mBuffer.putShort(OFFSET_SEL_HOLE, (short) hole);
+		wrote();
+	}
+	void putPar(int hole, int par) {
+		mBuffer.put(mOffsetPar + hole, (byte) par);
+		wrote();
+	}
+	void putScore(int player, int hole, int score) {
+		mBuffer.put(mOffsetScores + player * mHoleCount + hole, (byte) score);
+		wrote();
+	}
+
+	/**
+	 * Write the undo fields.  The undo name is only rewritten for name undos.
+	 *
+	 * @return false if the undo name doesn't fit in its slot.
+	 */
+	boolean putUndo(int type, int hole, int player, int value, String name) {
+		if (name != null && !putSlot(OFFSET_UNDO_NAME, name))
+			return false;
+		mBuffer.put(OFFSET_UNDO_TYPE, (byte) type);
+		mBuffer.putShort(OFFSET_UNDO_HOLE, (short) hole);
+		mBuffer.putShort(OFFSET_UNDO_PLAYER, (short) player);
+		mBuffer.put(OFFSET_UNDO_VALUE, (byte) value);
+		wrote();
+		return true;
+	}
+
+	/**
+	 * Write a player name.
+	 *
+	 * @return false if the name doesn't fit in its slot.
+	 */
+	boolean putPlayerName(int player, String name) {
+		if (!putSlot(mOffsetNames + player * mNameSlotSize, name))
+			return false;
+		wrote();
+		return true;
+	}
+
+	private String getSlot(int offset) throws IOException {
+		int length = mBuffer.getShort(offset) & 0xFFFF;
+		if (length > mNameSlotSize - 2)
+			throw new IOException("Bad name length");
+		byte[] b = new byte[length];
+		for (int i = 0; i < length; i++)
+			b[i] = mBuffer.get(offset + 2 + i);
+		return new String(b, "UTF-8");
+	}
+
+	private boolean putSlot(int offset, String s) {
+		byte[] b;
+		try {
+			b = s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			return false;
+		}
+		if (b.length > mNameSlotSize - 2)
+			return false;
+		mBuffer.putShort(offset, (short) b.length);
+		for (int i = 0; i < b.length; i++)
+			mBuffer.put(offset + 2 + i, b[i]);
+		return true;
+	}
+
+	/**
+	 * Set when changes are forced to disk.
+	 *
+	 * @param policy
+	 *            FLUSH_NEVER, FLUSH_ON_SAVE or FLUSH_EVERY_WRITE.
+	 */
+	void setFlushPolicy(int policy) {
+		mFlushPolicy = policy;
+	}
+
+	/**
+	 * Called after each write, to apply the flush policy.
+	 */
+	private void wrote() {
+		mNeedsForce = true;
+		if (mFlushPolicy == FLUSH_EVERY_WRITE)
+			force();
+	}
+
+	/**
+	 * Called when the data is saved, to apply the flush policy.
+	 */
+	void save() {
+		if (mFlushPolicy != FLUSH_NEVER)
+			force();
+	}
+
+	/**
+	 * Force any changes to disk.
+	 */
+	void force() {
+		if (mNeedsForce && mBuffer instanceof MappedByteBuffer)
+			((MappedByteBuffer) mBuffer).force();
+		mNeedsForce = false;
+	}
+}
@@ -0,0 +1,76 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+/**
+ * Widths of a row of items, kept in a tree so the widest can be found as each one changes.
+ * Changing one width is O(log n); finding the widest is O(1).
+ */
+class MaxWidthTree {
+	// Heap-ordered tree.  The leaves are [mLeaves, 2 * mLeaves); each other node holds the
+	// larger of its two children, so node 1 holds the widest.
+	private int[] mTree = new int[2];
+	private int mLeaves = 1;		// Number of leaves; a power of 2
+	private int mCount = 0;			// Number of items
+
+	/**
+	 * Set the number of items.  Items past the old count have width 0 until set.
+	 */
+	void setCount(int count) {
+		if (count > mLeaves) {
+			int leaves = mLeaves;
+			while (leaves < count)
+				leaves *= 2;
+			int[] tree = new int[2 * leaves];
+			System.arraycopy(mTree, mLeaves, tree, leaves, mCount);
+			mTree = tree;
+			mLeaves = leaves;
+		} else {
+			for (int i = count; i < mCount; i++)
+				mTree[mLeaves + i] = 0;
+		}
+		mCount = count;
+
+		// Rebuild the inner nodes
+		for (int n = mLeaves - 1; n >= 1; n--)
+			mTree[n] = Math.max(mTree[2 * n], mTree[2 * n + 1]);
+	}
+
+	int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Set the width of an item.
+	 */
+	void set(int index, int width) {
+		int n = mLeaves + index;
+		mTree[n] = width;
+		for (n /= 2; n >= 1; n /= 2) {
+			int max = Math.max(mTree[2 * n], mTree[2 * n + 1]);
+			if (mTree[n] == max)
+				break;	// Nothing further up changes
+			mTree[n] = max;
+		}
+	}
+
+	/**
+	 * @return Width of the widest item, or 0 if there are none.
+	 */
+	int max() {
+		return mTree[1];
+	}
+}
@@ -0,0 +1,93 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+/**
+ * Storage which keeps files in memory, so they're gone once the process is.  Useful for
+ * measuring the cost of the save format apart from the disk, and for running persistence code
+ * off the device.
+ *
+ * A file written through a stream is replaced when the stream is closed, so readers never see
+ * it half written.
+ */
+class MemoryStorage implements ScoreStorage {
+	// Contents and write counts, by name.  Guarded by mFiles.
+	private final HashMap<String, byte[]> mFiles = new HashMap<String, byte[]>();
+	private final HashMap<String, Long> mModified = new HashMap<String, Long>();
+	private long mWrites = 0;	// Files written so far; stands in for modification times
+
+	public InputStream openInput(String name) throws FileNotFoundException {
+		byte[] data;
+		synchronized (mFiles) {
+			data = mFiles.get(name);
+		}
+		if (data == null)
+			throw new FileNotFoundException(name);
+		return new ByteArrayInputStream(data);	// Contents are never changed in place
+	}
+
+	public OutputStream openOutput(final String name, final boolean append) {
+		return new ByteArrayOutputStream() {
+			private boolean mClosed = false;
+
+			@Override
+			public void close() {
+				if (mClosed)
+					return;
+				mClosed = true;
+				synchronized (mFiles) {
+					byte[] old = append ? mFiles.get(name) : null;
+					byte[] data;
+					if (old == null) {
+						data = toByteArray();
+					} else {
+						data = new byte[old.length + count];
+						System.arraycopy(old, 0, data, 0, old.length);
+						System.arraycopy(buf, 0, data, old.length, count);
+					}
+					mFiles.put(name, data);
+					mModified.put(name, ++mWrites);
+				}
+			}
+		};
+	}
+
+	public long lastModified(String name) {
+		synchronized (mFiles) {
+			Long modified = mModified.get(name);
+			return modified == null ? 0 : modified;
+		}
+	}
+
+	public long length(String name) {
+		synchronized (mFiles) {
+			byte[] data = mFiles.get(name);
+			return data == null ? 0 : data.length;
+		}
+	}
+
+	public File getFile(String name) {
+		return null;	// Nothing on disk to map
+	}
+}
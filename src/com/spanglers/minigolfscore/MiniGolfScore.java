@@ -15,13 +15,18 @@
 
 package com.spanglers.minigolfscore;
 
+import java.io.File;
+import java.io.IOException;
+
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.content.res.Configuration;
+import android.net.Uri;
 import android.os.Bundle;
 import android.text.Editable;
 //import android.util.Log;
@@ -39,6 +44,10 @@ import com.spanglers.minigolfscore.SheetView.OnEditListener;
 public class MiniGolfScore extends Activity {
 
 	static final String SAVE_FILENAME = "save.dat"; // Filename to save settings/scores to
+	static final int STORAGE_MODE = ScoreData.STORAGE_JOURNAL; // How to keep the save file up to date
+	static final int SUMMARY_LEADERS = 5; // Leaders listed in the body of e-mailed scores
+
+	private static ScoreStorage sStorage;	// Storage for save files, once chosen
 
 	// Saved instance state keys
 	static final String KEY_EDIT_PLAYER = "mEditPlayer"; 
@@ -64,6 +73,7 @@ public class MiniGolfScore extends Activity {
 	
 	SheetView mScoreSheet;	// Score sheet
 	Button mButtonUndo;		// Undo button
+	Button mButtonRedo;		// Redo button
 	Button mButtonNext;		// Next button
 	View mViewEditPlayer;	// Custom view for edit player dialog
 	View mViewEditScore;	// Custom view for edit score dialog
@@ -73,7 +83,9 @@ public class MiniGolfScore extends Activity {
 	int mEditHole;			// Hole index to edit
 	String mDialogTitle;	// Title of the current dialog
 	
-	final ScoreData mScoreData = new ScoreData();		// Current save file
+	ScoreRepository mRepository;	// Holds the sheet, shared with the other activities
+	ScoreData mScoreData;			// The sheet
+	RoundArchive mArchive;	// Rounds which have been cleared
 	
     /** Called when the activity is first created. */
     @Override
@@ -81,6 +93,10 @@ public class MiniGolfScore extends Activity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.main);
 
+        mRepository = ScoreRepository.get(this);
+        mScoreData = mRepository.getData();
+        mArchive = new RoundArchive(this);
+
         mScoreSheet = (SheetView) findViewById(R.id.score);
         mScoreSheet.setScoreData(mScoreData);
         mScoreSheet.SetOnEditListener(new OnEditListener() {
@@ -130,18 +146,16 @@ public class MiniGolfScore extends Activity {
         mButtonUndo = (Button) findViewById(R.id.undo_button);
         mButtonUndo.setOnClickListener(new OnClickListener() {
             public void onClick(View v) {
-            	if (mScoreData.undoLast()) {
-            		// Move the selection back to match the undo
-            		/* TODO: This is a little inaccurate, since it may change the selected player
-            		 * if what we're undoing is par, or change the selected hole if what we're
-            		 * undoing is a player name.  Usually it'll be ok, because popping up a 
-            		 * dialog to change par or player name causes the score data to get saved so
-            		 * we'll have the right selection.
-            		 */
-            		mScoreSheet.setSelectedHole(mScoreData.getSavedSelHole());
-            		mScoreSheet.setSelectedPlayer(mScoreData.getSavedSelPlayer());
-            		mScoreSheet.checkForRelayout();	// May need to re-layout if player name changed
-            	}
+            	if (mScoreData.undoLast())
+            		showUndoneEdit();
+            }
+        });
+        
+        mButtonRedo = (Button) findViewById(R.id.redo_button);
+        mButtonRedo.setOnClickListener(new OnClickListener() {
+            public void onClick(View v) {
+            	if (mScoreData.redoLast())
+            		showUndoneEdit();
             }
         });
         
@@ -171,6 +185,21 @@ public class MiniGolfScore extends Activity {
         }
     }
 
+    /**
+     * Update the sheet after an undo or redo.
+     */
+    private void showUndoneEdit() {
+		// Move the selection back to match the undo
+		/* TODO: This is a little inaccurate, since it may change the selected player
+		 * if what we're undoing is par, or change the selected hole if what we're
+		 * undoing is a player name.  Usually it'll be ok, because popping up a 
+		 * dialog to change par or player name causes the score data to get saved so
+		 * we'll have the right selection.
+		 */
+		mScoreSheet.setSelectedHole(mScoreData.getSavedSelHole());
+		mScoreSheet.setSelectedPlayer(mScoreData.getSavedSelPlayer());
+    }
+
 	@Override
     protected Dialog onCreateDialog(int id) {
     	
@@ -184,7 +213,8 @@ public class MiniGolfScore extends Activity {
                 .setTitle(R.string.dialog_confirm_clear_title)
                 .setPositiveButton(R.string.dialog_yes, new DialogInterface.OnClickListener() {
                     public void onClick(DialogInterface dialog, int whichButton) {
-                    	// User clicked Yes; clear scores.
+                    	// User clicked Yes; archive the round and clear scores.
+                    	archiveRound();
                     	mScoreData.resetScores();
                     	mScoreSheet.setSelectedHole(0);
                     	mScoreSheet.setSelectedPlayer(0);
@@ -209,7 +239,6 @@ public class MiniGolfScore extends Activity {
                     	EditText t = (EditText)mViewEditPlayer.findViewById(R.id.player_name_edit);
                     	// Log.d("MiniGolfScore", String.format("set player name %s", t.getText()));
                    		mScoreData.setPlayerName(mEditPlayer, t.getText().toString());
-                   		mScoreSheet.checkForRelayout();
                     }
                 })
                 .setNegativeButton(R.string.dialog_cancel, new DialogInterface.OnClickListener() {
@@ -232,11 +261,9 @@ public class MiniGolfScore extends Activity {
                 	if (mEditPlayer == -1) {
                 		// Editing par for the hole
                 		mScoreData.setPar(mEditHole, Integer.parseInt(t.getText().toString()));
-                    	mScoreSheet.invalidate();
                     } else {
                 		// Editing score for a player
                     	mScoreData.setScore(mEditPlayer, mEditHole, Integer.parseInt(t.getText().toString()));
-                    	mScoreSheet.invalidate();
                 	}
                 	
                 }
@@ -257,51 +284,54 @@ public class MiniGolfScore extends Activity {
 	    return true;
 	}
 
-	private String getEmailText() {
-		String t = "";
-		
-		int holes = mScoreData.getHoleCount();
-		int players = mScoreData.getPlayerCount();
-		boolean relative = mScoreSheet.getScoreRelative();
-		
-		t += "Hole:";
-		for (int h = 0; h < holes; h++)
-			t += String.format(" %d", h + 1);
-		t += "/ Total (+/-)\n";
+	/**
+	 * Send the scores by e-mail.  The HTML card is attached as a stream from ScoreProvider, which
+	 * exports the shared sheet the way it was last saved to be shown, so the view's settings are
+	 * stored in the sheet first.  The card is only ever streamed to the mail app, never held here
+	 * or copied into the intent, since a big sheet wouldn't fit in a Binder transaction; the body
+	 * is just a short summary of the leaders, for mail apps which want one.
+	 */
+	private void sendScores() {
+		saveSettings();
 		
-		t += "Par:";
-		int totalPar = 0;
-		for (int h = 0; h < holes; h++) {
-			int s = mScoreData.getPar(h);
-			t += String.format(" %d", s);
-			totalPar += s;
-		}
-		t += String.format(" / %d\n", totalPar);
+		Uri card = ScoreProvider.getCardUri(ScoreExporter.FORMAT_HTML);
+		Intent i = new Intent(Intent.ACTION_SEND);
+		i.setType(ScoreExporter.getMimeType(ScoreExporter.FORMAT_HTML));
+		i.putExtra(Intent.EXTRA_SUBJECT, "Mini golf scores");
+		i.putExtra(Intent.EXTRA_TEXT, ScoreExporter.summary(mScoreData,
+				mScoreSheet.getScoreRelative(), SUMMARY_LEADERS));
+		i.putExtra(Intent.EXTRA_STREAM, card);
+		ScoreProvider.grantRead(i, card);
+		Intent chooser = Intent.createChooser(i, "Send golf scores");
+		ScoreProvider.grantRead(chooser, card);
+		startActivity(chooser);
+	}
+
+	/**
+	 * Append the current round to the archive in the background, if anyone has played a hole,
+	 * and add it to the players' histories.
+	 */
+	private void archiveRound() {
+		boolean played = false;
+		for (int p = 0; p < mScoreData.getPlayerCount() && !played; p++)
+			played = mScoreData.getHolesPlayed(p) > 0;
+		if (!played)
+			return;
 		
-		for (int p = 0; p < players; p++) {
-			t += String.format("%s: ", mScoreData.getPlayerName(p));
-			int total = 0;
-			int vspar = 0;
-			for (int h = 0; h < holes; h++) {
-				int s = mScoreData.getScore(p, h);
-				int v = s - mScoreData.getPar(h);
-				if (s > 0) {
-					if (relative)
-						t += String.format(" %+d", v);
-					else
-						t += String.format(" %d", s);
-					total += s;
-					vspar += v;
-				} else {
-					t += " -";
+		final ScoreData round = mScoreData.roundSnapshot();
+		final long date = System.currentTimeMillis();
+		ScoreSaver.run(new Runnable() {
+			public void run() {
+				try {
+					int position = mArchive.append(round, date);
+					PlayerHistory.get(MiniGolfScore.this).addRound(mArchive, position, round, date);
+				} catch (IOException e) {
+					// TODO: do something about being unable to save the file
 				}
 			}
-			t += String.format(" / %d (%+d)\n", total, vspar);
-		}
-		
-    	return t;
+		});
 	}
-	
+
 	/* Handles item selections */
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
@@ -309,18 +339,20 @@ public class MiniGolfScore extends Activity {
         	showDialog(DIALOG_CONFIRM_CLEAR);
             return true;
         case R.id.settings:
-        	// Save current settings to the settings screen file
-        	saveSettings(SettingsScreen.SAVE_FILENAME);
         	startActivity(new Intent(this, SettingsScreen.class));
             return true;
         case R.id.email:
         	// Log.d("MiniGolfScore", "E-MAIL MENU");
-        	Intent i = new Intent(Intent.ACTION_SEND);
-        	i.setType("text/html");
-        	i.putExtra(Intent.EXTRA_SUBJECT, "Mini golf scores");
-        	// TODO: should really put EXTRA_STREAM with a stream containing the HTML.
-        	i.putExtra(Intent.EXTRA_TEXT, getEmailText());
-        	startActivity(Intent.createChooser(i, "Send golf scores"));
+        	sendScores();
+            return true;
+        case R.id.stats:
+        	startActivity(new Intent(this, StatsScreen.class));
+            return true;
+        case R.id.history:
+        	startActivity(new Intent(this, HistoryScreen.class));
+            return true;
+        case R.id.players:
+        	startActivity(new Intent(this, PlayersScreen.class));
             return true;
         case R.id.help:
         	startActivity(new Intent(this, HelpScreen.class));
@@ -330,15 +362,34 @@ public class MiniGolfScore extends Activity {
     }
 
     /**
-     * Save settings to the specified file
+     * Save settings to the save file, if they've changed.  The file is written in the background.
      */
-    private void saveSettings(String filename) {
+    private void saveSettings() {
 		mScoreData.setSavedScoreRelative(mScoreSheet.getScoreRelative()); 	
+		mScoreData.setSavedSortByStanding(mScoreSheet.getSortByStanding());
 		mScoreData.setSavedSelPlayer(mScoreSheet.getSelectedPlayer());
 		mScoreData.setSavedSelHole(mScoreSheet.getSelectedHole());
-		mScoreData.saveToFile(this, filename);
+		mRepository.save();
     }
     
+	/**
+	 * Get the storage save files are kept in, as configured by R.string.config_storage_backend.
+	 * Every activity and the provider share it, so they see each other's files.
+	 */
+	static synchronized ScoreStorage getStorage(Context context) {
+		if (sStorage == null) {
+			String backend = context.getString(R.string.config_storage_backend);
+			File dir = context.getFilesDir();
+			if (ScoreStorage.BACKEND_MEMORY.equals(backend))
+				sStorage = new MemoryStorage();
+			else if (ScoreStorage.BACKEND_CHANNEL.equals(backend))
+				sStorage = new ChannelFileStorage(dir);
+			else
+				sStorage = new StreamFileStorage(dir);
+		}
+		return sStorage;
+	}
+
 	/**
 	 * Activity is being paused.  It may be killed after onPause() returns.   
 	 * @see android.app.Activity#onPause()
@@ -347,7 +398,28 @@ public class MiniGolfScore extends Activity {
 	protected void onPause() {
 		super.onPause();
 		// Log.d("MiniGolfScore", "onPause()");
-		saveSettings(SAVE_FILENAME);
+		saveSettings();
+	}
+
+	/**
+	 * Activity is no longer visible.  Make sure the save started in onPause() has finished, since
+	 * the process may be killed at any time from here on.
+	 * @see android.app.Activity#onStop()
+	 */
+	@Override
+	protected void onStop() {
+		super.onStop();
+		ScoreSaver.flush();
+	}
+
+	/**
+	 * Activity is going away.  The sheet outlives it, so stop the view listening to the sheet.
+	 * @see android.app.Activity#onDestroy()
+	 */
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		mScoreSheet.detach();
 	}
 
     
@@ -391,18 +463,22 @@ public class MiniGolfScore extends Activity {
 		super.onResume();
 		// Log.d("MiniGolfScore", "onResume()");
 
-		// Restore saved settings
-        mScoreData.loadFromFile(this, SAVE_FILENAME);
-        
+		/* The sheet is shared, so it already has any changes made by the settings screen.  Only
+		 * reload it if something else has written the save file while we were paused.
+		 */
+		mRepository.refresh();
+		// Log.d("MiniGolfScore", "Refresh hits " + mRepository.getRefreshHits() + ", misses "
+		//		+ mRepository.getRefreshMisses());
+
         if (mScoreData.getForceLandscape())
         	setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE);
         else
         	setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED);
         
         mScoreSheet.setScoreRelative(mScoreData.getSavedScoreRelative());
+        mScoreSheet.setSortByStanding(mScoreData.getSavedSortByStanding());
         mScoreSheet.setSelectedPlayer(mScoreData.getSavedSelPlayer());
         mScoreSheet.setSelectedHole(mScoreData.getSavedSelHole());
-		mScoreSheet.checkForRelayout();
 	}
     
     /** Save state of application, for possible reuse in onCreate().
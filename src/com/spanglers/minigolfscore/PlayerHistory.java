@@ -0,0 +1,416 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+
+import android.content.ContextWrapper;
+
+/**
+ * Each player's results across archived rounds, so players can be followed from round to
+ * round.  Players are matched by name, ignoring case and spacing; the default "Player N" names
+ * aren't followed, since they don't belong to anyone.
+ *
+ * Each round's results are appended to a small file as the round is archived, and the whole
+ * file is read once per process into a map from name to player.  Per-player totals and bests
+ * are updated as results are added; the handicap needs the most recent rounds sorted, so it's
+ * only recomputed the first time it's asked for after a round is added.  Opening a player's
+ * history never decodes archived cards.
+ */
+class PlayerHistory {
+	static final String FILENAME = "players.dat";	// Results of each round, by player
+	static final int FILE_COOKIE = 20000616;		// Cookie at start of file
+	static final int FILE_VERSION = 1;				// Current file format version
+	static final int HEADER_SIZE = 8;				// Cookie and version
+	static final int HANDICAP_ROUNDS = 20;			// Most recent rounds the handicap is taken from
+	static final int HANDICAP_BEST = 8;				// Most rounds averaged for the handicap
+	static final int NO_HANDICAP = Integer.MIN_VALUE;	// Handicap of a player with no rounds
+
+	private static PlayerHistory sInstance;		// History for this process, once loaded
+
+	/**
+	 * A player's results in each round they played, oldest first.
+	 */
+	static class Player {
+		private String mName;			// Name, as last entered
+		private int mCount = 0;			// Number of rounds
+		private int[] mRounds = new int[4];			// Position of each round in the archive
+		private long[] mDates = new long[4];		// When each round was archived
+		private int[] mHolesPlayed = new int[4];	// Holes played in each round
+		private int[] mStrokes = new int[4];		// Total strokes in each round
+		private int[] mVsPar = new int[4];			// Total relative to par in each round
+
+		// Aggregates, updated as rounds are added
+		private long mTotalStrokes = 0;		// Sum of strokes over all rounds
+		private long mTotalHoles = 0;		// Sum of holes played over all rounds
+		private long mTotalVsPar = 0;		// Sum relative to par over all rounds
+		private int mBest = -1;				// Round with the lowest total relative to par; -1 if none
+
+		// Handicap, computed when asked for
+		private int mHandicap = NO_HANDICAP;
+		private boolean mHandicapStale = false;
+
+		Player(String name) {
+			mName = name;
+		}
+
+		/**
+		 * Add a round's result.  Rounds must be added in the order they were archived.
+		 */
+		synchronized void add(int round, long date, int holesPlayed, int strokes, int vsPar) {
+			if (mCount == mRounds.length) {
+				int capacity = mCount * 2;
+				mRounds = copyOf(mRounds, capacity);
+				mDates = copyOf(mDates, capacity);
+				mHolesPlayed = copyOf(mHolesPlayed, capacity);
+				mStrokes = copyOf(mStrokes, capacity);
+				mVsPar = copyOf(mVsPar, capacity);
+			}
+			int i = mCount++;
+			mRounds[i] = round;
+			mDates[i] = date;
+			mHolesPlayed[i] = holesPlayed;
+			mStrokes[i] = strokes;
+			mVsPar[i] = vsPar;
+
+			mTotalStrokes += strokes;
+			mTotalHoles += holesPlayed;
+			mTotalVsPar += vsPar;
+			if (mBest < 0 || differential(i) < differential(mBest))
+				mBest = i;
+			mHandicapStale = true;
+		}
+
+		synchronized String getName() {
+			return mName;
+		}
+
+		synchronized int getRoundCount() {
+			return mCount;
+		}
+
+		/**
+		 * @return Position in the archive of one of the player's rounds.
+		 * @param i
+		 *            Which round, where 0 is the player's first.
+		 */
+		synchronized int getRound(int i) {
+			return mRounds[i];
+		}
+
+		synchronized long getTotalStrokes() {
+			return mTotalStrokes;
+		}
+
+		synchronized long getTotalHolesPlayed() {
+			return mTotalHoles;
+		}
+
+		synchronized long getTotalVsPar() {
+			return mTotalVsPar;
+		}
+
+		/**
+		 * @return Which of the player's rounds was their best, relative to par over 18 holes,
+		 *         or -1 if they have no rounds.
+		 */
+		synchronized int getBestRound() {
+			return mBest;
+		}
+
+		synchronized long getDate(int i) {
+			return mDates[i];
+		}
+
+		synchronized int getStrokes(int i) {
+			return mStrokes[i];
+		}
+
+		synchronized int getVsPar(int i) {
+			return mVsPar[i];
+		}
+
+		synchronized int getHolesPlayed(int i) {
+			return mHolesPlayed[i];
+		}
+
+		/**
+		 * Handicap: the mean of the player's best rounds out of their most recent ones,
+		 * relative to par and scaled to 18 holes.  Up to HANDICAP_BEST of the last
+		 * HANDICAP_ROUNDS count; with fewer rounds, the better half do.
+		 *
+		 * @return Handicap in tenths of a stroke, or NO_HANDICAP if the player has no rounds.
+		 */
+		synchronized int getHandicap() {
+			if (mHandicapStale) {
+				int first = Math.max(0, mCount - HANDICAP_ROUNDS);
+				int[] recent = new int[mCount - first];
+				for (int i = first; i < mCount; i++)
+					recent[i - first] = differential(i);
+				Arrays.sort(recent);
+				int best = Math.min(HANDICAP_BEST, (recent.length + 1) / 2);
+				long sum = 0;
+				for (int i = 0; i < best; i++)
+					sum += recent[i];
+				mHandicap = (int) Math.round((double) sum / best);
+				mHandicapStale = false;
+			}
+			return mHandicap;
+		}
+
+		/**
+		 * @return Result of one of the player's rounds relative to par, scaled to 18 holes, in
+		 *         tenths of a stroke.
+		 */
+		private int differential(int i) {
+			return (int) Math.round(180.0 * mVsPar[i] / mHolesPlayed[i]);
+		}
+	}
+
+	private final File mFile;
+	private final HashMap<String, Player> mPlayers = new HashMap<String, Player>();	// By key
+	private int mRoundsIndexed = 0;		// Number of archived rounds whose results are in here
+	private long mGoodLength = HEADER_SIZE;	// Length of the file up to the last whole record
+
+	private PlayerHistory(File file) {
+		mFile = file;
+	}
+
+	/**
+	 * @return History of the players, read from its file the first time it's needed.
+	 */
+	static synchronized PlayerHistory get(ContextWrapper wrapper) {
+		if (sInstance == null) {
+			sInstance = new PlayerHistory(wrapper.getFileStreamPath(FILENAME));
+			sInstance.load();
+		}
+		return sInstance;
+	}
+
+	/**
+	 * @return Key a player is filed under: their name without case, accents composed the same
+	 *         way and runs of spaces squeezed to one.  null if the player isn't followed.
+	 */
+	static String normalize(String name) {
+		String key = Normalizer.normalize(name, Normalizer.Form.NFC);
+		key = key.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ENGLISH);
+		if (key.length() == 0 || key.matches("player \\d+"))
+			return null;	// Blank or still the default name
+		return key;
+	}
+
+	/**
+	 * Read the file.  Reading stops at the first record which isn't whole, which is only left
+	 * if the app died while appending it; it's overwritten by the next one.
+	 */
+	private void load() {
+		DataInputStream s = null;
+		try {
+			s = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+			if (s.readInt() != FILE_COOKIE || s.readInt() != FILE_VERSION)
+				return;	// Rebuilt from the archive by catchUp()
+			long length = mFile.length();
+			while (mGoodLength + 4 <= length) {
+				int size = s.readInt();
+				if (size < 0 || mGoodLength + 4 + size > length)
+					break;
+				readRound(s);
+				mGoodLength += 4 + size;
+			}
+		} catch (FileNotFoundException e) {
+			// No rounds yet
+		} catch (EOFException e) {
+			// Partial record
+		} catch (IOException e) {
+			// TODO: do something about being unable to read the file
+		} finally {
+			if (s != null) {
+				try {
+					s.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read one round's record and add its results.
+	 */
+	private void readRound(DataInputStream s) throws IOException {
+		int round = s.readInt();
+		long date = s.readLong();
+		int players = s.readUnsignedShort();
+		for (int i = 0; i < players; i++) {
+			String name = s.readUTF();
+			int holesPlayed = s.readUnsignedShort();
+			int strokes = s.readInt();
+			int vsPar = s.readInt();
+			addResult(name, round, date, holesPlayed, strokes, vsPar);
+		}
+		mRoundsIndexed = round + 1;
+	}
+
+	private void addResult(String name, int round, long date, int holesPlayed, int strokes,
+			int vsPar) {
+		String key = normalize(name);
+		Player player = mPlayers.get(key);
+		if (player == null) {
+			player = new Player(name);
+			mPlayers.put(key, player);
+		}
+		synchronized (player) {
+			player.mName = name;
+		}
+		player.add(round, date, holesPlayed, strokes, vsPar);
+	}
+
+	/**
+	 * Add the results of a round which has just been archived.  May be called from a
+	 * background thread.
+	 *
+	 * @param position
+	 *            Position of the round in the archive.
+	 */
+	synchronized void addRound(RoundArchive archive, int position, ScoreData round, long date)
+			throws IOException {
+		catchUp(archive, position);
+		if (position == mRoundsIndexed)
+			append(position, round, date);
+	}
+
+	/**
+	 * Add the results of any archived rounds which aren't in here yet; for example, ones
+	 * archived before players were followed.  Reads each missing round from the archive.
+	 */
+	synchronized void catchUp(RoundArchive archive) throws IOException {
+		catchUp(archive, archive.getCount());
+	}
+
+	private void catchUp(RoundArchive archive, int end) throws IOException {
+		while (mRoundsIndexed < end) {
+			int position = mRoundsIndexed;
+			ScoreData round = archive.readRound(position);
+			RoundArchive.Summary[] s = archive.readPage(position, 1);
+			if (round == null || s.length == 0) {
+				mRoundsIndexed++;	// Skip rounds which can't be read
+				continue;
+			}
+			append(position, round, s[0].mDate);
+		}
+	}
+
+	/**
+	 * Write a round's results to the file and add them.
+	 */
+	private void append(int position, ScoreData round, long date) throws IOException {
+		// Pick out the players to follow
+		ArrayList<Integer> followed = new ArrayList<Integer>();
+		for (int p = 0; p < round.getPlayerCount(); p++) {
+			if (round.getHolesPlayed(p) > 0 && normalize(round.getPlayerName(p)) != null)
+				followed.add(p);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream record = new DataOutputStream(bytes);
+		record.writeInt(0);		// Size, filled in below
+		record.writeInt(position);
+		record.writeLong(date);
+		record.writeShort(followed.size());
+		for (int i = 0; i < followed.size(); i++) {
+			int p = followed.get(i);
+			record.writeUTF(round.getPlayerName(p));
+			record.writeShort(round.getHolesPlayed(p));
+			record.writeInt(round.getTotalStrokes(p));
+			record.writeInt(round.getTotalVsPar(p));
+		}
+		byte[] b = bytes.toByteArray();
+		int size = b.length - 4;
+		b[0] = (byte) (size >> 24);
+		b[1] = (byte) (size >> 16);
+		b[2] = (byte) (size >> 8);
+		b[3] = (byte) size;
+
+		RandomAccessFile f = new RandomAccessFile(mFile, "rw");
+		try {
+			if (mGoodLength == HEADER_SIZE) {
+				f.setLength(0);
+				f.writeInt(FILE_COOKIE);
+				f.writeInt(FILE_VERSION);
+			}
+			f.setLength(mGoodLength);	// Drop any partial record
+			f.seek(mGoodLength);
+			f.write(b);
+		} finally {
+			f.close();
+		}
+		mGoodLength += b.length;
+
+		for (int i = 0; i < followed.size(); i++) {
+			int p = followed.get(i);
+			addResult(round.getPlayerName(p), position, date, round.getHolesPlayed(p),
+					round.getTotalStrokes(p), round.getTotalVsPar(p));
+		}
+		mRoundsIndexed = position + 1;
+	}
+
+	/**
+	 * @return A player's history, or null if they have none.
+	 */
+	synchronized Player getPlayer(String name) {
+		String key = normalize(name);
+		return key == null ? null : mPlayers.get(key);
+	}
+
+	/**
+	 * @return All players with a history, in order of name.
+	 */
+	synchronized Player[] getPlayers() {
+		Player[] players = mPlayers.values().toArray(new Player[mPlayers.size()]);
+		Arrays.sort(players, new Comparator<Player>() {
+			public int compare(Player a, Player b) {
+				return a.getName().compareToIgnoreCase(b.getName());
+			}
+		});
+		return players;
+	}
+
+	/* Arrays.copyOf() isn't available on older platforms */
+	private static int[] copyOf(int[] a, int length) {
+		int[] b = new int[length];
+		System.arraycopy(a, 0, b, 0, Math.min(a.length, length));
+		return b;
+	}
+	private static long[] copyOf(long[] a, int length) {
+		long[] b = new long[length];
+		System.arraycopy(a, 0, b, 0, Math.min(a.length, length));
+		return b;
+	}
+}
@@ -0,0 +1,115 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+/**
+ * Lists the players who have archived rounds, with their handicap, average and best round.
+ * These come from PlayerHistory's running aggregates, so no archived rounds are read.  The
+ * history is loaded on the save thread, and the list filled in once it's ready.
+ */
+public class PlayersScreen extends Activity {
+	private PlayerHistory.Player[] mPlayers = new PlayerHistory.Player[0];	// Empty until loaded
+	private PlayerAdapter mAdapter;
+	private final DateFormat mDateFormat = DateFormat.getDateInstance(DateFormat.SHORT);
+
+    /** Called when the activity is first created. */
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        ListView lv = new ListView(this);
+        mAdapter = new PlayerAdapter();
+        lv.setAdapter(mAdapter);
+        setContentView(lv);
+
+        // Reading the history, and catching up on rounds archived before players were followed,
+        // can take a while.  Queued on the save thread, it also runs after any round which was
+        // just cleared has been added.
+        ScoreSaver.run(new Runnable() {
+        	public void run() {
+        		PlayerHistory history = PlayerHistory.get(PlayersScreen.this);
+        		try {
+        			history.catchUp(new RoundArchive(PlayersScreen.this));
+        		} catch (IOException e) {
+        			// Show what we have
+        		}
+        		final PlayerHistory.Player[] players = history.getPlayers();
+        		runOnUiThread(new Runnable() {
+        			public void run() {
+        				mPlayers = players;
+        				mAdapter.notifyDataSetChanged();
+        			}
+        		});
+        	}
+        });
+    }
+
+    /**
+     * Adapter which shows one player per row: name and handicap, then their other aggregates.
+     */
+    private class PlayerAdapter extends BaseAdapter {
+		public int getCount() {
+			return mPlayers.length;
+		}
+
+		public Object getItem(int position) {
+			return mPlayers[position];
+		}
+
+		public long getItemId(int position) {
+			return position;
+		}
+
+		public View getView(int position, View convertView, ViewGroup parent) {
+			View v = convertView;
+			if (v == null)
+				v = LayoutInflater.from(PlayersScreen.this).inflate(
+						android.R.layout.simple_list_item_2, parent, false);
+			TextView title = (TextView) v.findViewById(android.R.id.text1);
+			TextView details = (TextView) v.findViewById(android.R.id.text2);
+
+			PlayerHistory.Player p = mPlayers[position];
+			int handicap = p.getHandicap();
+			title.setText(p.getName() + " - handicap " + ScoreText.signedDecimal(handicap, 10));
+
+			int rounds = p.getRoundCount();
+			int holes = (int) p.getTotalHolesPlayed();
+			StringBuilder b = new StringBuilder();
+			b.append(rounds).append(rounds == 1 ? " round, " : " rounds, ");
+			b.append(ScoreText.decimal((int) p.getTotalStrokes(), holes)).append(" per hole");
+			int best = p.getBestRound();
+			b.append(", best ").append(ScoreText.number(p.getStrokes(best)));
+			b.append(" (").append(ScoreText.signed(p.getVsPar(best))).append(") over ");
+			b.append(p.getHolesPlayed(best)).append(" holes on ");
+			b.append(mDateFormat.format(new Date(p.getDate(best))));
+			details.setText(b);
+			return v;
+		}
+    }
+}
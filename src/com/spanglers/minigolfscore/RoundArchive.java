@@ -0,0 +1,285 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import android.content.ContextWrapper;
+
+/**
+ * Archive of finished rounds, so clearing the scores doesn't throw them away.
+ *
+ * Rounds are appended to a segment file, each as a save file record with no undo history.  A
+ * separate index file has a fixed-size entry per round, holding where its record is along with
+ * a summary for listing it: the date, the course's layout and the leading players' totals.
+ * Entries are fixed-size, so any page of the list is a single read from the index, and a round
+ * is only decoded when it's opened.
+ *
+ * A round's record is written before its index entry, so if the app dies part way through an
+ * append, the partial record is simply overwritten by the next one.
+ */
+class RoundArchive {
+	static final String SEGMENT_FILENAME = "rounds.dat";	// Round records
+	static final String INDEX_FILENAME = "rounds.idx";		// Index of rounds
+	static final int INDEX_COOKIE = 20000614;	// Cookie at start of index
+	static final int INDEX_VERSION = 1;			// Current index format version
+	static final int INDEX_HEADER_SIZE = 8;		// Cookie and version
+	static final int SUMMARY_PLAYERS = 4;		// Leading players in each summary
+	static final int NAME_BYTES = 24;			// Longest UTF-8 name in a summary; longer are cut
+	private static final int SLOT_SIZE = NAME_BYTES + 6;	// Name, strokes, vs. par, holes played
+	static final int ENTRY_SIZE = 30 + SUMMARY_PLAYERS * SLOT_SIZE;	// Size of an index entry
+
+	/**
+	 * Summary of an archived round, from its index entry.
+	 */
+	static class Summary {
+		int mIndex;				// Position in the archive; 0 is the oldest
+		long mDate;				// When the round was archived, in ms since the epoch
+		int mPlayerCount;		// Number of players
+		int mHoleCount;			// Number of holes
+		int mTotalPar;			// Sum of par for all holes
+		int mCourse;			// Fingerprint of par for each hole, to spot the same course
+		String[] mNames;		// Leading players, up to SUMMARY_PLAYERS, leader first
+		int[] mTotalStrokes;	// Their total strokes
+		int[] mTotalVsPar;		// Their totals relative to par
+		int[] mHolesPlayed;		// How many holes they played
+	}
+
+	private final File mSegmentFile;
+	private final File mIndexFile;
+
+	RoundArchive(ContextWrapper wrapper) {
+		mSegmentFile = wrapper.getFileStreamPath(SEGMENT_FILENAME);
+		mIndexFile = wrapper.getFileStreamPath(INDEX_FILENAME);
+	}
+
+	/**
+	 * @return Number of archived rounds.
+	 */
+	synchronized int getCount() {
+		long length = mIndexFile.length();
+		return length < INDEX_HEADER_SIZE ? 0 : (int) ((length - INDEX_HEADER_SIZE) / ENTRY_SIZE);
+	}
+
+	/**
+	 * Fingerprint the course a round was played on.  The sheet doesn't name courses, so rounds
+	 * with the same par on every hole are taken to be on the same course.
+	 */
+	static int courseOf(ScoreData round) {
+		int[] par = new int[round.getHoleCount()];
+		for (int h = 0; h < par.length; h++)
+			par[h] = round.getPar(h);
+		return Arrays.hashCode(par);
+	}
+
+	/**
+	 * Append a round to the archive.  May be called from a background thread.
+	 *
+	 * @param round
+	 *            Round to archive.  Its undo history is archived too, so should be empty; see
+	 *            ScoreData.roundSnapshot().
+	 * @param date
+	 *            When the round was played, in ms since the epoch.
+	 * @return Position of the round in the archive.
+	 */
+	synchronized int append(ScoreData round, long date) throws IOException {
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		round.writeSaveData(record);
+
+		RandomAccessFile index = new RandomAccessFile(mIndexFile, "rw");
+		try {
+			// Start a new index if there isn't a good one
+			if (index.length() < INDEX_HEADER_SIZE || index.readInt() != INDEX_COOKIE
+					|| index.readInt() != INDEX_VERSION) {
+				index.setLength(0);
+				index.writeInt(INDEX_COOKIE);
+				index.writeInt(INDEX_VERSION);
+			}
+
+			// Drop any partial entry, and put the record after the last whole one
+			int count = getCount();
+			long offset = 0;
+			if (count > 0) {
+				index.seek(INDEX_HEADER_SIZE + (long) (count - 1) * ENTRY_SIZE + 8);
+				offset = index.readLong();
+				offset += index.readInt();
+			}
+			index.setLength(INDEX_HEADER_SIZE + (long) count * ENTRY_SIZE);
+
+			RandomAccessFile segment = new RandomAccessFile(mSegmentFile, "rw");
+			try {
+				segment.setLength(offset);
+				segment.seek(offset);
+				segment.write(record.toByteArray());
+				segment.getFD().sync();	// Record must be down before its entry
+			} finally {
+				segment.close();
+			}
+
+			index.seek(index.length());
+			index.write(makeEntry(round, date, offset, record.size()));
+			return count;
+		} finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * Build the index entry for a round.
+	 */
+	private static byte[] makeEntry(ScoreData round, long date, long offset, int length)
+			throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(ENTRY_SIZE);
+		b.putLong(date);
+		b.putLong(offset);
+		b.putInt(length);
+		b.putShort((short) round.getPlayerCount());
+		b.putShort((short) round.getHoleCount());
+		b.putShort((short) round.getTotalPar());
+		b.putInt(courseOf(round));
+
+		// Summarize the leaders, in order of standing
+		Leaderboard standings = new Leaderboard(round, Leaderboard.ORDER_VS_PAR,
+				Leaderboard.TIEBREAK_BACK_NINE);
+		int[] top = new int[SUMMARY_PLAYERS];
+		int shown = standings.getTop(top, SUMMARY_PLAYERS);
+		for (int i = 0; i < shown; i++) {
+			int p = top[i];
+			putName(b, round.getPlayerName(p));
+			b.putShort((short) round.getTotalStrokes(p));
+			b.putShort((short) round.getTotalVsPar(p));
+			b.putShort((short) round.getHolesPlayed(p));
+		}
+		return b.array();	// Unused slots are left 0
+	}
+
+	/**
+	 * Put a name in a fixed-size slot, as UTF-8 padded with 0.  Long names are cut at a
+	 * character boundary.
+	 */
+	private static void putName(ByteBuffer b, String name) throws IOException {
+		byte[] utf8 = name.getBytes("UTF-8");
+		int length = utf8.length;
+		if (length > NAME_BYTES) {
+			length = NAME_BYTES;
+			while (length > 0 && (utf8[length] & 0xC0) == 0x80)
+				length--;	// Don't split a multi-byte character
+		}
+		b.put(utf8, 0, length);
+		b.position(b.position() + NAME_BYTES - length);
+	}
+
+	/**
+	 * Read the summaries for a range of rounds.
+	 *
+	 * @param first
+	 *            Position of the first round.
+	 * @param count
+	 *            Number of rounds.  Fewer are returned if the archive ends first.
+	 */
+	synchronized Summary[] readPage(int first, int count) throws IOException {
+		count = Math.max(0, Math.min(count, getCount() - first));
+		byte[] entries = new byte[count * ENTRY_SIZE];
+		if (count > 0) {
+			RandomAccessFile index = new RandomAccessFile(mIndexFile, "r");
+			try {
+				index.seek(INDEX_HEADER_SIZE + (long) first * ENTRY_SIZE);
+				index.readFully(entries);
+			} finally {
+				index.close();
+			}
+		}
+
+		ByteBuffer b = ByteBuffer.wrap(entries);
+		Summary[] page = new Summary[count];
+		for (int i = 0; i < count; i++) {
+			Summary s = new Summary();
+			s.mIndex = first + i;
+			b.position(i * ENTRY_SIZE);
+			s.mDate = b.getLong();
+			b.getLong();	// Offset
+			b.getInt();		// Length
+			s.mPlayerCount = b.getShort() & 0xFFFF;
+			s.mHoleCount = b.getShort() & 0xFFFF;
+			s.mTotalPar = b.getShort() & 0xFFFF;
+			s.mCourse = b.getInt();
+
+			int shown = Math.min(s.mPlayerCount, SUMMARY_PLAYERS);
+			s.mNames = new String[shown];
+			s.mTotalStrokes = new int[shown];
+			s.mTotalVsPar = new int[shown];
+			s.mHolesPlayed = new int[shown];
+			for (int j = 0; j < shown; j++) {
+				int start = b.position();
+				int length = 0;
+				while (length < NAME_BYTES && entries[start + length] != 0)
+					length++;
+				s.mNames[j] = new String(entries, start, length, "UTF-8");
+				b.position(start + NAME_BYTES);
+				s.mTotalStrokes[j] = b.getShort() & 0xFFFF;
+				s.mTotalVsPar[j] = b.getShort();
+				s.mHolesPlayed[j] = b.getShort() & 0xFFFF;
+			}
+			page[i] = s;
+		}
+		return page;
+	}
+
+	/**
+	 * Read an archived round in full.
+	 *
+	 * @return The round, or null if its record can't be read.
+	 */
+	synchronized ScoreData readRound(int position) throws IOException {
+		if (position < 0 || position >= getCount())
+			return null;
+
+		long offset;
+		int length;
+		RandomAccessFile index = new RandomAccessFile(mIndexFile, "r");
+		try {
+			index.seek(INDEX_HEADER_SIZE + (long) position * ENTRY_SIZE + 8);
+			offset = index.readLong();
+			length = index.readInt();
+		} finally {
+			index.close();
+		}
+
+		byte[] record = new byte[length];
+		RandomAccessFile segment = new RandomAccessFile(mSegmentFile, "r");
+		try {
+			segment.seek(offset);
+			segment.readFully(record);
+		} finally {
+			segment.close();
+		}
+
+		ScoreData round = new ScoreData();
+		try {
+			if (round.readSaveData(new ByteArrayInputStream(record)))
+				return round;
+		} catch (ClassNotFoundException e) {
+			// Records are never written with ObjectOutputStream
+		}
+		return null;
+	}
+}
@@ -1,458 +1,1603 @@
-/* Copyright 2009 Google Inc.
- * 
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- * 
- * http://www.apache.org/licenses/LICENSE-2.0
- * 
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License. 
- */
-
-package com.spanglers.minigolfscore;
-
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-
-import android.content.ContextWrapper;
-//import android.util.Log;
-
-public class ScoreData {
-	// Constants
-	static final int SAVE_FILE_COOKIE = 20000613; // Cookie at start of filename
-	static final int SAVE_FILE_VERSION = 6; // Current data format version for save file
-	static final int DEFAULT_PAR = 3; // Default par for new holes
-	static final int UNDO_NONE = 0;	// Nothing to undo
-	static final int UNDO_PAR = 1;	// Can undo setPar()
-	static final int UNDO_PLAYER_NAME = 2;	// Can undo setPlayerName()
-	static final int UNDO_SCORE = 3;	// Can undo setScore()
-	
-	// Score data
-	private int mPlayerCount = 2; // Number of players
-	private int mHoleCount = 18; // Number of holes
-	private String[] mPlayerNames; // Player names
-	private int[] mPar; // Par for each hole
-	private int[][] mScores; // Score for each player,hole
-
-	// Undo data
-	private int mUndoType = 0;	// Type of undo data
-	private int mUndoValue;	// Value to undo, for par/score
-	private String mUndoName; // Value to undo, for setPlayerName()
-	private int mUndoPlayer; // Player index for undo
-	private int mUndoHole; // Hole index for undo
-	
-	// Saved settings
-	private int mSavedSelPlayer; // Selected player
-	private int mSavedSelHole; // Selected hole
-	private boolean mSavedScoreRelative; // Is score displayed relative to par
-	private boolean mForceLandscape = false; // Force landscape mode?
-
-	/**
-	 * Constructor.
-	 */
-	public ScoreData() {
-		initData();
-	}
-
-	/**
-	 * @return Force-landscape setting
-	 */
-	public boolean getForceLandscape() {
-		return mForceLandscape;
-	}
-
-	public int getHoleCount() {
-		return mHoleCount;
-	}
-
-	/**
-	 * Get par for the specified hole.
-	 * 
-	 * @param hole
-	 *            Hole index to get (0-based, so hole 1 is index 0).
-	 * @return Par for the specified hole.
-	 */
-	public int getPar(int hole) {
-		if (hole < 0 || hole >= mHoleCount)
-			return -1; // TODO: Throw exception
-		return mPar[hole];
-	}
-
-	public int getPlayerCount() {
-		return mPlayerCount;
-	}
-
-	/**
-	 * Get the name of the specified player.
-	 * 
-	 * @param player
-	 *            Player index to get.
-	 * @return The name of the player.
-	 */
-	public String getPlayerName(int player) {
-		if (player < 0 || player >= mPlayerCount)
-			return "bad player index"; // TODO: Throw exception
-		return mPlayerNames[player];
-	}
-
-	public boolean getSavedScoreRelative() {
-		return mSavedScoreRelative;
-	}
-
-	public int getSavedSelHole() {
-		return mSavedSelHole;
-	}
-
-	public int getSavedSelPlayer() {
-		return mSavedSelPlayer;
-	}
-
-	/**
-	 * Get score for the player for the hole.
-	 * 
-	 * @param player
-	 *            Player index.
-	 * @param hole
-	 *            Hole index (0-based).
-	 * @return
-	 */
-	public int getScore(int player, int hole) {
-		if (hole < 0 || hole >= mHoleCount || player < 0 || player >= mPlayerCount)
-			return -1; // TODO: Throw exception
-
-		return mScores[player][hole];
-	}
-
-	/**
-	 * Initialize all fields.
-	 */
-	private void initData() {
-		resetScores();
-		resetPlayerNamesAndPar();
-
-		mSavedSelPlayer = 0;
-		mSavedSelHole = 0;
-		mSavedScoreRelative = false;
-	}
-
-	/**
-	 * Restore settings from a private file.
-	 */
-	public void loadFromFile(ContextWrapper wrapper, String filename) {
-		ObjectInputStream s = null;
-		boolean goodSave = false;
-		try {
-			FileInputStream f = wrapper.openFileInput(filename);
-			s = new ObjectInputStream(f);
-
-			// Check header to make sure this is a file we know how to read
-			if (s.readInt() != SAVE_FILE_COOKIE) {
-				// Log.d("MiniGolfScore", "Save filename cookie mismatch");
-				return;
-			}
-			if (s.readInt() != SAVE_FILE_VERSION) {
-				// Log.d("MiniGolfScore", "Save filename version mismatch");
-				return;
-			}
-
-			mPlayerCount = s.readInt();
-			mHoleCount = s.readInt();
-
-			mPlayerNames = new String[mPlayerCount];
-			for (int p = 0; p < mPlayerCount; p++)
-				mPlayerNames[p] = (String) s.readObject();
-
-			mPar = new int[mHoleCount];
-			for (int h = 0; h < mHoleCount; h++)
-				mPar[h] = s.readInt();
-
-			mScores = new int[mPlayerCount][mHoleCount];
-			for (int p = 0; p < mPlayerCount; p++) {
-				for (int h = 0; h < mHoleCount; h++)
-					mScores[p][h] = s.readInt();
-			}
-
-			mSavedScoreRelative = s.readBoolean();
-			mSavedSelPlayer = s.readInt();
-			mSavedSelHole = s.readInt();
-			mForceLandscape = s.readBoolean();
-			
-			// Read undo data
-			mUndoType = s.readInt();
-			mUndoHole = s.readInt();
-			mUndoPlayer = s.readInt();
-			mUndoValue = s.readInt();
-			mUndoName = (String) s.readObject();
-			
-			goodSave = true;
-
-		} catch (FileNotFoundException e) {
-			// Log.d("MiniGolfScore", "No save file found");
-		} catch (IOException e) {
-			// Log.d("MiniGolfScore", "Error parsing save file");
-		} catch (ClassNotFoundException e) {
-			// Log.d("MiniGolfScore", "Error parsing save file - class not found");
-		} finally {
-			if (s != null) {
-				try {
-					s.close();
-				} catch (IOException e) {
-					// Log.d("MiniGolfScore", "Error closing save file");
-					// TODO: do something about being unable to read the file
-				}
-			}
-			if (!goodSave)
-				initData(); // Didn't find a good save, so reinitialize data
-		}
-	}
-
-	private void resetPlayerNamesAndPar() {
-		mPlayerNames = new String[mPlayerCount];
-		for (int p = 0; p < mPlayerCount; p++)
-			mPlayerNames[p] = String.format("Player %d", p + 1);
-
-		mPar = new int[mHoleCount];
-		for (int h = 0; h < mHoleCount; h++)
-			mPar[h] = DEFAULT_PAR;
-	}
-
-	/**
-	 * Resets and reallocates scores.
-	 */
-	public void resetScores() {
-
-		mScores = new int[mPlayerCount][mHoleCount];
-		for (int p = 0; p < mPlayerCount; p++) {
-			for (int h = 0; h < mHoleCount; h++)
-				mScores[p][h] = 0;
-		}
-		resetUndo();	// This action cannot be undone
-	}
-
-	/**
-	 * Reset undo buffer
-	 */
-	private void resetUndo() {
-		mUndoType = UNDO_NONE;	
-		mUndoName = "";
-		mUndoValue = 0;
-		mUndoPlayer = 0;
-		mUndoHole = 0;
-	}
-
-	/**
-	 * Save settings to a private file.
-	 */
-	public void saveToFile(ContextWrapper wrapper, String filename) {
-		// If settings aren't actually dirty, we don't need to save them
-		// TODO: This doesn't work now that we could potentially be saving to multiple files.
-		// if (!mDirty)
-		//	 return;
-
-		try {
-			FileOutputStream f = wrapper.openFileOutput(filename, 0);
-			ObjectOutputStream s = new ObjectOutputStream(f);
-			s.writeInt(SAVE_FILE_COOKIE);
-			s.writeInt(SAVE_FILE_VERSION);
-
-			// Write scorepad
-			s.writeInt(mPlayerCount);
-			s.writeInt(mHoleCount);
-
-			for (int p = 0; p < mPlayerCount; p++)
-				s.writeObject(mPlayerNames[p]);
-
-			for (int h = 0; h < mHoleCount; h++)
-				s.writeInt(mPar[h]);
-
-			for (int p = 0; p < mPlayerCount; p++) {
-				for (int h = 0; h < mHoleCount; h++)
-					s.writeInt(mScores[p][h]);
-			}
-
-			// Write settings
-			s.writeBoolean(mSavedScoreRelative);
-			s.writeInt(mSavedSelPlayer);
-			s.writeInt(mSavedSelHole);
-			s.writeBoolean(mForceLandscape);
-			
-			// Write undo data
-			// TODO: Would be more elegant to save only the necessary fields
-			s.writeInt(mUndoType);
-			s.writeInt(mUndoHole);
-			s.writeInt(mUndoPlayer);
-			s.writeInt(mUndoValue);
-			s.writeObject(mUndoName);
-			
-			s.close();
-		} catch (FileNotFoundException e) {
-			// TODO: do something about being unable to save the file
-		} catch (IOException e) {
-			// TODO: do something about being unable to save the file
-		}
-	}
-
-	/**
-	 * Set the size of the sheet. Old data will be clipped to fit the new size.
-	 * 
-	 * @param players
-	 *            New number of players
-	 * @param holes
-	 *            New number of holes
-	 */
-	public void setDimensions(int players, int holes) {
-		if (players < 1 || players > 20 || holes < 1 || holes > 90)
-			return; // TODO: Throw exception
-
-		// Preserve references to old arrays
-		String[] oldPlayerNames = mPlayerNames;
-		int[] oldPar = mPar;
-		int[][] oldScores = mScores;
-
-		// Copy based on the smaller of the old and new sizes
-		int copyPlayerCount = Math.min(mPlayerCount, players);
-		int copyHoleCount = Math.min(mHoleCount, holes);
-
-		mPlayerCount = players;
-		mHoleCount = holes;
-
-		// Reallocate arrays
-		resetPlayerNamesAndPar();
-		resetScores();
-
-		// Copy over old data
-		for (int p = 0; p < copyPlayerCount; p++) {
-			mPlayerNames[p] = oldPlayerNames[p];
-			for (int h = 0; h < copyHoleCount; h++)
-				mScores[p][h] = oldScores[p][h];
-		}
-		for (int h = 0; h < copyHoleCount; h++)
-			mPar[h] = oldPar[h];
-	}
-
-	/**
-	 * @param Set force-landscape setting
-	 */
-	public void setForceLandscape(boolean forceLandscape) {
-		mForceLandscape = forceLandscape;
-	}
-	
-	/**
-	 * Set par for a hole.
-	 * 
-	 * @param hole
-	 *            Hole index (0-based).
-	 * @param par
-	 */
-	public void setPar(int hole, int par) {
-		if (hole < 0 || hole >= mHoleCount)
-			return; // TODO: Throw exception
-		if (mPar[hole] == par)
-			return;
-		
-		// Save undo data
-		mUndoType = UNDO_PAR;
-		mUndoHole = hole;
-		mUndoValue = mPar[hole];
-		
-		mPar[hole] = par;
-	}
-
-	/**
-	 * Set the name of a player.
-	 * 
-	 * @param player
-	 *            Player index.
-	 * @param name
-	 *            Name for the player.
-	 */
-	public void setPlayerName(int player, String name) {
-		if (player < 0 || player >= mPlayerCount)
-			return; // TODO: Throw exception
-		if (mPlayerNames[player].equals(name))
-			return;
-		
-		// Save undo data
-		mUndoType = UNDO_PLAYER_NAME;
-		mUndoPlayer = player;
-		mUndoName = mPlayerNames[player];
-		
-		mPlayerNames[player] = name;
-	}
-
-	public void setSavedScoreRelative(boolean savedScoreRelative) {
-		mSavedScoreRelative = savedScoreRelative;
-	}
-
-	public void setSavedSelHole(int savedSelHole) {
-		mSavedSelHole = savedSelHole;
-	}
-
-	public void setSavedSelPlayer(int savedSelPlayer) {
-		mSavedSelPlayer = savedSelPlayer;
-	}
-
-	/**
-	 * Set the score for a player.
-	 * 
-	 * @param player
-	 *            Player number.
-	 * @param hole
-	 *            Hole number.
-	 * @param score
-	 *            Score to set.
-	 */
-	public void setScore(int player, int hole, int score) {
-		if (hole < 0 || hole >= mHoleCount || player < 0 || player >= mPlayerCount)
-			return; // TODO: Throw exception
-
-		if (mScores[player][hole] == score)
-			return;	// No change
-		
-		// Save undo data
-		mUndoType = UNDO_SCORE;
-		mUndoPlayer = player;
-		mUndoHole = hole;
-		mUndoValue = mScores[player][hole];
-		
-		mScores[player][hole] = score;
-	}
-
-	/**
-	 * Undoes the last setScore(), setPlayerName() or setPar().
-	 * @return true if something was undone.
-	 */
-	public boolean undoLast() {
-		switch(mUndoType) {
-		case UNDO_PAR:
-			setPar(mUndoHole, mUndoValue);
-			setSavedSelHole(mUndoHole);
-			return true;
-		case UNDO_PLAYER_NAME:
-			setPlayerName(mUndoPlayer, mUndoName);
-			setSavedSelPlayer(mUndoPlayer);
-			return true;
-		case UNDO_SCORE:
-			setScore(mUndoPlayer, mUndoHole, mUndoValue);
-			setSavedSelHole(mUndoHole);
-			setSavedSelPlayer(mUndoPlayer);
-			return true;
-		}
-		return false;
-	}
-	
-	/**
-	 * @return true if there is an action to undo.
-	 */
-	public boolean canUndo() {
-		return (mUndoType != UNDO_NONE);
-	}
+/* Copyright 2009 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+//import android.util.Log;
+
+public class ScoreData {
+	// Constants
+	static final int SAVE_FILE_COOKIE = 20000613; // Cookie at start of filename
+	static final int SAVE_FILE_VERSION = 8; // Current data format version for save file
+	static final int SINGLE_UNDO_SAVE_FILE_VERSION = 7; // Last version which saved only one undo
+	static final int LEGACY_SAVE_FILE_VERSION = 6; // Last version written with ObjectOutputStream
+	static final int MAPPED_FILE_VERSION = 107; // Data format version for fixed-layout save file
+	static final int SAVE_FILE_HEADER_SIZE = 17; // Fixed-size fields in a save file
+	static final int FLAG_SCORE_RELATIVE = 0x01; // Save file flag: score is relative to par
+	static final int FLAG_FORCE_LANDSCAPE = 0x02; // Save file flag: force landscape
+	static final int FLAG_SORT_BY_STANDING = 0x04; // Save file flag: players are sorted by standing
+	static final int DEFAULT_PAR = 3; // Default par for new holes
+	static final int MAX_VALUE = 255; // Largest score or par; these are saved as bytes
+	static final int MAX_PLAYERS = 5000; // Largest number of players; must fit in a short
+	static final int MAX_HOLES = 500; // Largest number of holes; must fit in a short
+	static final int MAX_NAME_BYTES = 4096; // Longest player name in UTF-8; must fit in a short
+	static final int UNDO_NONE = 0;	// Nothing to undo
+	static final int UNDO_PAR = 1;	// Can undo setPar()
+	static final int UNDO_PLAYER_NAME = 2;	// Can undo setPlayerName()
+	static final int UNDO_SCORE = 3;	// Can undo setScore()
+	static final int UNDO_CAPACITY = 256;	// Number of edits which can be undone
+	static final int STORAGE_STREAM = 0;	// Save files are rewritten on each save
+	static final int STORAGE_MAPPED = 1;	// Save file is memory-mapped and updated in place
+	static final int STORAGE_JOURNAL = 2;	// Changes are appended to a journal next to the save file
+	private static final int BLOCK_SHIFT = 6;	// log2 of the number of players in a block of scores
+	private static final int BLOCK_PLAYERS = 1 << BLOCK_SHIFT;	// Players in a block of scores
+	
+	// Score data
+	private int mPlayerCount = 2; // Number of players
+	private int mHoleCount = 18; // Number of holes
+	private int mPlayerCapacity; // Number of players there's room for
+	private int mHoleCapacity; // Number of holes there's room for; also the row stride of a block
+	private String[] mPlayerNames; // Player names
+	private int[] mPar; // Par for each hole
+	private byte[][] mScoreBlocks; // Scores in blocks of BLOCK_PLAYERS rows; null blocks are all 0
+
+	// Running totals, kept up to date as the score data changes
+	private int[] mTotalStrokes; // Sum of each player's scores
+	private int[] mTotalVsPar; // Sum of each player's scores relative to par, for holes played
+	private int[] mHolesPlayed; // Number of holes each player has a score for
+	private int mTotalPar; // Sum of par for all holes
+	private ScoreStats mStats; // Per-hole and per-player statistics
+
+	// Undo data
+	private UndoHistory mHistory; // Edits which can be undone or redone
+	
+	// Saved settings
+	private int mSavedSelPlayer; // Selected player
+	private int mSavedSelHole; // Selected hole
+	private boolean mSavedScoreRelative; // Is score displayed relative to par
+	private boolean mSavedSortByStanding; // Are players displayed in order of standing
+	private boolean mForceLandscape = false; // Force landscape mode?
+
+	// Storage
+	private int mStorageMode = STORAGE_STREAM;	// How save files are written
+	private int mFlushPolicy = MappedScoreFile.FLUSH_ON_SAVE;	// When mapped changes are forced
+	private MappedScoreFile mMappedFile;	// Mapped save file, if any
+	private ScoreJournal mJournal;	// Journal changes are being recorded to, if any
+
+	// Dirty tracking
+	private long mGeneration = 0;	// Incremented on every change to the data
+	private final HashMap<String, SaveStamp> mSaveStamps = new HashMap<String, SaveStamp>();	// By filename
+
+	// Change notification
+	private final ArrayList<OnChangeListener> mListeners = new ArrayList<OnChangeListener>();
+	private boolean mLoading = false;	// Hold back notifications until the load is done
+
+	/**
+	 * Interface for listeners to be told which part of the data changed.  Listeners are called
+	 * on the thread which changed the data, after the change has been made.
+	 */
+	public interface OnChangeListener {
+		/**
+		 * Called when a score has changed.  The player's totals have changed with it.
+		 */
+		void onScoreChanged(int player, int hole);
+
+		/**
+		 * Called when par for a hole has changed.  The total par, and the totals relative to
+		 * par of everyone who has played the hole, have changed with it.
+		 */
+		void onParChanged(int hole);
+
+		/**
+		 * Called when a player's name has changed.
+		 */
+		void onPlayerNameChanged(int player);
+
+		/**
+		 * Called when the whole sheet may have changed: the dimensions were set, the scores
+		 * were reset, or the data was loaded.
+		 */
+		void onSheetChanged();
+	}
+
+	/**
+	 * Record of the last time the data was saved to or loaded from a file.
+	 */
+	private static class SaveStamp {
+		long mGeneration;	// Generation of the data in the file
+		long mModified;		// Modification time of the file
+		long mLength;		// Length of the file
+	}
+
+	// Stamp of a file which was never loaded or saved, and so shouldn't exist
+	private static final SaveStamp NO_STAMP = new SaveStamp();
+	static {
+		NO_STAMP.mGeneration = -1;
+	}
+
+	/**
+	 * Constructor.
+	 */
+	public ScoreData() {
+		mHistory = new UndoHistory(UNDO_CAPACITY);
+		mStats = new ScoreStats(this);
+		initData();
+	}
+
+	/**
+	 * Copy constructor.  The copy shares no arrays with the source, and isn't attached to any
+	 * save file.
+	 */
+	private ScoreData(ScoreData source) {
+		mPlayerCount = source.mPlayerCount;
+		mHoleCount = source.mHoleCount;
+		mPlayerCapacity = source.mPlayerCapacity;
+		mHoleCapacity = source.mHoleCapacity;
+		mPlayerNames = source.mPlayerNames.clone();
+		mPar = source.mPar.clone();
+		mScoreBlocks = new byte[source.mScoreBlocks.length][];
+		for (int b = 0; b < mScoreBlocks.length; b++) {
+			if (source.mScoreBlocks[b] != null)
+				mScoreBlocks[b] = source.mScoreBlocks[b].clone();
+		}
+		mTotalStrokes = source.mTotalStrokes.clone();
+		mTotalVsPar = source.mTotalVsPar.clone();
+		mHolesPlayed = source.mHolesPlayed.clone();
+		mTotalPar = source.mTotalPar;
+		mStats = source.mStats.copy(this);
+
+		mHistory = source.mHistory.copy();
+
+		mSavedSelPlayer = source.mSavedSelPlayer;
+		mSavedSelHole = source.mSavedSelHole;
+		mSavedScoreRelative = source.mSavedScoreRelative;
+		mSavedSortByStanding = source.mSavedSortByStanding;
+		mForceLandscape = source.mForceLandscape;
+	}
+
+	/**
+	 * Called after every change to the data.
+	 */
+	private void changed() {
+		mGeneration++;
+	}
+
+	/**
+	 * @return Generation of the data, which increases on every change.
+	 */
+	long getGeneration() {
+		return mGeneration;
+	}
+
+	/**
+	 * Add a listener to be told about changes to the data.  Snapshots don't inherit listeners.
+	 */
+	public void addOnChangeListener(OnChangeListener listener) {
+		mListeners.add(listener);
+	}
+
+	public void removeOnChangeListener(OnChangeListener listener) {
+		mListeners.remove(listener);
+	}
+
+	/* Notifications.  These loop by index so that notifying doesn't allocate an iterator. */
+	private void notifyScoreChanged(int player, int hole) {
+		if (mLoading)
+			return;
+		for (int i = 0; i < mListeners.size(); i++)
+			mListeners.get(i).onScoreChanged(player, hole);
+	}
+	private void notifyParChanged(int hole) {
+		if (mLoading)
+			return;
+		for (int i = 0; i < mListeners.size(); i++)
+			mListeners.get(i).onParChanged(hole);
+	}
+	private void notifyPlayerNameChanged(int player) {
+		if (mLoading)
+			return;
+		for (int i = 0; i < mListeners.size(); i++)
+			mListeners.get(i).onPlayerNameChanged(player);
+	}
+	private void notifySheetChanged() {
+		if (mLoading)
+			return;
+		for (int i = 0; i < mListeners.size(); i++)
+			mListeners.get(i).onSheetChanged();
+	}
+
+	/**
+	 * @return A copy of the data, for saving while this one continues to change.
+	 */
+	ScoreData snapshot() {
+		return new ScoreData(this);
+	}
+
+	/**
+	 * @return A copy of the sheet without its undo history, for archiving a finished round.
+	 */
+	ScoreData roundSnapshot() {
+		ScoreData round = new ScoreData(this);
+		round.mHistory.clear();
+		return round;
+	}
+
+	/**
+	 * Record that files hold the specified generation of the data.  Files written together are
+	 * recorded together, so that needsReload() never sees one recorded without the other.  May
+	 * be called from the background save thread.
+	 */
+	void markSaved(ScoreStorage storage, long generation, String... filenames) {
+		synchronized (mSaveStamps) {
+			for (int i = 0; i < filenames.length; i++) {
+				SaveStamp stamp = mSaveStamps.get(filenames[i]);
+				if (stamp == null) {
+					stamp = new SaveStamp();
+					mSaveStamps.put(filenames[i], stamp);
+				}
+				stamp.mGeneration = generation;
+				stamp.mModified = storage.lastModified(filenames[i]);
+				stamp.mLength = storage.length(filenames[i]);
+			}
+		}
+	}
+
+	/**
+	 * Check whether the data should be loaded again from a save file, because something else has
+	 * written the file or its journal since the data last loaded or saved them.  That's only so
+	 * if every change to the data has been saved; changes which are still being saved, or whose
+	 * save failed, are newer than anything in the file, so they're kept.  This doesn't wait for
+	 * the background saver, so it's cheap enough to call on the UI thread.
+	 *
+	 * A mapped file is the data's own memory, so it's always current.
+	 */
+	public boolean needsReload(ScoreStorage storage, String filename) {
+		if (mMappedFile != null && mMappedFile.getFile().equals(storage.getFile(filename)))
+			return false;
+
+		String journal = filename + ScoreJournal.SUFFIX;
+		long saved, modified, length, journalModified, journalLength;
+		synchronized (mSaveStamps) {
+			SaveStamp stamp = mSaveStamps.get(filename);
+			SaveStamp journalStamp = mSaveStamps.get(journal);
+			if (stamp == null && journalStamp == null)
+				return false;	// Never loaded or saved, so there's nothing to compare with
+			if (stamp == null)
+				stamp = NO_STAMP;
+			if (journalStamp == null)
+				journalStamp = NO_STAMP;
+			saved = Math.max(stamp.mGeneration, journalStamp.mGeneration);
+			modified = stamp.mModified;
+			length = stamp.mLength;
+			journalModified = journalStamp.mModified;
+			journalLength = journalStamp.mLength;
+		}
+		if (saved != mGeneration)
+			return false;
+		return storage.lastModified(filename) != modified || storage.length(filename) != length
+				|| storage.lastModified(journal) != journalModified
+				|| storage.length(journal) != journalLength;
+	}
+
+	/**
+	 * Check whether a file already holds the current data.  The file's modification time and
+	 * length are checked too, in case something else has written it since.
+	 */
+	private boolean isSaved(ScoreStorage storage, String filename) {
+		SaveStamp stamp;
+		synchronized (mSaveStamps) {
+			stamp = mSaveStamps.get(filename);
+			if (stamp == null || stamp.mGeneration != mGeneration)
+				return false;
+		}
+		return storage.lastModified(filename) == stamp.mModified
+				&& storage.length(filename) == stamp.mLength;
+	}
+
+	/**
+	 * @return Force-landscape setting
+	 */
+	public boolean getForceLandscape() {
+		return mForceLandscape;
+	}
+
+	public int getHoleCount() {
+		return mHoleCount;
+	}
+
+	/**
+	 * Get par for the specified hole.
+	 * 
+	 * @param hole
+	 *            Hole index to get (0-based, so hole 1 is index 0).
+	 * @return Par for the specified hole.
+	 */
+	public int getPar(int hole) {
+		if (hole < 0 || hole >= mHoleCount)
+			return -1; // TODO: Throw exception
+		return mPar[hole];
+	}
+
+	public int getPlayerCount() {
+		return mPlayerCount;
+	}
+
+	/**
+	 * Get the name of the specified player.
+	 * 
+	 * @param player
+	 *            Player index to get.
+	 * @return The name of the player.
+	 */
+	public String getPlayerName(int player) {
+		if (player < 0 || player >= mPlayerCount)
+			return "bad player index"; // TODO: Throw exception
+		return mPlayerNames[player];
+	}
+
+	public boolean getSavedScoreRelative() {
+		return mSavedScoreRelative;
+	}
+
+	public boolean getSavedSortByStanding() {
+		return mSavedSortByStanding;
+	}
+
+	public int getSavedSelHole() {
+		return mSavedSelHole;
+	}
+
+	public int getSavedSelPlayer() {
+		return mSavedSelPlayer;
+	}
+
+	/**
+	 * Get score for the player for the hole.
+	 * 
+	 * @param player
+	 *            Player index.
+	 * @param hole
+	 *            Hole index (0-based).
+	 * @return
+	 */
+	public int getScore(int player, int hole) {
+		if (hole < 0 || hole >= mHoleCount || player < 0 || player >= mPlayerCount)
+			return -1; // TODO: Throw exception
+
+		return score(player, hole);
+	}
+
+	/**
+	 * Get a score without checking the indices.
+	 */
+	private int score(int player, int hole) {
+		byte[] block = mScoreBlocks[player >> BLOCK_SHIFT];
+		if (block == null)
+			return 0;
+		return block[rowOffset(player) + hole] & 0xFF;
+	}
+
+	/**
+	 * Store a score without checking the indices or updating totals.  Blocks are only
+	 * allocated once they have a score in them.
+	 */
+	private void putScore(int player, int hole, int score) {
+		byte[] block = mScoreBlocks[player >> BLOCK_SHIFT];
+		if (block == null) {
+			if (score == 0)
+				return;
+			block = new byte[BLOCK_PLAYERS * mHoleCapacity];
+			mScoreBlocks[player >> BLOCK_SHIFT] = block;
+		}
+		block[rowOffset(player) + hole] = (byte) score;
+	}
+
+	/**
+	 * Store a row of scores read from a file.  Rows of all 0 don't allocate anything.
+	 */
+	private void putRow(int player, byte[] row) {
+		byte[] block = mScoreBlocks[player >> BLOCK_SHIFT];
+		if (block == null) {
+			int h = 0;
+			while (h < mHoleCount && row[h] == 0)
+				h++;
+			if (h == mHoleCount)
+				return;
+			block = new byte[BLOCK_PLAYERS * mHoleCapacity];
+			mScoreBlocks[player >> BLOCK_SHIFT] = block;
+		}
+		System.arraycopy(row, 0, block, rowOffset(player), mHoleCount);
+	}
+
+	/**
+	 * @return Offset of a player's row within its block.
+	 */
+	private int rowOffset(int player) {
+		return (player & (BLOCK_PLAYERS - 1)) * mHoleCapacity;
+	}
+
+	/**
+	 * @return Number of blocks needed to hold the specified number of players.
+	 */
+	private static int blocksFor(int players) {
+		return (players + BLOCK_PLAYERS - 1) >> BLOCK_SHIFT;
+	}
+
+	/**
+	 * Get a player's total score, for the holes played so far.
+	 * 
+	 * @param player
+	 *            Player index.
+	 */
+	public int getTotalStrokes(int player) {
+		if (player < 0 || player >= mPlayerCount)
+			return 0; // TODO: Throw exception
+		return mTotalStrokes[player];
+	}
+
+	/**
+	 * Get a player's total score relative to par, for the holes played so far.
+	 * 
+	 * @param player
+	 *            Player index.
+	 */
+	public int getTotalVsPar(int player) {
+		if (player < 0 || player >= mPlayerCount)
+			return 0; // TODO: Throw exception
+		return mTotalVsPar[player];
+	}
+
+	/**
+	 * Get the number of holes a player has a score for.
+	 * 
+	 * @param player
+	 *            Player index.
+	 */
+	public int getHolesPlayed(int player) {
+		if (player < 0 || player >= mPlayerCount)
+			return 0; // TODO: Throw exception
+		return mHolesPlayed[player];
+	}
+
+	/**
+	 * @return Sum of par for all holes.
+	 */
+	public int getTotalPar() {
+		return mTotalPar;
+	}
+
+	/**
+	 * @return Statistics for the sheet, which are kept up to date as it changes.
+	 */
+	ScoreStats getStats() {
+		return mStats;
+	}
+
+	/**
+	 * Recompute all running totals from scratch.  Only needed when the score arrays are
+	 * replaced wholesale; single changes update the totals as they go.
+	 */
+	private void computeTotals() {
+		mTotalPar = 0;
+		for (int h = 0; h < mHoleCount; h++)
+			mTotalPar += mPar[h];
+
+		for (int p = 0; p < mPlayerCount; p++) {
+			mTotalStrokes[p] = 0;
+			mTotalVsPar[p] = 0;
+			mHolesPlayed[p] = 0;
+			byte[] block = mScoreBlocks[p >> BLOCK_SHIFT];
+			if (block == null)
+				continue;
+			int row = rowOffset(p);
+			for (int h = 0; h < mHoleCount; h++) {
+				int score = block[row + h] & 0xFF;
+				if (score > 0) {
+					mTotalStrokes[p] += score;
+					mTotalVsPar[p] += score - mPar[h];
+					mHolesPlayed[p]++;
+				}
+			}
+		}
+		mStats.rebuild();
+	}
+
+	/**
+	 * Clamp a score or par to the range which can be saved.
+	 */
+	private static int clampValue(int value) {
+		if (value < 0)
+			return 0;
+		if (value > MAX_VALUE)
+			return MAX_VALUE;
+		return value;
+	}
+
+	/**
+	 * Shorten a player name to the length which can be saved, without splitting a character.
+	 */
+	private static String clampName(String name) {
+		// UTF-8 takes at most 3 bytes for each UTF-16 char
+		if (name.length() * 3 <= MAX_NAME_BYTES)
+			return name;
+		try {
+			byte[] utf8 = name.getBytes("UTF-8");
+			if (utf8.length <= MAX_NAME_BYTES)
+				return name;
+			int end = MAX_NAME_BYTES;
+			while ((utf8[end] & 0xC0) == 0x80)
+				end--;	// Back up to the first byte of the character
+			return new String(utf8, 0, end, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			return name;	// UTF-8 is always supported
+		}
+	}
+
+	/**
+	 * Initialize all fields.
+	 */
+	private void initData() {
+		allocateSheet();
+		resetPlayerNamesAndPar(0, 0);
+		mHistory.clear();
+
+		mSavedSelPlayer = 0;
+		mSavedSelHole = 0;
+		mSavedScoreRelative = false;
+		mSavedSortByStanding = false;
+		computeTotals();
+	}
+
+	/**
+	 * Restore settings from a save file.
+	 */
+	public void loadFromFile(ScoreStorage storage, String filename) {
+		InputStream f = null;
+		boolean goodSave = false;
+
+		// Make sure we don't read a file while it's being written in the background
+		ScoreSaver.flush();
+		changed();
+		mJournal = null;	// Don't record the changes made while replaying a journal
+		mLoading = true;	// Listeners are told about the whole sheet once, at the end
+
+		try {
+			File file = storage.getFile(filename);
+			if (mStorageMode == STORAGE_MAPPED && file != null) {
+				// Map the file if it's already in the fixed layout; otherwise parse it below
+				closeMappedFile();
+				MappedScoreFile m = MappedScoreFile.open(file);
+				if (m != null && readMappedData(m)) {
+					m.setFlushPolicy(mFlushPolicy);
+					mMappedFile = m;
+					goodSave = true;
+					return;
+				}
+			}
+
+			f = storage.openInput(filename);
+			byte[] data = readAll(f);
+			goodSave = readSaveData(new ByteArrayInputStream(data));
+
+			// Apply any changes made since the file was written
+			if (goodSave) {
+				long journalLength = ScoreJournal.replay(storage, filename, ScoreJournal.checksum(data), this);
+				if (mStorageMode == STORAGE_JOURNAL)
+					mJournal = new ScoreJournal(storage, filename, this, journalLength, data.length);
+			}
+		} catch (FileNotFoundException e) {
+			// Log.d("MiniGolfScore", "No save file found");
+		} catch (IOException e) {
+			// Log.d("MiniGolfScore", "Error parsing save file");
+		} catch (ClassNotFoundException e) {
+			// Log.d("MiniGolfScore", "Error parsing save file - class not found");
+		} finally {
+			if (f != null) {
+				try {
+					f.close();
+				} catch (IOException e) {
+					// Log.d("MiniGolfScore", "Error closing save file");
+					// TODO: do something about being unable to read the file
+				}
+			}
+			if (!goodSave) {
+				initData(); // Didn't find a good save, so reinitialize data
+			} else {
+				markSaved(storage, mGeneration, filename, filename + ScoreJournal.SUFFIX);
+			}
+			if (mStorageMode == STORAGE_MAPPED && mMappedFile == null && storage.getFile(filename) != null)
+				createMappedFile(storage.getFile(filename));
+			mLoading = false;
+			notifySheetChanged();
+		}
+	}
+
+	/**
+	 * Read the rest of a stream into memory.
+	 */
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(in.available());
+		byte[] b = new byte[4096];
+		int n;
+		while ((n = in.read(b)) > 0)
+			out.write(b, 0, n);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Read save data from a stream.  Current-format files are read directly; files written by
+	 * older versions using ObjectOutputStream are migrated on the fly.
+	 * 
+	 * @param in
+	 *            Stream to read from.  Must support mark/reset.
+	 * @return true if the data was read successfully.
+	 */
+	boolean readSaveData(InputStream in) throws IOException, ClassNotFoundException {
+		// Old save files start with the ObjectOutputStream magic number instead of our cookie
+		in.mark(2);
+		int magic = (in.read() << 8) | in.read();
+		in.reset();
+		if (magic == (ObjectStreamConstants.STREAM_MAGIC & 0xFFFF))
+			return readLegacySaveData(new ObjectInputStream(in));
+
+		DataInputStream s = new DataInputStream(in);
+
+		// Check header to make sure this is a file we know how to read
+		if (s.readInt() != SAVE_FILE_COOKIE) {
+			// Log.d("MiniGolfScore", "Save filename cookie mismatch");
+			return false;
+		}
+		int version = s.readInt();
+		if (version == MAPPED_FILE_VERSION)
+			return readMappedData(s);
+		if (version != SAVE_FILE_VERSION && version != SINGLE_UNDO_SAVE_FILE_VERSION) {
+			// Log.d("MiniGolfScore", "Save filename version mismatch");
+			return false;
+		}
+
+		int players = s.readUnsignedShort();
+		int holes = s.readUnsignedShort();
+		if (players < 1 || players > MAX_PLAYERS || holes < 1 || holes > MAX_HOLES)
+			return false;
+		mPlayerCount = players;
+		mHoleCount = holes;
+
+		allocateSheet();
+		for (int p = 0; p < mPlayerCount; p++)
+			mPlayerNames[p] = clampName(readString(s));
+
+		for (int h = 0; h < mHoleCount; h++)
+			mPar[h] = s.readUnsignedByte();
+
+		byte[] row = new byte[mHoleCount];
+		for (int p = 0; p < mPlayerCount; p++) {
+			s.readFully(row);
+			putRow(p, row);
+		}
+		computeTotals();
+
+		int flags = s.readUnsignedByte();
+		mSavedScoreRelative = (flags & FLAG_SCORE_RELATIVE) != 0;
+		mSavedSortByStanding = (flags & FLAG_SORT_BY_STANDING) != 0;
+		mForceLandscape = (flags & FLAG_FORCE_LANDSCAPE) != 0;
+		mSavedSelPlayer = s.readShort();
+		mSavedSelHole = s.readShort();
+
+		// Read undo data
+		if (version == SINGLE_UNDO_SAVE_FILE_VERSION) {
+			int type = s.readUnsignedByte();
+			int hole = s.readUnsignedShort();
+			int player = s.readUnsignedShort();
+			int value = s.readUnsignedByte();
+			setSingleUndo(type, hole, player, value, readString(s));
+		} else {
+			mHistory.read(s);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Read the rest of a fixed-layout save file from a stream, after its cookie and version.
+	 * 
+	 * @return true if the data was read successfully.
+	 */
+	private boolean readMappedData(DataInputStream s) throws IOException {
+		// Put back the header we already read, since the layout offsets include it
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(data);
+		header.writeInt(SAVE_FILE_COOKIE);
+		header.writeInt(MAPPED_FILE_VERSION);
+
+		data.write(readAll(s));
+
+		MappedScoreFile m = MappedScoreFile.wrap(data.toByteArray());
+		return m != null && readMappedData(m);
+	}
+
+	/**
+	 * Read data from a fixed-layout save file.
+	 * 
+	 * @return true if the data was read successfully.
+	 */
+	private boolean readMappedData(MappedScoreFile m) throws IOException {
+		int players = m.getPlayerCount();
+		int holes = m.getHoleCount();
+		if (players < 1 || holes < 1 || players > MAX_PLAYERS || holes > MAX_HOLES)
+			return false;
+		mPlayerCount = players;
+		mHoleCount = holes;
+
+		allocateSheet();
+		for (int p = 0; p < mPlayerCount; p++)
+			mPlayerNames[p] = clampName(m.getPlayerName(p));
+
+		for (int h = 0; h < mHoleCount; h++)
+			mPar[h] = m.getPar(h);
+
+		byte[] row = new byte[mHoleCount];
+		for (int p = 0; p < mPlayerCount; p++) {
+			m.getScores(p, row, 0);
+			putRow(p, row);
+		}
+		computeTotals();
+
+		int flags = m.getFlags();
+		mSavedScoreRelative = (flags & FLAG_SCORE_RELATIVE) != 0;
+		mSavedSortByStanding = (flags & FLAG_SORT_BY_STANDING) != 0;
+		mForceLandscape = (flags & FLAG_FORCE_LANDSCAPE) != 0;
+		mSavedSelPlayer = m.getSelPlayer();
+		mSavedSelHole = m.getSelHole();
+
+		// The fixed layout only has room for the most recent undo
+		setSingleUndo(m.getUndoType(), m.getUndoHole(), m.getUndoPlayer(), m.getUndoValue(),
+				m.getUndoName());
+
+		return true;
+	}
+
+	/**
+	 * Write all data to a new fixed-layout save file and keep it mapped, so that later changes
+	 * are written in place.  The new file is built beside the old one and renamed over it, so
+	 * the old file survives until the new one is complete.  If the file can't be created, saves
+	 * fall back to rewriting it.
+	 */
+	private void createMappedFile(File file) {
+		closeMappedFile();
+
+		int slot = MappedScoreFile.DEFAULT_NAME_SLOT_SIZE;
+		long undo = mHistory.peekUndo();
+		if (UndoHistory.type(undo) == UNDO_PLAYER_NAME)
+			slot = Math.max(slot, MappedScoreFile.slotSizeFor(mHistory.name(UndoHistory.oldValue(undo))));
+		for (int p = 0; p < mPlayerCount; p++)
+			slot = Math.max(slot, MappedScoreFile.slotSizeFor(mPlayerNames[p]));
+
+		try {
+			MappedScoreFile m = MappedScoreFile.create(file, mPlayerCount, mHoleCount, slot);
+			for (int p = 0; p < mPlayerCount; p++) {
+				m.putPlayerName(p, mPlayerNames[p]);
+				if (mScoreBlocks[p >> BLOCK_SHIFT] == null)
+					continue;	// The new file is already all 0
+				for (int h = 0; h < mHoleCount; h++)
+					m.putScore(p, h, score(p, h));
+			}
+			for (int h = 0; h < mHoleCount; h++)
+				m.putPar(h, mPar[h]);
+			m.putFlags(getFlags());
+			m.putSelPlayer(mSavedSelPlayer);
+			m.putSelHole(mSavedSelHole);
+			m.setFlushPolicy(mFlushPolicy);
+			mMappedFile = m;
+			putMappedUndo();
+
+			// Only replace the old file once the new one is complete on disk
+			m.force();
+			FileReplacer.commit(file);
+		} catch (IOException e) {
+			// Log.d("MiniGolfScore", "Unable to map save file");
+			mMappedFile = null;
+		}
+	}
+
+	/**
+	 * Write the most recent undoable edit to the mapped save file.
+	 * 
+	 * @return false if it didn't fit.
+	 */
+	private boolean putMappedUndo() {
+		long undo = mHistory.peekUndo();
+		int type = UndoHistory.type(undo);
+		int value = UndoHistory.oldValue(undo);
+		String name = null;
+		if (type == UNDO_PLAYER_NAME) {
+			name = mHistory.name(value);
+			value = 0;
+		}
+		return mMappedFile.putUndo(type, UndoHistory.hole(undo), UndoHistory.player(undo), value, name);
+	}
+
+	/**
+	 * Re-create the mapped save file, if any, after a change to its layout.
+	 */
+	private void remapFile() {
+		if (mMappedFile != null)
+			createMappedFile(mMappedFile.getFile());
+	}
+
+	/**
+	 * Force any pending changes to the mapped save file and release it.  Must be called before
+	 * anything else may rewrite the file.
+	 */
+	public void closeMappedFile() {
+		if (mMappedFile != null) {
+			mMappedFile.force();
+			mMappedFile = null;
+		}
+	}
+
+	/**
+	 * Set how save files are written.
+	 * 
+	 * @param mode
+	 *            STORAGE_STREAM to rewrite the whole file on each save, STORAGE_MAPPED to
+	 *            map the file on load and update each changed field in place, or
+	 *            STORAGE_JOURNAL to append each change to a journal next to the file.
+	 */
+	public void setStorageMode(int mode) {
+		if (mode != STORAGE_MAPPED)
+			closeMappedFile();
+		if (mode != STORAGE_JOURNAL)
+			mJournal = null;
+		mStorageMode = mode;
+	}
+
+	/**
+	 * Set when changes to a mapped save file are forced to disk.
+	 * 
+	 * @param policy
+	 *            One of the MappedScoreFile.FLUSH_* constants.
+	 */
+	public void setFlushPolicy(int policy) {
+		mFlushPolicy = policy;
+		if (mMappedFile != null)
+			mMappedFile.setFlushPolicy(policy);
+	}
+
+	/**
+	 * Read a version 6 save file, written by ObjectOutputStream.  The data is read into the
+	 * current fields, so it will be written in the current format on the next save.
+	 * 
+	 * @return true if the data was read successfully.
+	 */
+	private boolean readLegacySaveData(ObjectInputStream s) throws IOException, ClassNotFoundException {
+		if (s.readInt() != SAVE_FILE_COOKIE)
+			return false;
+		if (s.readInt() != LEGACY_SAVE_FILE_VERSION)
+			return false;
+
+		int players = s.readInt();
+		int holes = s.readInt();
+		if (players < 1 || players > MAX_PLAYERS || holes < 1 || holes > MAX_HOLES)
+			return false;
+		mPlayerCount = players;
+		mHoleCount = holes;
+
+		allocateSheet();
+		for (int p = 0; p < mPlayerCount; p++)
+			mPlayerNames[p] = clampName((String) s.readObject());
+
+		for (int h = 0; h < mHoleCount; h++)
+			mPar[h] = clampValue(s.readInt());
+
+		for (int p = 0; p < mPlayerCount; p++) {
+			for (int h = 0; h < mHoleCount; h++)
+				putScore(p, h, clampValue(s.readInt()));
+		}
+		computeTotals();
+
+		mSavedScoreRelative = s.readBoolean();
+		mSavedSortByStanding = false;	// Didn't exist yet
+		mSavedSelPlayer = s.readInt();
+		mSavedSelHole = s.readInt();
+		mForceLandscape = s.readBoolean();
+
+		int type = s.readInt();
+		int hole = s.readInt();
+		int player = s.readInt();
+		int value = clampValue(s.readInt());
+		setSingleUndo(type, hole, player, value, (String) s.readObject());
+
+		return true;
+	}
+
+	/**
+	 * Replace the undo history with a single edit, read from a file format which only saved the
+	 * old value.  The new value is taken from the current data, so this must be called after the
+	 * rest of the data has been read.
+	 */
+	private void setSingleUndo(int type, int hole, int player, int value, String name) {
+		mHistory.clear();
+		switch (type) {
+		case UNDO_PAR:
+			if (hole < mHoleCount)
+				mHistory.push(UNDO_PAR, 0, hole, value, mPar[hole]);
+			break;
+		case UNDO_PLAYER_NAME:
+			if (player < mPlayerCount && name != null)
+				mHistory.pushName(player, clampName(name), mPlayerNames[player]);
+			break;
+		case UNDO_SCORE:
+			if (hole < mHoleCount && player < mPlayerCount)
+				mHistory.push(UNDO_SCORE, player, hole, value, getScore(player, hole));
+			break;
+		}
+	}
+
+	/**
+	 * Read a length-prefixed UTF-8 string.
+	 */
+	private static String readString(DataInputStream s) throws IOException {
+		byte[] b = new byte[s.readUnsignedShort()];
+		s.readFully(b);
+		return new String(b, "UTF-8");
+	}
+
+	/**
+	 * Give default names to players and default par to holes, starting at the specified indices.
+	 */
+	private void resetPlayerNamesAndPar(int firstPlayer, int firstHole) {
+		for (int p = firstPlayer; p < mPlayerCount; p++)
+			mPlayerNames[p] = String.format("Player %d", p + 1);
+
+		for (int h = firstHole; h < mHoleCount; h++)
+			mPar[h] = DEFAULT_PAR;
+	}
+
+	/**
+	 * Resets and reallocates scores.
+	 */
+	public void resetScores() {
+		clearScores();
+		changed();
+		remapFile();
+		if (mJournal != null)
+			mJournal.recordReset();
+		notifySheetChanged();
+	}
+
+	/**
+	 * Clears scores and the undo buffer, without touching the save file.
+	 */
+	private void clearScores() {
+		Arrays.fill(mScoreBlocks, null);
+		for (int p = 0; p < mPlayerCount; p++) {
+			mTotalStrokes[p] = 0;
+			mTotalVsPar[p] = 0;
+			mHolesPlayed[p] = 0;
+		}
+		mStats.rebuild();
+		mHistory.clear();	// This action cannot be undone
+	}
+
+	/**
+	 * Allocates all per-player and per-hole arrays with room for exactly the current number of
+	 * players and holes.  Scores are left 0, and take no memory until set; names and par must
+	 * be filled in.
+	 */
+	private void allocateSheet() {
+		mPlayerCapacity = mPlayerCount;
+		mHoleCapacity = mHoleCount;
+		mPlayerNames = new String[mPlayerCapacity];
+		mPar = new int[mHoleCapacity];
+		mScoreBlocks = new byte[blocksFor(mPlayerCapacity)][];
+		mTotalStrokes = new int[mPlayerCapacity];
+		mTotalVsPar = new int[mPlayerCapacity];
+		mHolesPlayed = new int[mPlayerCapacity];
+	}
+
+	/**
+	 * Make room for at least the specified number of players and holes.  Capacity at least
+	 * doubles when it grows, so a run of small increases only copies the scores a few times.
+	 * Adding players never copies scores, since they go in new blocks; adding holes copies
+	 * only the blocks which have been allocated.
+	 */
+	private void ensureCapacity(int players, int holes) {
+		if (players <= mPlayerCapacity && holes <= mHoleCapacity)
+			return;
+
+		int playerCapacity = mPlayerCapacity;
+		if (players > playerCapacity)
+			playerCapacity = Math.min(Math.max(players, playerCapacity * 2), MAX_PLAYERS);
+		int holeCapacity = mHoleCapacity;
+		if (holes > holeCapacity)
+			holeCapacity = Math.min(Math.max(holes, holeCapacity * 2), MAX_HOLES);
+
+		if (holeCapacity != mHoleCapacity) {
+			for (int b = 0; b < mScoreBlocks.length; b++) {
+				byte[] block = mScoreBlocks[b];
+				if (block == null)
+					continue;
+				byte[] wider = new byte[BLOCK_PLAYERS * holeCapacity];
+				for (int r = 0; r < BLOCK_PLAYERS; r++)
+					System.arraycopy(block, r * mHoleCapacity, wider, r * holeCapacity, mHoleCount);
+				mScoreBlocks[b] = wider;
+			}
+		}
+		mScoreBlocks = copyOf(mScoreBlocks, blocksFor(playerCapacity));
+
+		mPlayerNames = copyOf(mPlayerNames, playerCapacity);
+		mPar = copyOf(mPar, holeCapacity);
+		mTotalStrokes = copyOf(mTotalStrokes, playerCapacity);
+		mTotalVsPar = copyOf(mTotalVsPar, playerCapacity);
+		mHolesPlayed = copyOf(mHolesPlayed, playerCapacity);
+		mPlayerCapacity = playerCapacity;
+		mHoleCapacity = holeCapacity;
+	}
+
+	/* Arrays.copyOf() isn't available on older platforms */
+	private static int[] copyOf(int[] a, int length) {
+		int[] b = new int[length];
+		System.arraycopy(a, 0, b, 0, Math.min(a.length, length));
+		return b;
+	}
+	private static String[] copyOf(String[] a, int length) {
+		String[] b = new String[length];
+		System.arraycopy(a, 0, b, 0, Math.min(a.length, length));
+		return b;
+	}
+	private static byte[][] copyOf(byte[][] a, int length) {
+		byte[][] b = new byte[length][];
+		System.arraycopy(a, 0, b, 0, Math.min(a.length, length));
+		return b;
+	}
+
+	/**
+	 * Save settings to a save file.
+	 */
+	public void saveToFile(ScoreStorage storage, String filename) {
+		// Don't let a queued background save overwrite this one
+		ScoreSaver.flush();
+
+		// A mapped file is already up to date; it just needs forcing to disk
+		if (mMappedFile != null && mMappedFile.getFile().equals(storage.getFile(filename))) {
+			mMappedFile.save();
+			return;
+		}
+
+		// With a journal, the changes are already queued; wait for them to be written
+		if (mStorageMode == STORAGE_JOURNAL && saveToJournal(storage, filename)) {
+			ScoreSaver.flush();
+			return;
+		}
+
+		// If settings aren't actually dirty, we don't need to save them
+		if (isSaved(storage, filename))
+			return;
+
+		if (writeToFile(storage, filename))
+			markSaved(storage, mGeneration, filename);
+	}
+
+	/**
+	 * Save settings to a save file on a background thread.  A snapshot of the current data is
+	 * taken, so this may keep changing while the save is in progress.  Use ScoreSaver.flush() to
+	 * wait for the save to finish.
+	 */
+	public void saveToFileAsync(ScoreStorage storage, String filename) {
+		// A mapped file just needs forcing, which isn't worth a snapshot
+		if (mMappedFile != null && mMappedFile.getFile().equals(storage.getFile(filename))) {
+			mMappedFile.save();
+			return;
+		}
+
+		if (mStorageMode == STORAGE_JOURNAL && saveToJournal(storage, filename))
+			return;
+
+		if (isSaved(storage, filename))
+			return;
+
+		ScoreSaver.save(storage, filename, this, snapshot(), mGeneration);
+	}
+
+	/**
+	 * Changes are queued to be written to the journal as they're made, so this only needs to
+	 * start a journal for the file if there isn't one yet, or retry one which couldn't be written.
+	 * 
+	 * @return false if the file isn't the one being journaled.
+	 */
+	private boolean saveToJournal(ScoreStorage storage, String filename) {
+		if (mJournal == null)
+			mJournal = new ScoreJournal(storage, filename, this, -1, 0);
+		else if (!mJournal.isFor(storage, filename))
+			return false;
+
+		mJournal.flush();
+		return true;
+	}
+
+	/**
+	 * Write all data to a save file, regardless of whether it's dirty.
+	 * 
+	 * @return true if the file was written.
+	 */
+	boolean writeToFile(ScoreStorage storage, String filename) {
+		try {
+			OutputStream f = storage.openOutput(filename, false);
+			try {
+				writeSaveData(f);
+			} finally {
+				f.close();
+			}
+			return true;
+		} catch (FileNotFoundException e) {
+			// TODO: do something about being unable to save the file
+		} catch (IOException e) {
+			// TODO: do something about being unable to save the file
+		}
+		return false;
+	}
+
+	/**
+	 * Write save data to a stream.  The whole file is assembled in a buffer sized up front, so
+	 * it reaches the stream in a single write.
+	 * 
+	 * @param out
+	 *            Stream to write to.
+	 */
+	void writeSaveData(OutputStream out) throws IOException {
+		byte[][] names = new byte[mPlayerCount][];
+		int size = SAVE_FILE_HEADER_SIZE + mHoleCount + mPlayerCount * mHoleCount;
+		for (int p = 0; p < mPlayerCount; p++) {
+			names[p] = mPlayerNames[p].getBytes("UTF-8");
+			size += 2 + names[p].length;
+		}
+		size += mHistory.serializedSize();
+
+		ByteBuffer b = ByteBuffer.allocate(size);
+		b.putInt(SAVE_FILE_COOKIE);
+		b.putInt(SAVE_FILE_VERSION);
+
+		// Write scorepad
+		b.putShort((short) mPlayerCount);
+		b.putShort((short) mHoleCount);
+
+		for (int p = 0; p < mPlayerCount; p++)
+			putString(b, names[p]);
+
+		for (int h = 0; h < mHoleCount; h++)
+			b.put((byte) mPar[h]);
+
+		for (int p = 0; p < mPlayerCount; p++) {
+			byte[] block = mScoreBlocks[p >> BLOCK_SHIFT];
+			if (block == null)
+				b.position(b.position() + mHoleCount);	// New buffers are already all 0
+			else
+				b.put(block, rowOffset(p), mHoleCount);
+		}
+
+		// Write settings
+		b.put((byte) getFlags());
+		b.putShort((short) mSavedSelPlayer);
+		b.putShort((short) mSavedSelHole);
+
+		// Write undo data
+		mHistory.write(b);
+
+		out.write(b.array(), 0, b.position());
+	}
+
+	/**
+	 * @return Saved settings packed into FLAG_* bits.
+	 */
+	private int getFlags() {
+		int flags = 0;
+		if (mSavedScoreRelative)
+			flags |= FLAG_SCORE_RELATIVE;
+		if (mForceLandscape)
+			flags |= FLAG_FORCE_LANDSCAPE;
+		if (mSavedSortByStanding)
+			flags |= FLAG_SORT_BY_STANDING;
+		return flags;
+	}
+
+	/**
+	 * Write a length-prefixed UTF-8 string.  Names are clamped to MAX_NAME_BYTES, so the length
+	 * fits.
+	 */
+	private static void putString(ByteBuffer b, byte[] utf8) {
+		b.putShort((short) utf8.length);
+		b.put(utf8);
+	}
+
+	/**
+	 * Set the size of the sheet. Old data will be clipped to fit the new size.
+	 * 
+	 * @param players
+	 *            New number of players
+	 * @param holes
+	 *            New number of holes
+	 */
+	public void setDimensions(int players, int holes) {
+		if (players < 1 || players > MAX_PLAYERS || holes < 1 || holes > MAX_HOLES)
+			return; // TODO: Throw exception
+
+		int oldPlayerCount = mPlayerCount;
+		int oldHoleCount = mHoleCount;
+		int keptPlayerCount = Math.min(oldPlayerCount, players);
+
+		// Take holes which are being clipped off out of the totals
+		for (int h = holes; h < oldHoleCount; h++) {
+			mTotalPar -= mPar[h];
+			for (int p = 0; p < keptPlayerCount; p++) {
+				int score = score(p, h);
+				if (score > 0) {
+					mTotalStrokes[p] -= score;
+					mTotalVsPar[p] -= score - mPar[h];
+					mHolesPlayed[p]--;
+				}
+			}
+		}
+
+		// Free blocks which no longer hold any players
+		for (int b = blocksFor(players); b < blocksFor(oldPlayerCount); b++)
+			mScoreBlocks[b] = null;
+
+		// Existing data stays where it is unless the sheet outgrows its capacity
+		ensureCapacity(players, holes);
+		mPlayerCount = players;
+		mHoleCount = holes;
+
+		/* Clear added cells, since they may still hold data clipped off by an earlier call.
+		 * Undo history is kept; edits outside the new size are skipped.
+		 */
+		resetPlayerNamesAndPar(oldPlayerCount, oldHoleCount);
+		for (int h = oldHoleCount; h < holes; h++) {
+			mTotalPar += mPar[h];
+			for (int p = 0; p < keptPlayerCount; p++)
+				putScore(p, h, 0);
+		}
+		for (int p = oldPlayerCount; p < players; p++) {
+			byte[] block = mScoreBlocks[p >> BLOCK_SHIFT];
+			if (block != null)
+				Arrays.fill(block, rowOffset(p), rowOffset(p) + holes, (byte) 0);
+			mTotalStrokes[p] = 0;
+			mTotalVsPar[p] = 0;
+			mHolesPlayed[p] = 0;
+		}
+		mStats.rebuild();	// The halves of the sheet have moved
+
+		changed();
+		remapFile();
+		if (mJournal != null)
+			mJournal.recordDimensions(players, holes);
+		notifySheetChanged();
+	}
+
+	/**
+	 * @param Set force-landscape setting
+	 */
+	public void setForceLandscape(boolean forceLandscape) {
+		if (mForceLandscape == forceLandscape)
+			return;
+		mForceLandscape = forceLandscape;
+		changed();
+		if (mMappedFile != null)
+			mMappedFile.putFlags(getFlags());
+		if (mJournal != null)
+			mJournal.recordSettings(getFlags(), mSavedSelPlayer, mSavedSelHole);
+	}
+	
+	/**
+	 * Set par for a hole.
+	 * 
+	 * @param hole
+	 *            Hole index (0-based).
+	 * @param par
+	 */
+	public void setPar(int hole, int par) {
+		if (hole < 0 || hole >= mHoleCount)
+			return; // TODO: Throw exception
+		par = clampValue(par);
+		if (mPar[hole] == par)
+			return;
+		
+		// Save undo data
+		mHistory.push(UNDO_PAR, 0, hole, mPar[hole], par);
+		
+		applyPar(hole, par);
+		if (mJournal != null)
+			mJournal.recordPar(hole, par);
+	}
+
+	/**
+	 * Change par for a hole, without touching the undo history.  This is O(players), since
+	 * everyone who has played the hole has their total relative to par shifted.
+	 */
+	private void applyPar(int hole, int par) {
+		int delta = par - mPar[hole];
+		mPar[hole] = par;
+		mTotalPar += delta;
+		for (int p = 0; p < mPlayerCount; p++) {
+			if (score(p, hole) != 0)
+				mTotalVsPar[p] -= delta;
+		}
+		mStats.parChanged(hole, par - delta, par);
+		changed();
+
+		if (mMappedFile != null) {
+			putMappedUndo();
+			mMappedFile.putPar(hole, par);
+		}
+		notifyParChanged(hole);
+	}
+
+	/**
+	 * Set the name of a player.
+	 * 
+	 * @param player
+	 *            Player index.
+	 * @param name
+	 *            Name for the player.  Shortened to MAX_NAME_BYTES of UTF-8, if it's longer.
+	 */
+	public void setPlayerName(int player, String name) {
+		if (player < 0 || player >= mPlayerCount)
+			return; // TODO: Throw exception
+		name = clampName(name);
+		if (mPlayerNames[player].equals(name))
+			return;
+		
+		// Save undo data
+		mHistory.pushName(player, mPlayerNames[player], name);
+		
+		applyPlayerName(player, name);
+		if (mJournal != null)
+			mJournal.recordName(player, name);
+	}
+
+	/**
+	 * Change the name of a player, without touching the undo history.
+	 */
+	private void applyPlayerName(int player, String name) {
+		mPlayerNames[player] = name;
+		changed();
+
+		if (mMappedFile != null) {
+			// Names are variable-length, so may not fit in their slots
+			if (!putMappedUndo() || !mMappedFile.putPlayerName(player, name))
+				remapFile();
+		}
+		notifyPlayerNameChanged(player);
+	}
+
+	public void setSavedScoreRelative(boolean savedScoreRelative) {
+		if (mSavedScoreRelative == savedScoreRelative)
+			return;
+		mSavedScoreRelative = savedScoreRelative;
+		changed();
+		if (mMappedFile != null)
+			mMappedFile.putFlags(getFlags());
+		if (mJournal != null)
+			mJournal.recordSettings(getFlags(), mSavedSelPlayer, mSavedSelHole);
+	}
+
+	public void setSavedSortByStanding(boolean savedSortByStanding) {
+		if (mSavedSortByStanding == savedSortByStanding)
+			return;
+		mSavedSortByStanding = savedSortByStanding;
+		changed();
+		if (mMappedFile != null)
+			mMappedFile.putFlags(getFlags());
+		if (mJournal != null)
+			mJournal.recordSettings(getFlags(), mSavedSelPlayer, mSavedSelHole);
+	}
+
+	public void setSavedSelHole(int savedSelHole) {
+		if (mSavedSelHole == savedSelHole)
+			return;
+		mSavedSelHole = savedSelHole;
+		changed();
+		if (mMappedFile != null)
+			mMappedFile.putSelHole(savedSelHole);
+		if (mJournal != null)
+			mJournal.recordSettings(getFlags(), mSavedSelPlayer, mSavedSelHole);
+	}
+
+	public void setSavedSelPlayer(int savedSelPlayer) {
+		if (mSavedSelPlayer == savedSelPlayer)
+			return;
+		mSavedSelPlayer = savedSelPlayer;
+		changed();
+		if (mMappedFile != null)
+			mMappedFile.putSelPlayer(savedSelPlayer);
+		if (mJournal != null)
+			mJournal.recordSettings(getFlags(), mSavedSelPlayer, mSavedSelHole);
+	}
+
+	/**
+	 * Set all saved settings at once.
+	 * 
+	 * @param flags
+	 *            Saved settings packed into FLAG_* bits.
+	 */
+	void setSavedSettings(int flags, int savedSelPlayer, int savedSelHole) {
+		setSavedScoreRelative((flags & FLAG_SCORE_RELATIVE) != 0);
+		setSavedSortByStanding((flags & FLAG_SORT_BY_STANDING) != 0);
+		setForceLandscape((flags & FLAG_FORCE_LANDSCAPE) != 0);
+		setSavedSelPlayer(savedSelPlayer);
+		setSavedSelHole(savedSelHole);
+	}
+
+	/**
+	 * Set the score for a player.
+	 * 
+	 * @param player
+	 *            Player number.
+	 * @param hole
+	 *            Hole number.
+	 * @param score
+	 *            Score to set.
+	 */
+	public void setScore(int player, int hole, int score) {
+		if (hole < 0 || hole >= mHoleCount || player < 0 || player >= mPlayerCount)
+			return; // TODO: Throw exception
+
+		score = clampValue(score);
+		int old = score(player, hole);
+		if (old == score)
+			return;	// No change
+		
+		// Save undo data
+		mHistory.push(UNDO_SCORE, player, hole, old, score);
+		
+		applyScore(player, hole, score);
+		if (mJournal != null)
+			mJournal.recordScore(player, hole, score);
+	}
+
+	/**
+	 * Change the score for a player, without touching the undo history.
+	 */
+	private void applyScore(int player, int hole, int score) {
+		int old = score(player, hole);
+		if (old > 0) {
+			mTotalStrokes[player] -= old;
+			mTotalVsPar[player] -= old - mPar[hole];
+			mHolesPlayed[player]--;
+		}
+		if (score > 0) {
+			mTotalStrokes[player] += score;
+			mTotalVsPar[player] += score - mPar[hole];
+			mHolesPlayed[player]++;
+		}
+		putScore(player, hole, score);
+		mStats.scoreChanged(player, hole, old, score);
+		changed();
+
+		if (mMappedFile != null) {
+			putMappedUndo();
+			mMappedFile.putScore(player, hole, score);
+		}
+		notifyScoreChanged(player, hole);
+	}
+
+	/**
+	 * Undoes the last setScore(), setPlayerName() or setPar().
+	 * @return true if something was undone.
+	 */
+	public boolean undoLast() {
+		long edit;
+		// Skip edits to cells which are no longer on the sheet
+		do {
+			edit = mHistory.undo();
+		} while (edit != 0 && !isOnSheet(edit));
+		if (edit == 0)
+			return false;
+
+		applyEdit(edit, UndoHistory.oldValue(edit));
+		if (mJournal != null)
+			mJournal.recordUndo();
+		return true;
+	}
+
+	/**
+	 * Redoes the last edit undone by undoLast().
+	 * @return true if something was redone.
+	 */
+	public boolean redoLast() {
+		long edit;
+		do {
+			edit = mHistory.redo();
+		} while (edit != 0 && !isOnSheet(edit));
+		if (edit == 0)
+			return false;
+
+		applyEdit(edit, UndoHistory.newValue(edit));
+		if (mJournal != null)
+			mJournal.recordRedo();
+		return true;
+	}
+
+	/**
+	 * @return true if the cell an edit applies to is within the current dimensions.
+	 */
+	private boolean isOnSheet(long edit) {
+		switch (UndoHistory.type(edit)) {
+		case UNDO_PAR:
+			return UndoHistory.hole(edit) < mHoleCount;
+		case UNDO_PLAYER_NAME:
+			return UndoHistory.player(edit) < mPlayerCount;
+		case UNDO_SCORE:
+			return UndoHistory.hole(edit) < mHoleCount && UndoHistory.player(edit) < mPlayerCount;
+		}
+		return false;
+	}
+
+	/**
+	 * Apply one side of an edit from the undo history, and move the saved selection to it.
+	 * 
+	 * @param value
+	 *            The edit's old value to undo it, or new value to redo it.
+	 */
+	private void applyEdit(long edit, int value) {
+		int player = UndoHistory.player(edit);
+		int hole = UndoHistory.hole(edit);
+		switch (UndoHistory.type(edit)) {
+		case UNDO_PAR:
+			applyPar(hole, value);
+			setSavedSelHole(hole);
+			break;
+		case UNDO_PLAYER_NAME:
+			applyPlayerName(player, mHistory.name(value));
+			setSavedSelPlayer(player);
+			break;
+		case UNDO_SCORE:
+			applyScore(player, hole, value);
+			setSavedSelHole(hole);
+			setSavedSelPlayer(player);
+			break;
+		}
+	}
+	
+	/**
+	 * @return true if there is an action to undo.
+	 */
+	public boolean canUndo() {
+		return mHistory.canUndo();
+	}
+
+	/**
+	 * @return true if there is an action to redo.
+	 */
+	public boolean canRedo() {
+		return mHistory.canRedo();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,591 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes a score card in one of several formats.  The card is streamed a cell at a time, so
+ * exporting takes time linear in the size of the sheet and no memory beyond the writer's buffer.
+ * Totals and statistics come from the data's running totals and ScoreStats rather than being
+ * added up again.
+ *
+ * Exporting only reads the data, so a snapshot may be exported on a background thread while the
+ * original continues to change.
+ */
+class ScoreExporter {
+	static final int FORMAT_TEXT = 0;	// Plain text, one line per row, for e-mail bodies
+	static final int FORMAT_CSV = 1;	// Comma-separated values, for spreadsheets
+	static final int FORMAT_HTML = 2;	// HTML table
+	static final int FORMAT_JSON = 3;	// JSON object
+
+	private static final String[] MIME_TYPES = { "text/plain", "text/csv", "text/html", "application/json" };
+	private static final String[] EXTENSIONS = { ".txt", ".csv", ".html", ".json" };
+
+	private final ScoreData mData;		// Data to export
+	private final boolean mRelative;	// Show scores relative to par, in formats meant for reading
+	private final Writer mOut;			// Where to write
+	private final ScoreStats mStats;	// Statistics for the data
+	private int[] mDifficultyRank;		// Difficulty rank of each hole, from 1; 0 if unplayed
+
+	private ScoreExporter(ScoreData data, boolean relative, Writer out) {
+		mData = data;
+		mRelative = relative;
+		mOut = out;
+		mStats = data.getStats();
+	}
+
+	/**
+	 * @return MIME type of an export format.
+	 */
+	static String getMimeType(int format) {
+		return MIME_TYPES[format];
+	}
+
+	/**
+	 * @return Filename extension for an export format, including the dot.
+	 */
+	static String getExtension(int format) {
+		return EXTENSIONS[format];
+	}
+
+	/**
+	 * @return Export format with the specified filename extension, or -1 if there isn't one.
+	 */
+	static int getFormat(String extension) {
+		for (int format = 0; format < EXTENSIONS.length; format++) {
+			if (EXTENSIONS[format].equals(extension))
+				return format;
+		}
+		return -1;
+	}
+
+	/**
+	 * Write a score card.
+	 *
+	 * @param data
+	 *            Data to export.  Must not change until this returns.
+	 * @param relative
+	 *            If true, text and HTML cards show scores relative to par, as the sheet does.
+	 *            CSV and JSON are meant for other programs, so always have strokes.  All but
+	 *            CSV, which is a single table for spreadsheets, end with the statistics.
+	 * @param format
+	 *            One of the FORMAT_* constants.
+	 * @param out
+	 *            Where to write.  It isn't flushed or closed.
+	 */
+	static void write(ScoreData data, boolean relative, int format, Writer out) throws IOException {
+		ScoreExporter e = new ScoreExporter(data, relative, out);
+		switch (format) {
+		case FORMAT_TEXT:
+			e.writeText();
+			break;
+		case FORMAT_CSV:
+			e.writeCsv();
+			break;
+		case FORMAT_HTML:
+			e.writeHtml();
+			break;
+		case FORMAT_JSON:
+			e.writeJson();
+			break;
+		default:
+			throw new IllegalArgumentException("Bad export format");
+		}
+	}
+
+	/**
+	 * Write a score card to a stream, encoded as UTF-8.  The stream is flushed but not closed.
+	 */
+	static void write(ScoreData data, boolean relative, int format, OutputStream out) throws IOException {
+		Writer w = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+		write(data, relative, format, w);
+		w.flush();
+	}
+
+	/**
+	 * Write a page with just the statistics for a score card, as HTML encoded in UTF-8.  The
+	 * stream is flushed but not closed.
+	 */
+	static void writeStatsPage(ScoreData data, OutputStream out) throws IOException {
+		Writer w = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+		ScoreExporter e = new ScoreExporter(data, false, w);
+		e.writeHtmlHead("Mini golf statistics");
+		e.writeHtmlStats();
+		w.write("</body></html>\n");
+		w.flush();
+	}
+
+	/**
+	 * Summarize a score card in a few lines: its size, and the leaders with their totals.  Short
+	 * enough to send in an intent however big the sheet is, for mail apps which want a body as
+	 * well as the attached card.
+	 *
+	 * @param relative
+	 *            If true, leaders are ranked by their totals relative to par, as the sheet does.
+	 * @param leaders
+	 *            Most players to list.
+	 */
+	static String summary(ScoreData data, boolean relative, int leaders) {
+		StringBuilder b = new StringBuilder();
+		b.append("Mini golf scores: ").append(data.getPlayerCount()).append(" players, ")
+				.append(data.getHoleCount()).append(" holes, par ")
+				.append(ScoreText.number(data.getTotalPar())).append('\n');
+
+		Leaderboard standings = new Leaderboard(data,
+				relative ? Leaderboard.ORDER_VS_PAR : Leaderboard.ORDER_STROKES,
+				Leaderboard.TIEBREAK_BACK_NINE);
+		int[] top = new int[leaders];
+		int shown = standings.getTop(top, leaders);
+		for (int i = 0; i < shown; i++) {
+			int p = top[i];
+			if (data.getTotalStrokes(p) == 0)
+				break;	// Nobody after this has played a hole
+			b.append(i + 1).append(". ").append(data.getPlayerName(p)).append(": ")
+					.append(ScoreText.number(data.getTotalStrokes(p))).append(" (")
+					.append(ScoreText.signed(data.getTotalVsPar(p))).append(")\n");
+		}
+		b.append("The full card is attached.\n");
+		return b.toString();
+	}
+
+	/**
+	 * @return Difficulty rank of a hole, where 1 is the hardest, or 0 if nobody has played it.
+	 */
+	private int difficultyRank(int hole) {
+		if (mDifficultyRank == null) {
+			int[] order = mStats.getHolesByDifficulty();
+			mDifficultyRank = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				if (mStats.getHolePlayed(order[i]) > 0)
+					mDifficultyRank[order[i]] = i + 1;
+			}
+		}
+		return mDifficultyRank[hole];
+	}
+
+	/**
+	 * @return Text of a cell for formats meant for reading: the score, its difference from par,
+	 *         or "-" if the hole hasn't been played.
+	 */
+	private String cellText(int player, int hole) {
+		int s = mData.getScore(player, hole);
+		if (s == 0)
+			return "-";
+		if (mRelative)
+			return ScoreText.signed(s - mData.getPar(hole));
+		return ScoreText.number(s);
+	}
+
+	private void writeText() throws IOException {
+		Writer t = mOut;
+		int holes = mData.getHoleCount();
+		int players = mData.getPlayerCount();
+
+		t.write("Hole:");
+		for (int h = 0; h < holes; h++) {
+			t.write(' ');
+			t.write(ScoreText.number(h + 1));
+		}
+		t.write("/ Total (+/-)\n");
+
+		t.write("Par:");
+		for (int h = 0; h < holes; h++) {
+			t.write(' ');
+			t.write(ScoreText.number(mData.getPar(h)));
+		}
+		t.write(" / ");
+		t.write(ScoreText.number(mData.getTotalPar()));
+		t.write('\n');
+
+		for (int p = 0; p < players; p++) {
+			t.write(mData.getPlayerName(p));
+			t.write(": ");
+			for (int h = 0; h < holes; h++) {
+				t.write(' ');
+				t.write(cellText(p, h));
+			}
+			t.write(" / ");
+			t.write(ScoreText.number(mData.getTotalStrokes(p)));
+			t.write(" (");
+			t.write(ScoreText.signed(mData.getTotalVsPar(p)));
+			t.write(")\n");
+		}
+
+		writeTextStats();
+	}
+
+	private void writeTextStats() throws IOException {
+		Writer t = mOut;
+		int holes = mData.getHoleCount();
+		int players = mData.getPlayerCount();
+
+		t.write("\nHole stats: played, mean (+/-), best, worst, holes-in-one, difficulty rank\n");
+		for (int h = 0; h < holes; h++) {
+			int played = mStats.getHolePlayed(h);
+			t.write(ScoreText.number(h + 1));
+			t.write(": ");
+			t.write(ScoreText.number(played));
+			if (played > 0) {
+				t.write(", ");
+				t.write(ScoreText.decimal(mStats.getHoleSum(h), played));
+				t.write(" (");
+				t.write(ScoreText.signedDecimal(mStats.getHoleSum(h) - played * mData.getPar(h), played));
+				t.write("), ");
+				t.write(ScoreText.number(mStats.getHoleMin(h)));
+				t.write(", ");
+				t.write(ScoreText.number(mStats.getHoleMax(h)));
+				t.write(", ");
+				t.write(ScoreText.number(mStats.getHoleInOnes(h)));
+				t.write(", ");
+				t.write(ScoreText.number(difficultyRank(h)));
+			}
+			t.write('\n');
+		}
+
+		t.write("\nPlayer stats: eagles, birdies, pars, bogeys, double bogeys; front, back; best streak at par or better\n");
+		for (int p = 0; p < players; p++) {
+			t.write(mData.getPlayerName(p));
+			t.write(": ");
+			for (int r = 0; r < ScoreStats.RESULT_COUNT; r++) {
+				if (r > 0)
+					t.write(", ");
+				t.write(ScoreText.number(mStats.getResultCount(p, r)));
+			}
+			t.write("; ");
+			t.write(ScoreText.number(mStats.getFrontStrokes(p)));
+			t.write(" (");
+			t.write(ScoreText.signed(mStats.getFrontVsPar(p)));
+			t.write("), ");
+			t.write(ScoreText.number(mStats.getBackStrokes(p)));
+			t.write(" (");
+			t.write(ScoreText.signed(mStats.getBackVsPar(p)));
+			t.write("); ");
+			t.write(ScoreText.number(mStats.getBestStreak(p)));
+			t.write('\n');
+		}
+	}
+
+	private void writeCsv() throws IOException {
+		Writer t = mOut;
+		int holes = mData.getHoleCount();
+		int players = mData.getPlayerCount();
+
+		// Rows end in CRLF, per RFC 4180
+		t.write("Player");
+		for (int h = 0; h < holes; h++) {
+			t.write(',');
+			t.write(ScoreText.number(h + 1));
+		}
+		t.write(",Total,+/-\r\n");
+
+		t.write("Par");
+		for (int h = 0; h < holes; h++) {
+			t.write(',');
+			t.write(ScoreText.number(mData.getPar(h)));
+		}
+		t.write(',');
+		t.write(ScoreText.number(mData.getTotalPar()));
+		t.write(",\r\n");
+
+		for (int p = 0; p < players; p++) {
+			writeCsvField(mData.getPlayerName(p));
+			for (int h = 0; h < holes; h++) {
+				t.write(',');
+				int s = mData.getScore(p, h);
+				if (s > 0)
+					t.write(ScoreText.number(s));	// Unplayed holes are left empty
+			}
+			t.write(',');
+			t.write(ScoreText.number(mData.getTotalStrokes(p)));
+			t.write(',');
+			t.write(ScoreText.signed(mData.getTotalVsPar(p)));
+			t.write("\r\n");
+		}
+	}
+
+	/**
+	 * Write a CSV field, quoting it if it contains anything special.
+	 */
+	private void writeCsvField(String s) throws IOException {
+		boolean quote = false;
+		for (int i = 0; i < s.length() && !quote; i++) {
+			char c = s.charAt(i);
+			quote = (c == ',' || c == '"' || c == '\r' || c == '\n');
+		}
+		if (!quote) {
+			mOut.write(s);
+			return;
+		}
+		mOut.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"')
+				mOut.write('"');	// Quotes are doubled
+			mOut.write(c);
+		}
+		mOut.write('"');
+	}
+
+	private void writeHtml() throws IOException {
+		Writer t = mOut;
+		int holes = mData.getHoleCount();
+		int players = mData.getPlayerCount();
+
+		writeHtmlHead("Mini golf scores");
+		t.write("<table border=\"1\">\n");
+
+		t.write("<tr><th>Hole</th>");
+		for (int h = 0; h < holes; h++) {
+			t.write("<th>");
+			t.write(ScoreText.number(h + 1));
+			t.write("</th>");
+		}
+		t.write("<th>Total</th><th>+/-</th></tr>\n");
+
+		t.write("<tr><th>Par</th>");
+		for (int h = 0; h < holes; h++) {
+			t.write("<td>");
+			t.write(ScoreText.number(mData.getPar(h)));
+			t.write("</td>");
+		}
+		t.write("<td>");
+		t.write(ScoreText.number(mData.getTotalPar()));
+		t.write("</td><td></td></tr>\n");
+
+		for (int p = 0; p < players; p++) {
+			t.write("<tr><th>");
+			writeHtmlText(mData.getPlayerName(p));
+			t.write("</th>");
+			for (int h = 0; h < holes; h++) {
+				t.write("<td>");
+				t.write(cellText(p, h));
+				t.write("</td>");
+			}
+			t.write("<td>");
+			t.write(ScoreText.number(mData.getTotalStrokes(p)));
+			t.write("</td><td>");
+			t.write(ScoreText.signed(mData.getTotalVsPar(p)));
+			t.write("</td></tr>\n");
+		}
+
+		t.write("</table>\n");
+		writeHtmlStats();
+		t.write("</body></html>\n");
+	}
+
+	private void writeHtmlHead(String title) throws IOException {
+		mOut.write("<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">"
+				+ "<title>");
+		mOut.write(title);
+		mOut.write("</title></head><body>\n");
+	}
+
+	private void writeHtmlStats() throws IOException {
+		Writer t = mOut;
+		int holes = mData.getHoleCount();
+		int players = mData.getPlayerCount();
+
+		t.write("<h3>Holes</h3>\n<table border=\"1\">\n<tr><th>Hole</th><th>Par</th><th>Played</th>"
+				+ "<th>Mean</th><th>+/-</th><th>Best</th><th>Worst</th><th>Holes-in-one</th>"
+				+ "<th>Difficulty</th></tr>\n");
+		for (int h = 0; h < holes; h++) {
+			int played = mStats.getHolePlayed(h);
+			t.write("<tr><th>");
+			t.write(ScoreText.number(h + 1));
+			t.write("</th><td>");
+			t.write(ScoreText.number(mData.getPar(h)));
+			t.write("</td><td>");
+			t.write(ScoreText.number(played));
+			if (played > 0) {
+				t.write("</td><td>");
+				t.write(ScoreText.decimal(mStats.getHoleSum(h), played));
+				t.write("</td><td>");
+				t.write(ScoreText.signedDecimal(mStats.getHoleSum(h) - played * mData.getPar(h), played));
+				t.write("</td><td>");
+				t.write(ScoreText.number(mStats.getHoleMin(h)));
+				t.write("</td><td>");
+				t.write(ScoreText.number(mStats.getHoleMax(h)));
+				t.write("</td><td>");
+				t.write(ScoreText.number(mStats.getHoleInOnes(h)));
+				t.write("</td><td>");
+				t.write(ScoreText.number(difficultyRank(h)));
+				t.write("</td></tr>\n");
+			} else {
+				t.write("</td><td colspan=\"6\"></td></tr>\n");
+			}
+		}
+		t.write("</table>\n");
+
+		t.write("<h3>Players</h3>\n<table border=\"1\">\n<tr><th>Player</th><th>Eagles</th>"
+				+ "<th>Birdies</th><th>Pars</th><th>Bogeys</th><th>Double bogeys</th><th>Front</th>"
+				+ "<th>Back</th><th>Best streak</th></tr>\n");
+		for (int p = 0; p < players; p++) {
+			t.write("<tr><th>");
+			writeHtmlText(mData.getPlayerName(p));
+			t.write("</th>");
+			for (int r = 0; r < ScoreStats.RESULT_COUNT; r++) {
+				t.write("<td>");
+				t.write(ScoreText.number(mStats.getResultCount(p, r)));
+				t.write("</td>");
+			}
+			t.write("<td>");
+			t.write(ScoreText.number(mStats.getFrontStrokes(p)));
+			t.write(" (");
+			t.write(ScoreText.signed(mStats.getFrontVsPar(p)));
+			t.write(")</td><td>");
+			t.write(ScoreText.number(mStats.getBackStrokes(p)));
+			t.write(" (");
+			t.write(ScoreText.signed(mStats.getBackVsPar(p)));
+			t.write(")</td><td>");
+			t.write(ScoreText.number(mStats.getBestStreak(p)));
+			t.write("</td></tr>\n");
+		}
+		t.write("</table>\n");
+	}
+
+	/**
+	 * Write text with HTML special characters escaped.
+	 */
+	private void writeHtmlText(String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '&':
+				mOut.write("&amp;");
+				break;
+			case '<':
+				mOut.write("&lt;");
+				break;
+			case '>':
+				mOut.write("&gt;");
+				break;
+			case '"':
+				mOut.write("&quot;");
+				break;
+			default:
+				mOut.write(c);
+			}
+		}
+	}
+
+	private void writeJson() throws IOException {
+		Writer t = mOut;
+		int holes = mData.getHoleCount();
+		int players = mData.getPlayerCount();
+
+		t.write("{\"par\":[");
+		for (int h = 0; h < holes; h++) {
+			if (h > 0)
+				t.write(',');
+			t.write(ScoreText.number(mData.getPar(h)));
+		}
+		t.write("],\"totalPar\":");
+		t.write(ScoreText.number(mData.getTotalPar()));
+		t.write(",\"players\":[");
+
+		for (int p = 0; p < players; p++) {
+			t.write(p > 0 ? ",\n{\"name\":" : "\n{\"name\":");
+			writeJsonString(mData.getPlayerName(p));
+			t.write(",\"scores\":[");
+			for (int h = 0; h < holes; h++) {
+				if (h > 0)
+					t.write(',');
+				int s = mData.getScore(p, h);
+				t.write(s > 0 ? ScoreText.number(s) : "null");	// Unplayed holes are null
+			}
+			t.write("],\"total\":");
+			t.write(ScoreText.number(mData.getTotalStrokes(p)));
+			t.write(",\"vsPar\":");
+			t.write(Integer.toString(mData.getTotalVsPar(p)));	// No leading + in JSON
+			t.write(",\"holesPlayed\":");
+			t.write(ScoreText.number(mData.getHolesPlayed(p)));
+			t.write(",\"stats\":{\"results\":[");
+			for (int r = 0; r < ScoreStats.RESULT_COUNT; r++) {
+				if (r > 0)
+					t.write(',');
+				t.write(ScoreText.number(mStats.getResultCount(p, r)));
+			}
+			t.write("],\"front\":");
+			t.write(ScoreText.number(mStats.getFrontStrokes(p)));
+			t.write(",\"back\":");
+			t.write(ScoreText.number(mStats.getBackStrokes(p)));
+			t.write(",\"bestStreak\":");
+			t.write(ScoreText.number(mStats.getBestStreak(p)));
+			t.write(",\"bestBirdieStreak\":");
+			t.write(ScoreText.number(mStats.getBestBirdieStreak(p)));
+			t.write("}}");
+		}
+		t.write("],\n\"frontHoles\":");
+		t.write(ScoreText.number(mStats.getFrontHoleCount()));
+		t.write(",\"holeStats\":[");
+
+		for (int h = 0; h < holes; h++) {
+			int played = mStats.getHolePlayed(h);
+			t.write(h > 0 ? ",\n{\"played\":" : "\n{\"played\":");
+			t.write(ScoreText.number(played));
+			if (played > 0) {
+				t.write(",\"mean\":");
+				t.write(ScoreText.decimal(mStats.getHoleSum(h), played));
+				t.write(",\"min\":");
+				t.write(ScoreText.number(mStats.getHoleMin(h)));
+				t.write(",\"max\":");
+				t.write(ScoreText.number(mStats.getHoleMax(h)));
+				t.write(",\"holesInOne\":");
+				t.write(ScoreText.number(mStats.getHoleInOnes(h)));
+				t.write(",\"difficultyRank\":");
+				t.write(ScoreText.number(difficultyRank(h)));
+
+				// Number of players with each score, from 1 stroke to the worst
+				t.write(",\"distribution\":[");
+				int max = mStats.getHoleMax(h);
+				for (int s = 1; s <= max; s++) {
+					if (s > 1)
+						t.write(',');
+					t.write(ScoreText.number(mStats.getHoleScoreCount(h, s)));
+				}
+				t.write(']');
+			}
+			t.write('}');
+		}
+		t.write("]}\n");
+	}
+
+	/**
+	 * Write a string as a quoted JSON string.
+	 */
+	private void writeJsonString(String s) throws IOException {
+		mOut.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				mOut.write('\\');
+				mOut.write(c);
+			} else if (c < 0x20) {
+				mOut.write("\\u00");
+				mOut.write(Character.forDigit(c >> 4, 16));
+				mOut.write(Character.forDigit(c & 0xF, 16));
+			} else {
+				mOut.write(c);
+			}
+		}
+		mOut.write('"');
+	}
+}
@@ -0,0 +1,381 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of changes to score data, kept next to its save file.  Each change is a small
+ * record, queued to be appended to the journal as soon as it's made, instead of rewriting the
+ * whole file.  Once the journal would grow past COMPACT_RATIO times the size of the save file,
+ * the save file is rewritten and the journal started over, so replaying stays cheap next to
+ * reading the save file itself.
+ *
+ * The journal starts with a cookie and the CRC of the save file it applies to, so a journal
+ * left over from an older save file is ignored.  A record cut short by a crash is ignored too,
+ * so at most that one change is lost.
+ */
+class ScoreJournal {
+	// Constants
+	static final String SUFFIX = ".jnl";			// Appended to save filename to get journal filename
+	static final int JOURNAL_COOKIE = 20000614;	// Cookie at start of journal
+	static final int HEADER_SIZE = 8;			// Cookie and CRC
+	static final int MIN_COMPACT_SIZE = 4096;	// Never compact a journal smaller than this
+	static final int COMPACT_RATIO = 2;			// Compact once the journal outgrows the save file this many times
+
+	// Record types
+	private static final int RECORD_SCORE = 1;		// player, hole, score
+	private static final int RECORD_PAR = 2;		// hole, par
+	private static final int RECORD_NAME = 3;		// player, name
+	private static final int RECORD_DIMENSIONS = 4;	// players, holes
+	private static final int RECORD_RESET = 5;		// no data
+	private static final int RECORD_SETTINGS = 6;	// flags, selected player, selected hole
+	private static final int RECORD_UNDO = 7;		// no data
+	private static final int RECORD_REDO = 8;		// no data
+
+	// Journal state
+	private final ScoreStorage mStorage;	// Storage holding the save file and journal
+	private final String mFilename;		// Save file the journal belongs to
+	private final ScoreData mData;		// Data the records describe
+	private long mLength;				// Length of the journal file, or -1 if it must be compacted
+	private volatile long mSaveLength;	// Length of the save file, set by the save thread
+	private volatile boolean mFailed;	// Set by the save thread if a write failed
+	private final ByteArrayOutputStream mBuffer = new ByteArrayOutputStream();	// Record being made
+	private final DataOutputStream mRecords = new DataOutputStream(mBuffer);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param storage
+	 *            Storage holding the save file.
+	 * @param filename
+	 *            Save file the journal belongs to.
+	 * @param data
+	 *            Data the records describe.  It's told which files were written, once they are.
+	 * @param length
+	 *            Length of the existing journal file, or -1 if there isn't a valid one.
+	 * @param saveLength
+	 *            Length of the save file.
+	 */
+	ScoreJournal(ScoreStorage storage, String filename, ScoreData data, long length,
+			long saveLength) {
+		mStorage = storage;
+		mFilename = filename;
+		mData = data;
+		mLength = length;
+		mSaveLength = saveLength;
+	}
+
+	/**
+	 * @return true if this is the journal for the save file.
+	 */
+	boolean isFor(ScoreStorage storage, String filename) {
+		return mStorage == storage && mFilename.equals(filename);
+	}
+
+	/*
+	 * Records.  Each is queued to be written as soon as it's made, after the data has changed.
+	 * Writing to a ByteArrayOutputStream can't fail, so IOExceptions are ignored.
+	 */
+	void recordScore(int player, int hole, int score) {
+		try {
+			mRecords.writeByte(RECORD_SCORE);
+			mRecords.writeShort(player);
+			mRecords.writeShort(hole);
+			mRecords.writeByte(score);
+		} catch (IOException e) {
+		}
+		flush();
+	}
+	void recordPar(int hole, int par) {
+		try {
+			mRecords.writeByte(RECORD_PAR);
+			mRecords.writeShort(hole);
+			mRecords.writeByte(par);
+		} catch (IOException e) {
+		}
+		flush();
+	}
+	void recordName(int player, String name) {
+		try {
+			mRecords.writeByte(RECORD_NAME);
+			mRecords.writeShort(player);
+			byte[] b = name.getBytes("UTF-8");
+			mRecords.writeShort(b.length);
+			mRecords.write(b);
+		} catch (IOException e) {
+		}
+		flush();
+	}
+	void recordDimensions(int players, int holes) {
+		try {
+			mRecords.writeByte(RECORD_DIMENSIONS);
+			mRecords.writeShort(players);
+			mRecords.writeShort(holes);
+		} catch (IOException e) {
+		}
+		flush();
+	}
+	void recordReset() {
+		try {
+			mRecords.writeByte(RECORD_RESET);
+		} catch (IOException e) {
+		}
+		flush();
+	}
+	void recordUndo() {
+		try {
+			mRecords.writeByte(RECORD_UNDO);
+		} catch (IOException e) {
+		}
+		flush();
+	}
+	void recordRedo() {
+		try {
+			mRecords.writeByte(RECORD_REDO);
+		} catch (IOException e) {
+		}
+		flush();
+	}
+	void recordSettings(int flags, int selPlayer, int selHole) {
+		try {
+			mRecords.writeByte(RECORD_SETTINGS);
+			mRecords.writeByte(flags);
+			mRecords.writeShort(selPlayer);
+			mRecords.writeShort(selHole);
+		} catch (IOException e) {
+		}
+		flush();
+	}
+
+	/**
+	 * Queue the record just made to be appended to the journal.  If the journal would get too
+	 * big, or hasn't been started, or an earlier write failed, instead queue the save file to be
+	 * rewritten from a snapshot of the data and a new journal started.  Must be called on the
+	 * thread which changes the data.
+	 */
+	void flush() {
+		final long generation = mData.getGeneration();
+		long compactSize = Math.max(MIN_COMPACT_SIZE, COMPACT_RATIO * mSaveLength);
+		if (mLength < 0 || mFailed || mLength + mBuffer.size() > compactSize) {
+			final ScoreData snapshot = mData.snapshot();
+			mBuffer.reset();
+			mLength = HEADER_SIZE;
+			mFailed = false;
+			ScoreSaver.run(new Runnable() {
+				public void run() {
+					long saveLength = compact(mStorage, mFilename, snapshot);
+					if (saveLength < 0) {
+						mFailed = true;
+						return;
+					}
+					mSaveLength = saveLength;
+					mFailed = false;
+					mData.markSaved(mStorage, generation, mFilename, mFilename + SUFFIX);
+				}
+			});
+			return;
+		}
+
+		if (mBuffer.size() == 0)
+			return;
+		final byte[] records = mBuffer.toByteArray();
+		mBuffer.reset();
+		mLength += records.length;
+		ScoreSaver.run(new Runnable() {
+			public void run() {
+				// A gap in the journal would replay later records onto the wrong data
+				if (mFailed)
+					return;
+				if (append(mStorage, mFilename, records))
+					mData.markSaved(mStorage, generation, mFilename + SUFFIX);
+				else
+					mFailed = true;
+			}
+		});
+	}
+
+	/**
+	 * @return CRC of a save file's contents, as stored in the journal header.
+	 */
+	static int checksum(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Append records to a journal file.
+	 *
+	 * @return true if the records were written.
+	 */
+	private static boolean append(ScoreStorage storage, String filename, byte[] records) {
+		try {
+			OutputStream f = storage.openOutput(filename + SUFFIX, true);
+			try {
+				f.write(records);
+			} finally {
+				f.close();
+			}
+			return true;
+		} catch (FileNotFoundException e) {
+			// TODO: do something about being unable to save the file
+		} catch (IOException e) {
+			// TODO: do something about being unable to save the file
+		}
+		return false;
+	}
+
+	/**
+	 * Rewrite a save file from a snapshot, and start a new, empty journal for it.  If this is
+	 * interrupted between the two writes, the old journal won't match the new save file, so
+	 * won't be replayed on top of it.
+	 *
+	 * @return Length of the save file, or -1 if both files couldn't be written.
+	 */
+	private static long compact(ScoreStorage storage, String filename, ScoreData snapshot) {
+		try {
+			ByteArrayOutputStream b = new ByteArrayOutputStream();
+			snapshot.writeSaveData(b);
+			byte[] data = b.toByteArray();
+
+			OutputStream f = storage.openOutput(filename, false);
+			try {
+				f.write(data);
+			} finally {
+				f.close();
+			}
+
+			DataOutputStream j = new DataOutputStream(storage.openOutput(filename + SUFFIX, false));
+			try {
+				j.writeInt(JOURNAL_COOKIE);
+				j.writeInt(checksum(data));
+			} finally {
+				j.close();
+			}
+			return data.length;
+		} catch (FileNotFoundException e) {
+			// TODO: do something about being unable to save the file
+		} catch (IOException e) {
+			// TODO: do something about being unable to save the file
+		}
+		return -1;
+	}
+
+	/**
+	 * Replay a save file's journal onto data just read from the save file.  Changes are applied
+	 * through the data's setters, so the data shouldn't be recording to a journal at the time.
+	 *
+	 * @param checksum
+	 *            CRC of the save file's contents.
+	 * @return Length of the journal file, or -1 if there was no usable journal for this save
+	 *         file, in which case the next save must start a new one.
+	 */
+	static long replay(ScoreStorage storage, String filename, int checksum, ScoreData data) {
+		DataInputStream s = null;
+		long length = -1;
+		try {
+			s = new DataInputStream(new BufferedInputStream(storage.openInput(filename + SUFFIX)));
+			if (s.readInt() != JOURNAL_COOKIE || s.readInt() != checksum)
+				return -1;
+			length = HEADER_SIZE;
+
+			// Apply records until we run out
+			while (true) {
+				int type = s.read();
+				if (type < 0)
+					break;
+				switch (type) {
+				case RECORD_SCORE: {
+					int player = s.readUnsignedShort();
+					int hole = s.readUnsignedShort();
+					data.setScore(player, hole, s.readUnsignedByte());
+					length += 6;
+					break;
+				}
+				case RECORD_PAR: {
+					int hole = s.readUnsignedShort();
+					data.setPar(hole, s.readUnsignedByte());
+					length += 4;
+					break;
+				}
+				case RECORD_NAME: {
+					int player = s.readUnsignedShort();
+					byte[] b = new byte[s.readUnsignedShort()];
+					s.readFully(b);
+					data.setPlayerName(player, new String(b, "UTF-8"));
+					length += 5 + b.length;
+					break;
+				}
+				case RECORD_DIMENSIONS: {
+					int players = s.readUnsignedShort();
+					data.setDimensions(players, s.readUnsignedShort());
+					length += 5;
+					break;
+				}
+				case RECORD_RESET:
+					data.resetScores();
+					length += 1;
+					break;
+				case RECORD_UNDO:
+					data.undoLast();
+					length += 1;
+					break;
+				case RECORD_REDO:
+					data.redoLast();
+					length += 1;
+					break;
+				case RECORD_SETTINGS: {
+					int flags = s.readUnsignedByte();
+					int selPlayer = s.readShort();
+					int selHole = s.readShort();
+					data.setSavedSettings(flags, selPlayer, selHole);
+					length += 6;
+					break;
+				}
+				default:
+					// Garbage; the rest of the journal can't be trusted, so start a new one
+					return -1;
+				}
+			}
+		} catch (EOFException e) {
+			// Last record was cut short; everything before it has been applied.  Start a new
+			// journal, since appending after the partial record would corrupt it.
+			return -1;
+		} catch (FileNotFoundException e) {
+			// No journal
+		} catch (IOException e) {
+			// Log.d("MiniGolfScore", "Error reading journal");
+			return -1;
+		} finally {
+			if (s != null) {
+				try {
+					s.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		return length;
+	}
+}
@@ -0,0 +1,201 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import android.content.ClipData;
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+//import android.util.Log;
+
+/**
+ * Serves the score card as a read-only stream, so it can be shared with EXTRA_STREAM instead
+ * of being copied into the intent.  The card is exported from a snapshot of the shared sheet,
+ * so it has any changes which haven't been saved yet.  It's exported into one end of a pipe on
+ * a background thread while the receiving app reads from the other, so it never has to be held
+ * in memory as a whole.
+ *
+ * The last path segment of the URI names the card's format by its extension; for example,
+ * content://com.spanglers.minigolfscore.scores/scores.html.  The statistics for the card are
+ * also served on their own as an HTML page, for StatsScreen.
+ *
+ * The provider isn't exported; other apps can only read a URI they've been granted, with
+ * grantRead().
+ */
+public class ScoreProvider extends ContentProvider {
+	static final String AUTHORITY = "com.spanglers.minigolfscore.scores";
+	static final String CARD_NAME = "scores";	// Name of the card, before the extension
+	static final String STATS_NAME = "stats.html";	// Name of the statistics page
+
+	/**
+	 * @return URI of the score card in the specified format.
+	 */
+	static Uri getCardUri(int format) {
+		return Uri.parse("content://" + AUTHORITY + "/" + CARD_NAME + ScoreExporter.getExtension(format));
+	}
+
+	/**
+	 * @return URI of the statistics page.
+	 */
+	static Uri getStatsUri() {
+		return Uri.parse("content://" + AUTHORITY + "/" + STATS_NAME);
+	}
+
+	/**
+	 * Let the app an intent is sent to read a URI.  The grant is carried in the intent's ClipData
+	 * too, so it survives being passed on by a chooser; before Jelly Bean it only reaches the
+	 * app the intent is sent to directly.
+	 */
+	static void grantRead(Intent intent, Uri uri) {
+		intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+			intent.setClipData(ClipData.newRawUri(CARD_NAME, uri));
+	}
+
+	/**
+	 * @return true if a URI names the statistics page.
+	 */
+	private static boolean isStats(Uri uri) {
+		return STATS_NAME.equals(uri.getLastPathSegment());
+	}
+
+	/**
+	 * @return Format of the card a URI names, or -1 if it doesn't name one.  The statistics
+	 *         page is HTML.
+	 */
+	private static int getFormat(Uri uri) {
+		if (isStats(uri))
+			return ScoreExporter.FORMAT_HTML;
+		String name = uri.getLastPathSegment();
+		if (name == null || !name.startsWith(CARD_NAME))
+			return -1;
+		return ScoreExporter.getFormat(name.substring(CARD_NAME.length()));
+	}
+
+	@Override
+	public boolean onCreate() {
+		return true;
+	}
+
+	@Override
+	public String getType(Uri uri) {
+		int format = getFormat(uri);
+		return format < 0 ? null : ScoreExporter.getMimeType(format);
+	}
+
+	/**
+	 * Describe the card, for apps which want to show its name before reading it.  The size isn't
+	 * known until it has been exported.
+	 */
+	@Override
+	public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+			String sortOrder) {
+		if (getFormat(uri) < 0)
+			return null;
+		if (projection == null)
+			projection = new String[] { OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE };
+
+		Object[] row = new Object[projection.length];
+		for (int i = 0; i < projection.length; i++) {
+			if (OpenableColumns.DISPLAY_NAME.equals(projection[i]))
+				row[i] = uri.getLastPathSegment();
+		}
+		MatrixCursor c = new MatrixCursor(projection, 1);
+		c.addRow(row);
+		return c;
+	}
+
+	@Override
+	public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+		final int format = getFormat(uri);
+		final boolean stats = isStats(uri);
+		if (format < 0 || !"r".equals(mode))
+			throw new FileNotFoundException(uri.toString());
+
+		final ParcelFileDescriptor[] pipe;
+		try {
+			pipe = ParcelFileDescriptor.createPipe();
+		} catch (IOException e) {
+			throw new FileNotFoundException("Can't create pipe");
+		}
+
+		/* This is called on a binder thread, but the sheet may only be touched on the main
+		 * thread, so the snapshot is taken there.  It's then exported in the background, so the
+		 * reader can start on the card right away.
+		 */
+		final Context context = getContext();
+		new Handler(Looper.getMainLooper()).post(new Runnable() {
+			public void run() {
+				final ScoreData data = ScoreRepository.get(context).getData().snapshot();
+				new Thread(new Runnable() {
+					public void run() {
+						export(data, stats, format, pipe[1]);
+					}
+				}, "ScoreProvider").start();
+			}
+		});
+		return pipe[0];
+	}
+
+	/**
+	 * Export the card or statistics page into the write end of a pipe, and close it.
+	 */
+	private static void export(ScoreData data, boolean stats, int format, ParcelFileDescriptor fd) {
+		OutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(fd);
+		try {
+			if (stats)
+				ScoreExporter.writeStatsPage(data, out);
+			else
+				ScoreExporter.write(data, data.getSavedScoreRelative(), format, out);
+		} catch (IOException e) {
+			// Log.d("MiniGolfScore", "Reader closed score card pipe");
+		} finally {
+			try {
+				out.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/* The card is read-only */
+	@Override
+	public Uri insert(Uri uri, ContentValues values) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int delete(Uri uri, String selection, String[] selectionArgs) {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,152 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import android.content.Context;
+
+/**
+ * The app's score sheet, shared by all its activities.  There is one ScoreData for the whole
+ * process, loaded from the save file the first time it's asked for.  Activities work on it
+ * directly instead of each loading and saving their own copy, and it's only written back when
+ * it has changed since it was last saved.
+ *
+ * The settings screen edits a copy of the sheet's settings, which is applied to the sheet only
+ * when the user accepts it, so opening and closing settings doesn't touch the save file.
+ *
+ * Must only be used on the main thread.
+ */
+class ScoreRepository {
+	private static ScoreRepository sInstance;	// The app's repository, once created
+
+	/**
+	 * The settings the settings screen can change.
+	 */
+	static class Settings {
+		int mPlayerCount;			// Number of players
+		int mHoleCount;				// Number of holes
+		boolean mForceLandscape;	// Force landscape orientation
+	}
+
+	private final ScoreStorage mStorage;			// Storage holding the save file
+	private final ScoreData mData = new ScoreData();	// The sheet
+	private Settings mDraft;	// Settings being edited, or null if the settings screen isn't open
+	private int mRefreshHits = 0;		// Refreshes which found the save file unchanged
+	private int mRefreshMisses = 0;		// Refreshes which had to reload the save file
+
+	private ScoreRepository(ScoreStorage storage) {
+		mStorage = storage;
+		mData.setStorageMode(MiniGolfScore.STORAGE_MODE);
+		mData.loadFromFile(mStorage, MiniGolfScore.SAVE_FILENAME);
+	}
+
+	/**
+	 * @return The app's repository, loading the sheet if this is the first call.
+	 */
+	static ScoreRepository get(Context context) {
+		if (sInstance == null)
+			sInstance = new ScoreRepository(MiniGolfScore.getStorage(context));
+		return sInstance;
+	}
+
+	/**
+	 * @return The sheet.  Changes to it are seen by every activity, and saved by save().
+	 */
+	ScoreData getData() {
+		return mData;
+	}
+
+	/**
+	 * Reload the sheet if something else has written the save file since the sheet last loaded
+	 * or saved it.  Usually nothing has, and only the file's modification time and length are
+	 * checked, so the sheet isn't parsed again and its views aren't told to lay out again.  A
+	 * sheet with changes that haven't been saved yet keeps them.
+	 *
+	 * @return true if the sheet was reloaded.
+	 */
+	boolean refresh() {
+		if (!mData.needsReload(mStorage, MiniGolfScore.SAVE_FILENAME)) {
+			mRefreshHits++;
+			return false;
+		}
+		mRefreshMisses++;
+		mData.loadFromFile(mStorage, MiniGolfScore.SAVE_FILENAME);
+		return true;
+	}
+
+	/**
+	 * @return Number of refreshes which didn't need to reload the sheet.
+	 */
+	int getRefreshHits() {
+		return mRefreshHits;
+	}
+
+	/**
+	 * @return Number of refreshes which reloaded the sheet.
+	 */
+	int getRefreshMisses() {
+		return mRefreshMisses;
+	}
+
+	/**
+	 * Save the sheet in the background, if it has changed since it was last saved.
+	 */
+	void save() {
+		mData.saveToFileAsync(mStorage, MiniGolfScore.SAVE_FILENAME);
+	}
+
+	/**
+	 * Start editing the settings, from a copy of the sheet's current ones.  Any earlier edit
+	 * which wasn't applied is dropped.
+	 *
+	 * @return The copy to edit.
+	 */
+	Settings startEditingSettings() {
+		mDraft = new Settings();
+		mDraft.mPlayerCount = mData.getPlayerCount();
+		mDraft.mHoleCount = mData.getHoleCount();
+		mDraft.mForceLandscape = mData.getForceLandscape();
+		return mDraft;
+	}
+
+	/**
+	 * @return The settings being edited, so an edit survives the settings screen being
+	 *         recreated.  Starts a new edit if there isn't one.
+	 */
+	Settings getSettingsDraft() {
+		return mDraft != null ? mDraft : startEditingSettings();
+	}
+
+	/**
+	 * Apply the settings being edited to the sheet, and save it if that changed it.
+	 */
+	void applySettings() {
+		if (mDraft == null)
+			return;
+		if (mDraft.mPlayerCount != mData.getPlayerCount()
+				|| mDraft.mHoleCount != mData.getHoleCount())
+			mData.setDimensions(mDraft.mPlayerCount, mDraft.mHoleCount);
+		mData.setForceLandscape(mDraft.mForceLandscape);
+		mDraft = null;
+		save();
+	}
+
+	/**
+	 * Stop editing the settings without applying them.
+	 */
+	void discardSettings() {
+		mDraft = null;
+	}
+}
@@ -0,0 +1,125 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes save files on a single background thread.  Saves are queued as snapshots of the score
+ * data; if several saves of the same file are queued before the thread gets to them, only the
+ * most recent snapshot is written.
+ */
+class ScoreSaver {
+	private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+	// Pending saves, by filename.  Guarded by sPending.
+	private static final HashMap<String, PendingSave> sPending = new HashMap<String, PendingSave>();
+	private static boolean sScheduled = false;	// Is a drain task queued?  Guarded by sPending.
+
+	/**
+	 * A snapshot waiting to be written.
+	 */
+	private static class PendingSave {
+		final ScoreStorage mStorage;	// Storage holding the file
+		final ScoreData mOwner;			// Data the snapshot was taken from
+		final ScoreData mSnapshot;		// Copy of the data to write
+		final long mGeneration;			// Generation of the owner the snapshot was taken at
+
+		PendingSave(ScoreStorage storage, ScoreData owner, ScoreData snapshot, long generation) {
+			mStorage = storage;
+			mOwner = owner;
+			mSnapshot = snapshot;
+			mGeneration = generation;
+		}
+	}
+
+	/**
+	 * Writes all pending saves.
+	 */
+	private static final Runnable sDrain = new Runnable() {
+		public void run() {
+			PendingSave[] saves;
+			String[] filenames;
+			synchronized (sPending) {
+				saves = sPending.values().toArray(new PendingSave[sPending.size()]);
+				filenames = sPending.keySet().toArray(new String[sPending.size()]);
+				sPending.clear();
+				sScheduled = false;
+			}
+			for (int i = 0; i < saves.length; i++) {
+				PendingSave s = saves[i];
+				if (s.mSnapshot.writeToFile(s.mStorage, filenames[i]))
+					s.mOwner.markSaved(s.mStorage, s.mGeneration, filenames[i]);
+			}
+		}
+	};
+
+	private ScoreSaver() {
+	}
+
+	/**
+	 * Queue a snapshot to be written.  Replaces any snapshot of the same file which hasn't been
+	 * written yet.
+	 *
+	 * @param storage
+	 *            Storage holding the file.
+	 * @param filename
+	 *            File to write.
+	 * @param owner
+	 *            Data the snapshot was taken from, to be told when the save is done.
+	 * @param snapshot
+	 *            Copy of the data which won't be modified.
+	 * @param generation
+	 *            Generation of the owner the snapshot was taken at.
+	 */
+	static void save(ScoreStorage storage, String filename, ScoreData owner, ScoreData snapshot,
+			long generation) {
+		synchronized (sPending) {
+			sPending.put(filename, new PendingSave(storage, owner, snapshot, generation));
+			if (!sScheduled) {
+				sScheduled = true;
+				sExecutor.execute(sDrain);
+			}
+		}
+	}
+
+	/**
+	 * Queue a task to be run on the save thread, after everything queued before it.
+	 */
+	static void run(Runnable task) {
+		sExecutor.execute(task);
+	}
+
+	/**
+	 * Wait for all queued saves to be written.
+	 */
+	static void flush() {
+		try {
+			// The executor runs tasks in order, so once this no-op runs everything before it is done
+			sExecutor.submit(new Runnable() {
+				public void run() {
+				}
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// Can't happen; the task does nothing
+		}
+	}
+}
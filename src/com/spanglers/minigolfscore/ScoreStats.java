@@ -0,0 +1,358 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Statistics for a score sheet, kept up to date as it changes, like the running totals.
+ *
+ * Per hole: how many players have played it, their mean, best and worst scores, the
+ * distribution of scores and the number of holes-in-one.  Per player: how many holes they
+ * finished at each result relative to par, and their totals on the front and back halves.
+ * Changing a score updates these in O(1); changing par reclassifies that hole's scores, which
+ * is O(players) like the totals.
+ *
+ * Streaks are runs of consecutive holes, so one score can join or split a run anywhere in the
+ * row.  They aren't kept up to date; each player's streaks are marked stale when their row
+ * changes, and recomputed from the row the next time they're asked for.
+ */
+class ScoreStats {
+	// Results relative to par
+	static final int RESULT_EAGLE = 0;			// 2 or more under par
+	static final int RESULT_BIRDIE = 1;			// 1 under par
+	static final int RESULT_PAR = 2;			// Par
+	static final int RESULT_BOGEY = 3;			// 1 over par
+	static final int RESULT_DOUBLE_BOGEY = 4;	// 2 or more over par
+	static final int RESULT_COUNT = 5;			// Number of results
+
+	private static final int DIST_INITIAL = 8;	// Scores a new distribution has room for
+
+	private final ScoreData mData;		// Data the statistics are for
+	private int mFrontHoles;			// Holes in the front half; the rest are the back
+
+	// Per hole
+	private int[] mHolePlayed = new int[0];		// Number of players with a score
+	private int[] mHoleSum = new int[0];		// Sum of scores
+	private int[][] mHoleDist = new int[0][];	// Number of players with each score; null if none
+
+	// Per player
+	private int[] mResults = new int[0];		// RESULT_COUNT counts for each player
+	private int[] mFrontStrokes = new int[0];	// Sum of scores on the front half
+	private int[] mFrontVsPar = new int[0];		// Sum relative to par on the front half
+	private int[] mBestStreak = new int[0];		// Longest run of holes at par or better
+	private int[] mBestBirdieStreak = new int[0];	// Longest run of holes under par
+	private boolean[] mStreaksStale = new boolean[0];	// Streaks need recomputing
+
+	/**
+	 * Constructor.  Call rebuild() once the data has been filled in.
+	 */
+	ScoreStats(ScoreData data) {
+		mData = data;
+	}
+
+	/**
+	 * @return A copy of these statistics, for a copy of their data.
+	 */
+	ScoreStats copy(ScoreData data) {
+		ScoreStats s = new ScoreStats(data);
+		s.mFrontHoles = mFrontHoles;
+		s.mHolePlayed = mHolePlayed.clone();
+		s.mHoleSum = mHoleSum.clone();
+		s.mHoleDist = new int[mHoleDist.length][];
+		for (int h = 0; h < mHoleDist.length; h++) {
+			if (mHoleDist[h] != null)
+				s.mHoleDist[h] = mHoleDist[h].clone();
+		}
+		s.mResults = mResults.clone();
+		s.mFrontStrokes = mFrontStrokes.clone();
+		s.mFrontVsPar = mFrontVsPar.clone();
+		s.mBestStreak = mBestStreak.clone();
+		s.mBestBirdieStreak = mBestBirdieStreak.clone();
+		s.mStreaksStale = mStreaksStale.clone();
+		return s;
+	}
+
+	/**
+	 * Recompute everything from scratch.  Only needed when the dimensions change or the scores
+	 * are replaced wholesale.
+	 */
+	void rebuild() {
+		int players = mData.getPlayerCount();
+		int holes = mData.getHoleCount();
+		mFrontHoles = (holes + 1) / 2;
+
+		if (holes > mHolePlayed.length) {
+			mHolePlayed = new int[holes];
+			mHoleSum = new int[holes];
+			mHoleDist = new int[holes][];
+		} else {
+			Arrays.fill(mHolePlayed, 0);
+			Arrays.fill(mHoleSum, 0);
+			Arrays.fill(mHoleDist, null);
+		}
+		if (players > mFrontStrokes.length) {
+			mResults = new int[players * RESULT_COUNT];
+			mFrontStrokes = new int[players];
+			mFrontVsPar = new int[players];
+			mBestStreak = new int[players];
+			mBestBirdieStreak = new int[players];
+			mStreaksStale = new boolean[players];
+		} else {
+			Arrays.fill(mResults, 0);
+			Arrays.fill(mFrontStrokes, 0);
+			Arrays.fill(mFrontVsPar, 0);
+		}
+		Arrays.fill(mStreaksStale, true);
+
+		for (int p = 0; p < players; p++) {
+			if (mData.getHolesPlayed(p) == 0)
+				continue;	// Nothing to count
+			for (int h = 0; h < holes; h++) {
+				int score = mData.getScore(p, h);
+				if (score > 0)
+					count(p, h, score, mData.getPar(h), 1);
+			}
+		}
+	}
+
+	/**
+	 * Called when a score changes.
+	 *
+	 * @param oldScore, newScore
+	 *            Score before and after the change; 0 if the hole wasn't played.
+	 */
+	void scoreChanged(int player, int hole, int oldScore, int newScore) {
+		int par = mData.getPar(hole);
+		if (oldScore > 0)
+			count(player, hole, oldScore, par, -1);
+		if (newScore > 0)
+			count(player, hole, newScore, par, 1);
+		mStreaksStale[player] = true;
+	}
+
+	/**
+	 * Called when par for a hole changes.
+	 */
+	void parChanged(int hole, int oldPar, int newPar) {
+		int players = mData.getPlayerCount();
+		for (int p = 0; p < players; p++) {
+			int score = mData.getScore(p, hole);
+			if (score == 0)
+				continue;
+			mResults[p * RESULT_COUNT + result(score - oldPar)]--;
+			mResults[p * RESULT_COUNT + result(score - newPar)]++;
+			if (hole < mFrontHoles)
+				mFrontVsPar[p] -= newPar - oldPar;
+			mStreaksStale[p] = true;
+		}
+	}
+
+	/**
+	 * Add a score to the statistics, or take it out.
+	 *
+	 * @param sign
+	 *            1 to add the score, -1 to take it out.
+	 */
+	private void count(int player, int hole, int score, int par, int sign) {
+		mHolePlayed[hole] += sign;
+		mHoleSum[hole] += sign * score;
+		int[] dist = mHoleDist[hole];
+		if (dist == null || score >= dist.length) {
+			// Scores are at most ScoreData.MAX_VALUE, so this only grows a few times
+			int[] bigger = new int[Math.max(DIST_INITIAL, Integer.highestOneBit(score) * 2)];
+			if (dist != null)
+				System.arraycopy(dist, 0, bigger, 0, dist.length);
+			dist = bigger;
+			mHoleDist[hole] = dist;
+		}
+		dist[score] += sign;
+
+		mResults[player * RESULT_COUNT + result(score - par)] += sign;
+		if (hole < mFrontHoles) {
+			mFrontStrokes[player] += sign * score;
+			mFrontVsPar[player] += sign * (score - par);
+		}
+	}
+
+	/**
+	 * @return RESULT_* for a score relative to par.
+	 */
+	static int result(int vsPar) {
+		if (vsPar <= -2)
+			return RESULT_EAGLE;
+		if (vsPar >= 2)
+			return RESULT_DOUBLE_BOGEY;
+		return RESULT_PAR + vsPar;
+	}
+
+	/**
+	 * @return Number of players who have a score for a hole.
+	 */
+	int getHolePlayed(int hole) {
+		return mHolePlayed[hole];
+	}
+
+	/**
+	 * @return Sum of the scores for a hole.  Divide by getHolePlayed() for the mean.
+	 */
+	int getHoleSum(int hole) {
+		return mHoleSum[hole];
+	}
+
+	/**
+	 * @return Number of players who took the specified number of strokes on a hole.
+	 */
+	int getHoleScoreCount(int hole, int score) {
+		int[] dist = mHoleDist[hole];
+		return (dist == null || score < 0 || score >= dist.length) ? 0 : dist[score];
+	}
+
+	/**
+	 * @return Number of holes-in-one on a hole.
+	 */
+	int getHoleInOnes(int hole) {
+		return getHoleScoreCount(hole, 1);
+	}
+
+	/**
+	 * @return Best score on a hole, or 0 if nobody has played it.
+	 */
+	int getHoleMin(int hole) {
+		int[] dist = mHoleDist[hole];
+		if (dist != null) {
+			for (int s = 1; s < dist.length; s++) {
+				if (dist[s] > 0)
+					return s;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return Worst score on a hole, or 0 if nobody has played it.
+	 */
+	int getHoleMax(int hole) {
+		int[] dist = mHoleDist[hole];
+		if (dist != null) {
+			for (int s = dist.length - 1; s > 0; s--) {
+				if (dist[s] > 0)
+					return s;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Rank the holes by difficulty: how far the mean score is over par.
+	 *
+	 * @return Hole indices, hardest first.  Holes nobody has played come last, in order.
+	 */
+	int[] getHolesByDifficulty() {
+		int holes = mData.getHoleCount();
+		Integer[] order = new Integer[holes];
+		for (int h = 0; h < holes; h++)
+			order[h] = h;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int pa = mHolePlayed[a], pb = mHolePlayed[b];
+				if (pa == 0 || pb == 0)
+					return (pa == 0) == (pb == 0) ? a - b : (pa == 0 ? 1 : -1);
+				// Compare (sum / played - par) without dividing
+				long da = (long) (mHoleSum[a] - pa * mData.getPar(a)) * pb;
+				long db = (long) (mHoleSum[b] - pb * mData.getPar(b)) * pa;
+				if (da != db)
+					return da > db ? -1 : 1;
+				return a - b;
+			}
+		});
+
+		int[] ranked = new int[holes];
+		for (int i = 0; i < holes; i++)
+			ranked[i] = order[i];
+		return ranked;
+	}
+
+	/**
+	 * @return Number of holes a player finished with a result.
+	 * @param result
+	 *            One of the RESULT_* constants.
+	 */
+	int getResultCount(int player, int result) {
+		return mResults[player * RESULT_COUNT + result];
+	}
+
+	/**
+	 * @return Number of holes in the front half of the sheet.
+	 */
+	int getFrontHoleCount() {
+		return mFrontHoles;
+	}
+
+	int getFrontStrokes(int player) {
+		return mFrontStrokes[player];
+	}
+
+	int getFrontVsPar(int player) {
+		return mFrontVsPar[player];
+	}
+
+	int getBackStrokes(int player) {
+		return mData.getTotalStrokes(player) - mFrontStrokes[player];
+	}
+
+	int getBackVsPar(int player) {
+		return mData.getTotalVsPar(player) - mFrontVsPar[player];
+	}
+
+	/**
+	 * @return Longest run of consecutive holes a player finished at par or better.
+	 */
+	int getBestStreak(int player) {
+		updateStreaks(player);
+		return mBestStreak[player];
+	}
+
+	/**
+	 * @return Longest run of consecutive holes a player finished under par.
+	 */
+	int getBestBirdieStreak(int player) {
+		updateStreaks(player);
+		return mBestBirdieStreak[player];
+	}
+
+	/**
+	 * Recompute a player's streaks if their row has changed.
+	 */
+	private void updateStreaks(int player) {
+		if (!mStreaksStale[player])
+			return;
+		int holes = mData.getHoleCount();
+		int run = 0, best = 0, birdieRun = 0, bestBirdie = 0;
+		for (int h = 0; h < holes; h++) {
+			int score = mData.getScore(player, h);
+			int vsPar = score - mData.getPar(h);
+			run = (score > 0 && vsPar <= 0) ? run + 1 : 0;
+			birdieRun = (score > 0 && vsPar < 0) ? birdieRun + 1 : 0;
+			best = Math.max(best, run);
+			bestBirdie = Math.max(bestBirdie, birdieRun);
+		}
+		mBestStreak[player] = best;
+		mBestBirdieStreak[player] = bestBirdie;
+		mStreaksStale[player] = false;
+	}
+}
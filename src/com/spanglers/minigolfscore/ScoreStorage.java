@@ -0,0 +1,71 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Where save files are kept.  ScoreData, its journal and the background saver only go through
+ * this, so the same data can be kept in app-private files, in memory, or anywhere else, and
+ * persistence can be exercised off the device.  Implementations must allow files to be opened
+ * from the background save thread.
+ *
+ * See MiniGolfScore.getStorage() for the one the app uses.
+ */
+public interface ScoreStorage {
+	// Backends, as named by R.string.config_storage_backend
+	static final String BACKEND_STREAM = "stream";		// Buffered streams on files; see StreamFileStorage
+	static final String BACKEND_CHANNEL = "channel";	// Whole-file channel I/O; see ChannelFileStorage
+	static final String BACKEND_MEMORY = "memory";		// In memory; see MemoryStorage
+
+	/**
+	 * Open a file for reading.
+	 *
+	 * @throws java.io.FileNotFoundException
+	 *             if there is no such file.
+	 */
+	InputStream openInput(String name) throws IOException;
+
+	/**
+	 * Open a file for writing, creating it if there isn't one.  Writes aren't guaranteed to be
+	 * visible until the stream is closed.  When replacing a file, its old contents must stay
+	 * whole until then, and be swapped for the new ones all at once.
+	 *
+	 * @param append
+	 *            true to add to the end of the file; false to replace its contents.
+	 */
+	OutputStream openOutput(String name, boolean append) throws IOException;
+
+	/**
+	 * @return When a file was last written, or 0 if there is no such file.  This need not be a
+	 *         time, but must change whenever the file is written.
+	 */
+	long lastModified(String name);
+
+	/**
+	 * @return Length of a file in bytes, or 0 if there is no such file.
+	 */
+	long length(String name);
+
+	/**
+	 * @return The file on disk holding a file, for memory-mapping it, or null if this storage
+	 *         doesn't keep files on disk.
+	 */
+	File getFile(String name);
+}
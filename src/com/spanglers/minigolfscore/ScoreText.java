@@ -0,0 +1,83 @@
+/* Copyright 2009 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package com.spanglers.minigolfscore;
+
+/**
+ * Cached text for the numbers shown on a score sheet.  Scores, par, hole numbers and most
+ * totals fall in a small range, so each string is built once and then reused; this keeps
+ * drawing from allocating a string (and a Formatter) per cell.  Numbers outside the range are
+ * built each time.
+ * 
+ * The tables are filled when the class is loaded, rather than on first use, so that the first
+ * frame to show a number doesn't allocate either.  That's about 3000 short strings.
+ */
+final class ScoreText {
+	static final int MAX_CACHED = 999;	// Largest magnitude which is cached
+
+	private static final String[] sNumbers = new String[MAX_CACHED + 1];	// "0" to "999"
+	private static final String[] sSigned = new String[2 * MAX_CACHED + 1];	// "-999" to "+999"
+
+	static {
+		for (int n = 0; n <= MAX_CACHED; n++)
+			sNumbers[n] = Integer.toString(n);
+		for (int n = -MAX_CACHED; n <= MAX_CACHED; n++)
+			sSigned[n + MAX_CACHED] = format(n);
+	}
+
+	private ScoreText() {
+	}
+
+	/**
+	 * @return n as text, like Integer.toString(n).
+	 */
+	static String number(int n) {
+		if (n < 0 || n > MAX_CACHED)
+			return Integer.toString(n);
+		return sNumbers[n];
+	}
+
+	/**
+	 * @return n as text with an explicit sign, like String.format("%+d", n).
+	 */
+	static String signed(int n) {
+		if (n < -MAX_CACHED || n > MAX_CACHED)
+			return format(n);
+		return sSigned[n + MAX_CACHED];
+	}
+
+	private static String format(int n) {
+		return n < 0 ? Integer.toString(n) : "+" + n;
+	}
+
+	/**
+	 * @return num / den as text with two decimal places, like String.format("%.2f"), but always
+	 *         with a '.', so it can be read by other programs whatever the locale.
+	 */
+	static String decimal(int num, int den) {
+		long hundredths = Math.round(100.0 * num / den);
+		long abs = Math.abs(hundredths);
+		long frac = abs % 100;
+		return (hundredths < 0 ? "-" : "") + (abs / 100) + (frac < 10 ? ".0" : ".") + frac;
+	}
+
+	/**
+	 * @return num / den as text with two decimal places and an explicit sign.
+	 */
+	static String signedDecimal(int num, int den) {
+		String s = decimal(num, den);
+		return s.startsWith("-") ? s : "+" + s;
+	}
+}
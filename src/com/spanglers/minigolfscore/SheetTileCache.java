@@ -0,0 +1,298 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * Cache of pre-rendered tiles for the layers of a score sheet.  Each layer is split into a grid
+ * of square tiles, which are rendered into offscreen bitmaps the first time they're drawn, and
+ * then just blitted until something they show changes.
+ *
+ * Total bitmap memory is bounded; when it would be exceeded, the least recently drawn tiles are
+ * evicted, and their bitmaps reused where possible.  Tiles are kept in per-layer arrays and an
+ * intrusive LRU list, so drawing cached tiles allocates nothing.
+ */
+class SheetTileCache {
+	static final int TILE_SIZE = 256;	// Width and height of a tile, in pixels
+	static final int BYTES_PER_PIXEL = 2;	// Tiles are opaque, so RGB_565 is enough
+
+	/**
+	 * Renders the contents of a tile.
+	 */
+	interface Painter {
+		/**
+		 * Paint part of a layer.  The canvas is translated so that layer coordinates may be used
+		 * directly, and is clipped to the tile.
+		 *
+		 * @param layer
+		 *            Layer to paint.
+		 * @param left, top, right, bottom
+		 *            Area of the layer covered by the tile.
+		 */
+		void paintTile(int layer, Canvas canvas, int left, int top, int right, int bottom);
+	}
+
+	/**
+	 * A rendered tile.
+	 */
+	private static class Tile {
+		int mLayer;				// Layer the tile belongs to
+		int mIndex;				// Index of the tile in its layer's array
+		Bitmap mBitmap;			// Rendered contents
+		boolean mStale;			// Needs repainting before it's drawn
+		int mFrame;				// Last frame the tile was drawn in
+		Tile mPrev, mNext;		// Neighbors in LRU list; mPrev is more recently drawn
+	}
+
+	private final int mMaxBytes;	// Most bitmap memory to use
+	private int mBytes = 0;			// Bitmap memory in use
+	private int mFrame = 0;			// Current frame number
+
+	// Per-layer tile grids
+	private final Tile[][] mTiles;	// Tiles for each layer, by row then column; null if not cached
+	private final int[] mWidths;	// Width of each layer, in pixels
+	private final int[] mHeights;	// Height of each layer, in pixels
+	private final int[] mColumns;	// Number of tile columns in each layer
+
+	// LRU list of all cached tiles
+	private Tile mNewest;
+	private Tile mOldest;
+
+	private final Canvas mCanvas = new Canvas();	// Reused for painting tiles
+
+	/**
+	 * Constructor.
+	 *
+	 * @param layers
+	 *            Number of layers.
+	 * @param maxBytes
+	 *            Most bitmap memory to use.  If the tiles for a single frame need more than
+	 *            this, it's exceeded until the next frame.
+	 */
+	SheetTileCache(int layers, int maxBytes) {
+		mMaxBytes = maxBytes;
+		mTiles = new Tile[layers][];
+		mWidths = new int[layers];
+		mHeights = new int[layers];
+		mColumns = new int[layers];
+		for (int layer = 0; layer < layers; layer++)
+			mTiles[layer] = new Tile[0];
+	}
+
+	/**
+	 * Set the size of a layer.  If it has changed, all of the layer's tiles are discarded.
+	 */
+	void setLayerSize(int layer, int width, int height) {
+		if (width == mWidths[layer] && height == mHeights[layer])
+			return;
+		discardLayer(layer);
+		mWidths[layer] = width;
+		mHeights[layer] = height;
+		mColumns[layer] = tilesFor(width);
+		mTiles[layer] = new Tile[mColumns[layer] * tilesFor(height)];
+	}
+
+	/**
+	 * Start drawing a new frame.  Tiles drawn in the current frame are never evicted.
+	 */
+	void startFrame() {
+		mFrame++;
+	}
+
+	/**
+	 * Draw the part of a layer which is visible, rendering any tiles which aren't cached.  The
+	 * canvas must be translated so that it's in layer coordinates.
+	 *
+	 * @param left, top, right, bottom
+	 *            Visible area of the layer.
+	 */
+	void draw(Canvas canvas, int layer, int left, int top, int right, int bottom, Painter painter) {
+		int firstCol = Math.max(0, left / TILE_SIZE);
+		int endCol = Math.min(mColumns[layer], tilesFor(right));
+		int firstRow = Math.max(0, top / TILE_SIZE);
+		int endRow = Math.min(mTiles[layer].length / Math.max(1, mColumns[layer]), tilesFor(bottom));
+		for (int row = firstRow; row < endRow; row++) {
+			for (int col = firstCol; col < endCol; col++) {
+				Tile t = getTile(layer, row * mColumns[layer] + col, painter);
+				canvas.drawBitmap(t.mBitmap, col * TILE_SIZE, row * TILE_SIZE, null);
+			}
+		}
+	}
+
+	/**
+	 * Mark the tiles covering part of a layer as needing to be repainted.
+	 *
+	 * @param left, top, right, bottom
+	 *            Area of the layer which has changed.
+	 */
+	void invalidate(int layer, int left, int top, int right, int bottom) {
+		int columns = mColumns[layer];
+		if (columns == 0)
+			return;
+		int firstCol = Math.max(0, left / TILE_SIZE);
+		int endCol = Math.min(columns, tilesFor(right));
+		int firstRow = Math.max(0, top / TILE_SIZE);
+		int endRow = Math.min(mTiles[layer].length / columns, tilesFor(bottom));
+		for (int row = firstRow; row < endRow; row++) {
+			for (int col = firstCol; col < endCol; col++) {
+				Tile t = mTiles[layer][row * columns + col];
+				if (t != null)
+					t.mStale = true;
+			}
+		}
+	}
+
+	/**
+	 * Mark all of a layer's tiles as needing to be repainted.
+	 */
+	void invalidateLayer(int layer) {
+		for (Tile t = mNewest; t != null; t = t.mNext) {
+			if (t.mLayer == layer)
+				t.mStale = true;
+		}
+	}
+
+	/**
+	 * Mark every tile as needing to be repainted.
+	 */
+	void invalidateAll() {
+		for (Tile t = mNewest; t != null; t = t.mNext)
+			t.mStale = true;
+	}
+
+	/**
+	 * Discard all tiles and free their bitmaps.
+	 */
+	void clear() {
+		while (mOldest != null)
+			free(mOldest);
+	}
+
+	private static int tilesFor(int pixels) {
+		return (pixels + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	/**
+	 * Get a tile, rendering it if it isn't cached or is stale, and mark it most recently used.
+	 */
+	private Tile getTile(int layer, int index, Painter painter) {
+		Tile t = mTiles[layer][index];
+		if (t == null) {
+			int col = index % mColumns[layer];
+			int row = index / mColumns[layer];
+			int width = Math.min(TILE_SIZE, mWidths[layer] - col * TILE_SIZE);
+			int height = Math.min(TILE_SIZE, mHeights[layer] - row * TILE_SIZE);
+			t = newTile(width, height);
+			t.mLayer = layer;
+			t.mIndex = index;
+			t.mStale = true;
+			mTiles[layer][index] = t;
+		} else {
+			unlink(t);
+		}
+
+		// Move to the front of the LRU list
+		t.mNext = mNewest;
+		if (mNewest != null)
+			mNewest.mPrev = t;
+		mNewest = t;
+		if (mOldest == null)
+			mOldest = t;
+		t.mFrame = mFrame;
+
+		if (t.mStale) {
+			int left = (index % mColumns[layer]) * TILE_SIZE;
+			int top = (index / mColumns[layer]) * TILE_SIZE;
+			mCanvas.setBitmap(t.mBitmap);
+			mCanvas.save();
+			mCanvas.translate(-left, -top);
+			painter.paintTile(layer, mCanvas, left, top, left + t.mBitmap.getWidth(),
+					top + t.mBitmap.getHeight());
+			mCanvas.restore();
+			t.mStale = false;
+		}
+		return t;
+	}
+
+	/**
+	 * Make a new tile with a bitmap of the specified size, evicting old tiles to stay within the
+	 * memory limit.  An evicted tile's bitmap is reused if it's the right size.
+	 */
+	private Tile newTile(int width, int height) {
+		int bytes = width * height * BYTES_PER_PIXEL;
+		Bitmap reuse = null;
+		while (mBytes + bytes > mMaxBytes && mOldest != null && mOldest.mFrame != mFrame) {
+			Tile old = mOldest;
+			if (reuse == null && old.mBitmap.getWidth() == width && old.mBitmap.getHeight() == height) {
+				// Take over the bitmap instead of freeing it
+				reuse = old.mBitmap;
+				old.mBitmap = null;
+				mBytes -= bytes;
+			}
+			free(old);
+		}
+
+		Tile t = new Tile();
+		if (reuse != null)
+			t.mBitmap = reuse;
+		else
+			t.mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+		mBytes += bytes;
+		return t;
+	}
+
+	/**
+	 * Discard all of a layer's tiles.
+	 */
+	private void discardLayer(int layer) {
+		Tile[] tiles = mTiles[layer];
+		for (int i = 0; i < tiles.length; i++) {
+			if (tiles[i] != null)
+				free(tiles[i]);
+		}
+	}
+
+	/**
+	 * Remove a tile from the cache and free its bitmap, if it still has one.
+	 */
+	private void free(Tile t) {
+		unlink(t);
+		mTiles[t.mLayer][t.mIndex] = null;
+		if (t.mBitmap != null) {
+			mBytes -= t.mBitmap.getWidth() * t.mBitmap.getHeight() * BYTES_PER_PIXEL;
+			t.mBitmap.recycle();
+			t.mBitmap = null;
+		}
+	}
+
+	/**
+	 * Remove a tile from the LRU list.
+	 */
+	private void unlink(Tile t) {
+		if (t.mPrev != null)
+			t.mPrev.mNext = t.mNext;
+		else if (mNewest == t)
+			mNewest = t.mNext;
+		if (t.mNext != null)
+			t.mNext.mPrev = t.mPrev;
+		else if (mOldest == t)
+			mOldest = t.mPrev;
+		t.mPrev = null;
+		t.mNext = null;
+	}
+}
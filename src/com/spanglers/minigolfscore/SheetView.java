@@ -1,870 +1,1294 @@
-/* Copyright 2009 Google Inc.
- * 
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- * 
- * http://www.apache.org/licenses/LICENSE-2.0
- * 
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License. 
- */
-
-package com.spanglers.minigolfscore;
-
-import android.content.Context;
-import android.content.res.TypedArray;
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.Rect;
-import android.graphics.Typeface;
-import android.graphics.Paint.Align;
-import android.graphics.Paint.Style;
-import android.util.AttributeSet;
-//import android.util.Log;
-import android.view.GestureDetector;
-import android.view.KeyEvent;
-import android.view.MotionEvent;
-import android.view.View;
-
-
-/**
- * Mini golf score sheet view
- */
-public class SheetView extends View {
-	// Constants
-	private static final String HEADER_TEXT_PLAYER = "HOLE";
-	private static final String HEADER_TEXT_SCORE = "Score";
-	private static final String HEADER_TEXT_PAR = "par";
-	private static final String HEADER_TEXT_VS_PAR = "+ / -";
-	
-    // Layout fields
-    private Paint mPaintHeader;					// Painter for header row
-    private Paint mPaintPar;					// Painter for par row
-    private Paint mPaintPlayer;					// Painter for player row
-    private Paint mPaintBackground;				// Painter shared between backgrounds
-    private Paint mPaintGrid;					// Painter shared between grid lines
-    private int mColorBackgroundHeader;			// Background color of header row
-    private int mColorBackgroundPar;			// Background color of par row
-    private int mColorBackgroundPlayerEven;		// Background color of even player number 
-    private int mColorBackgroundPlayerOdd;		// Background color of odd player number
-    private int mColorBackgroundActiveRow;		// Background color of active row or column
-    private int mColorBackgroundActiveCell;		// Background color of active cell (intersection of active row and column)
-    
-    // Measured dimensions
-    private int mRowHeightHeader;				// Row height of status
-    private int mRowHeightPar;					// Row height of par
-    private int mRowHeightPlayer;				// Row height of player
-    private int mTextOffsetHeader;				// Vertical offset of text inside header row
-    private int mTextOffsetPar;					// Vertical offset of text inside par row
-    private int mTextOffsetPlayer;				// Vertical offset of text inside player row
-    private int mColWidthPlayer;				// Column width of player
-    private int mColWidthHole;					// Column width of hole
-    private int mColWidthScore;					// Column width of score
-    
-    private int mScrollableWidth;				// Width of scrollable columns
-    private int mScrollableHeight;				// Height of scrollable rows
-    private int mFixedLeft, mFixedRight, mFixedTop, mFixedBottom;	// Width of unscrollable regions at edges
-    private int mScrollVisibleWidth;			// Width of visible scrollable region 
-    private int mScrollVisibleHeight;			// Height of visible scrollable region 
-
-    // Data
-    private ScoreData mData;				// Score data
-    
-    // Data for the grid control
-    private int[] mPlayerTotal;					// Total player score, for holes played so far
-
-    // Current control settings
-    private boolean mScoreRelative = false;		// Show relative instead of absolute score
-    private int mSelPlayer = -1;				// Selected player; -1 = none
-    private int mSelHole = -1; 					// Selected hole; -1 = none
-
-    private OnEditListener mOnEditListener;
-    private GestureDetector mGestureDetector;
-
-    
-    /** ******************************************************************************************
-     * Constructor for manual instantiation.
-     */
-    public SheetView(Context context) {
-        // Call the more complex constructor
-        this(context, null);
-    }
-
-    /** ******************************************************************************************
-     * Construct object, initializing with any attributes we understand from a
-     * layout file. These attributes are defined in
-     * SDK/assets/res/any/classes.xml.
-     *
-     * @see android.view.View#View(android.content.Context, android.util.AttributeSet)
-     */
-    public SheetView(Context context, AttributeSet attrs) {
-        super(context, attrs);
-        initSheetView();
-
-        // Read settings from XML
-        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SheetView);
-        // TODO: Read settings; currently all hard-coded in init.
-        a.recycle();
-    }
-
-    private final void initSheetView() {
-        // Log.d("SheetView", "initSheetView()");
-
-        mPaintHeader = new Paint();
-        mPaintHeader.setAntiAlias(true);
-        mPaintHeader.setTypeface(Typeface.DEFAULT_BOLD);
-        mPaintHeader.setTextSize(16);
-        mPaintHeader.setColor(0xFF000000);
-        mPaintHeader.setTextAlign(Align.CENTER);
-
-        mPaintPar = new Paint();
-        mPaintPar.setAntiAlias(true);
-        mPaintPar.setTextSize(16);
-        mPaintPar.setColor(0xFF000000);
-        mPaintPar.setTextAlign(Align.CENTER);
-        
-        mPaintPlayer = new Paint();
-        mPaintPlayer.setAntiAlias(true);
-        mPaintPlayer.setTextSize(30);
-        mPaintPlayer.setColor(0xFF000000);
-
-        mPaintBackground = new Paint();
-        mPaintBackground.setStyle(Style.FILL);
-        mColorBackgroundHeader = 0xFFC0C0FF;
-        mColorBackgroundPar = 0xFFB0B0FF;
-        mColorBackgroundPlayerEven = 0xFFFFFFFF; 
-        mColorBackgroundPlayerOdd = 0xFFC0FFC0;
-        mColorBackgroundActiveRow = 0xFFFFC080;
-        mColorBackgroundActiveCell = 0xFFFF8000;
-        
-        mPaintGrid = new Paint();
-        mPaintGrid.setStyle(Style.STROKE);
-        mPaintGrid.setColor(0xFF000000);
-
-        mData = new ScoreData();
-        
-        setPadding(0, 0, 0, 0);
-        setFocusable(true);
-        setFocusableInTouchMode(true);
-        setWillNotDraw(false);			// See View.onDraw() - since we override it, clear this flag
-
-        initGestureDetector();
-
-        setScrollBarStyle(SCROLLBARS_INSIDE_INSET);
-        
-        // TODO: This is how we allocate our score totals
-        checkForRelayout();
-    }
-
-    /**
-     * Initialize the gesture detector.
-     */
-    private final void initGestureDetector() {
-        mGestureDetector = new GestureDetector(new GestureDetector.SimpleOnGestureListener() {
-        	@Override
-        	public boolean onDown(MotionEvent ev) {
-        		// Log.d("SheetView", "Gesture DOWN");
-            	if (!hasFocus())
-            		requestFocus();
-        		return true;
-        	}
-        	
-        	@Override
-        	public boolean onSingleTapUp(MotionEvent ev) {
-        		int x = (int)ev.getX();
-        		int y = (int)ev.getY();
-        		// Log.d("SheetView", String.format("Gesture TAP at %d, %d", x, y));
-        		handlePress(x, y, false);
-        		return true;
-        	}
-        	
-			@Override
-			public void onLongPress(MotionEvent ev) {
-        		int x = (int)ev.getX();
-        		int y = (int)ev.getY();
-        		// Log.d("SheetView", String.format("Gesture LONG at %d, %d", x, y));
-        		handlePress(x, y, true);
-			}
-
-			@Override
-			public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
-        		// Log.d("SheetView", String.format("Gesture scroll %f,%f", distanceX, distanceY));
-        		// If initial motion event was out of the fixed section, only scroll row/col
-        		// TODO: Technically incorrect, since this doesn't account for padding
-        		if (e1.getX() < mFixedLeft || e1.getX() > getWidth() - mFixedRight)
-        			distanceX = 0;
-        		if (e1.getY() < mFixedTop || e1.getY() > getHeight() - mFixedBottom)
-        			distanceY = 0;
-
-        		// TODO: Probably should use scrollTo or use a scroller, so that we don't truncate small scrolls
-        		
-        		scrollBy((int)distanceX, (int)distanceY);
-        		return true;
-        	}
-        	// TODO: Handle fling
-        });
-    }
-    
-	/**
-     * @see android.view.View#measure(int, int)
-     */
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-    	computeDesiredDimensions();
-        setMeasuredDimension(measureWidth(widthMeasureSpec), measureHeight(heightMeasureSpec));
-    }
-
-    /**
-     * Determines the width of this view
-     * @param measureSpec A measureSpec packed into an int
-     * @return The width of the view, honoring constraints from measureSpec
-     */
-    private int measureWidth(int measureSpec) {
-        int result = 0;
-        int specMode = MeasureSpec.getMode(measureSpec);
-        int specSize = MeasureSpec.getSize(measureSpec);
-
-        if (specMode == MeasureSpec.EXACTLY) {
-            // We were told how big to be
-            // Log.d("SheetView", "measureWidth exactly " + specSize);
-        	result = specSize;
-        } else {
-            // Measure the text
-            result = getPaddingLeft() + mFixedLeft + mScrollableWidth  + mFixedRight + getPaddingRight();
-            // Log.d("SheetView", "measureWidth desired " + result);
-            if (specMode == MeasureSpec.AT_MOST) {
-                // Respect AT_MOST value if that was what is called for by measureSpec
-                result = Math.min(result, specSize);
-                // Log.d("SheetView", "measureWidth at_most " + result);
-            }
-        }
-
-        return result;
-    }
-
-    /**
-     * Determines the height of this view
-     * @param measureSpec A measureSpec packed into an int
-     * @return The height of the view, honoring constraints from measureSpec
-     */
-    private int measureHeight(int measureSpec) {
-        int result = 0;
-        int specMode = MeasureSpec.getMode(measureSpec);
-        int specSize = MeasureSpec.getSize(measureSpec);
-
-        if (specMode == MeasureSpec.EXACTLY) {
-            // We were told how big to be
-            // Log.d("SheetView", "measureHeight exactly " + specSize);
-            result = specSize;
-        } else {
-            // Measure the text
-            result = getPaddingTop() + mFixedTop + mScrollableHeight + mFixedBottom + getPaddingBottom();
-            // Log.d("SheetView", "measureHeight desired " + result);
-            if (specMode == MeasureSpec.AT_MOST) {
-                // Respect AT_MOST value if that was what is called for by measureSpec
-                result = Math.min(result, specSize);
-                // Log.d("SheetView", "measureHeight at_most " + result);
-            }
-        }
-        
-        return result;
-    }
-
-    /**
-     * Re-measure the contents, invalidate, and check for re-layout.
-     */
-    public void checkForRelayout() {
-    	/* TODO: Is there a better way to do this?  Perhaps the ScoreData can have a listener
-    	 * queue we can hook ourself into and be informed of changes.
-    	 */
-
-    	// TODO - kinda kludgy to forcibly reallocate this here
-        mPlayerTotal = new int[mData.getPlayerCount()];
-    	
-		computeDesiredDimensions();
-		requestLayout();
-		
-		/* Scroll to our current scroll position.  If our scroll range is smaller than it used
-		 * to be, this will clip to the new valid range.
-		 */
-		scrollTo(getScrollX(), getScrollY());
-		
-		invalidate();
-    }
-    
-	/** 
-     * Computes the dimensions of the sheet cells, based on the current settings.
-     * These are the desired dimensions, so are not affected by measure specs from onMeasure().
-     */
-    private void computeDesiredDimensions() {
-    	
-        mColWidthHole = 5 + (int)Math.max(mPaintHeader.measureText("36"), 
-        								  mPaintPlayer.measureText("36"));
-        mScrollableWidth = mData.getHoleCount() * mColWidthHole;
-        
-        mColWidthScore = 5 + (int)Math.max(mPaintHeader.measureText(HEADER_TEXT_SCORE), 
-        							       mPaintPlayer.measureText("+36"));
-      	mFixedRight = mColWidthScore;
-
-        mRowHeightHeader = 5 + (int)(mPaintHeader.descent() - mPaintHeader.ascent());
-        mRowHeightPar = 7 + (int)(mPaintPar.descent() - mPaintPar.ascent());
-        mFixedTop = mRowHeightHeader + mRowHeightPar;
-        mFixedBottom = 0;
-        
-        mRowHeightPlayer = 5 + (int)(mPaintPlayer.descent() - mPaintPlayer.ascent());
-        mScrollableHeight = mData.getPlayerCount() * mRowHeightPlayer;
-        
-        mTextOffsetHeader = 2 -(int)mPaintHeader.ascent();
-        mTextOffsetPar = 2 - (int)mPaintPar.ascent();
-        mTextOffsetPlayer = 2 -(int)mPaintPlayer.ascent();
-    	
-        // Determine the maximum width of the player name column, based on the current names
-        mColWidthPlayer = (int)Math.max(mPaintHeader.measureText(HEADER_TEXT_PLAYER),
-        								mPaintPar.measureText(HEADER_TEXT_PAR));
-        for (int p = 0; p < mData.getPlayerCount(); p++) {
-        	int playerWidth = 7 + (int)mPaintPlayer.measureText(mData.getPlayerName(p));
-        	if (mColWidthPlayer < playerWidth)
-        		mColWidthPlayer = playerWidth;
-        }
-        if (mFixedLeft != mColWidthPlayer) {
-            mFixedLeft = mColWidthPlayer;
-    		setSelectedHole(mSelHole);	// Scroll selection into view if the column width changed
-    		/* TODO: One thing that's a little odd there is that it only scrolls the hole into view 
-    		 * if the player name changed AND the player width changed.  If just the player name
-    		 * changes but the column width doesn't change, we don't scroll the hole into view.
-    		 * From a UI-design standpoint, should we be consistent and always scroll the hole 
-    		 * into view? 
-    		 */
-        }
-    }
-    
-    /**
-     * Called when size has changed.
-	 * @see android.view.View#onSizeChanged(int, int, int, int)
-	 */
-	@Override
-	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-		
-		// Assume scrollbars will be visible, so they count against our padding
-		setHorizontalScrollBarEnabled(true);
-		setVerticalScrollBarEnabled(true);
-
-		// Determine our new scroll extents
-		computeScollVisible();
-		
-		// Disable scrollbars we didn't end up needing
-		if (mScrollVisibleWidth >= mScrollableWidth)
-			setHorizontalScrollBarEnabled(false);
-		if (mScrollVisibleHeight >= mScrollableHeight)
-			setVerticalScrollBarEnabled(false);
-			
-		// Since that could have changed the padding, recompute the scroll extents
-		computeScollVisible();
-
-		/* TODO: That's kind of lame.  Is there a better way to get scrollbars not to reserve 
-		 * their padding when invisible?
-		 */
-		
-		// Re-scroll to our current scroll position, to clip it to the screen
-		setSelectedHole(mSelHole);
-		setSelectedPlayer(mSelPlayer);
-    }
-
-	/**
-	 * Compute the scroll extents given the current padding.  Note that changing the scroll 
-	 * extents may change the state of the scrollbars, which in turn affects the padding; this
-	 * is taken care of in onSizeChanged().
-	 */
-	private void computeScollVisible() {
-		mScrollVisibleWidth = Math.max(
-				0, getWidth() - getPaddingLeft() - mFixedLeft - mFixedRight - getPaddingRight());
-		mScrollVisibleHeight = Math.max(
-				0, getHeight() - getPaddingTop() - mFixedTop - mFixedBottom - getPaddingBottom());
-	}
-
-	/**
-     * Draw the control
-     *
-     * @see android.view.View#onDraw(android.graphics.Canvas)
-     */
-    @Override
-    protected void onDraw(Canvas canvas) {
-        /* Save the canvas in its original scrolled state, so that we can restore it before exit.
-         * If we don't do this, the scroll bars end up being drawn in the wrong place
-         */
-    	int x, y;
-
-        Rect rect_pad = new Rect(getPaddingLeft(), getPaddingTop(), getWidth() - getPaddingRight(), 
-        						 getHeight() - getPaddingBottom());
-        Rect rect_scroll = new Rect(mFixedLeft, mFixedTop, rect_pad.width() - mFixedRight, 
-        		                    rect_pad.height() - mFixedBottom);
-
-        int maxx = rect_pad.width();
-    	int maxy = Math.min(rect_pad.height(), mFixedTop + mScrollableHeight + mFixedBottom);
-    	int players = mData.getPlayerCount();
-    	int holes = mData.getHoleCount();
-    	
-        // Untranslate the canvas and inset by the padding
-        canvas.save();	// #1
-        canvas.translate(getScrollX(), getScrollY());
-        canvas.clipRect(rect_pad);
-        canvas.translate(getPaddingLeft(), getPaddingTop());
-        
-        // Draw fixed top backgrounds
-        mPaintBackground.setColor(mColorBackgroundHeader);
-        canvas.drawRect(0, 0, maxx, mRowHeightHeader, mPaintBackground);
-        mPaintBackground.setColor(mColorBackgroundPar);
-        canvas.drawRect(0, mRowHeightHeader, maxx, mRowHeightHeader + mRowHeightPar, 
-        		        mPaintBackground);
-        	
-        // Inset the clip rect and draw the player row backgrounds
-        canvas.save();
-        canvas.clipRect(0, mFixedTop, maxx, maxy - mFixedBottom);
-        canvas.translate(0, mFixedTop - getScrollY());
-        y = 0;
-        for (int p = 0; p < players; p++) {
-            if (p == mSelPlayer)
-            	mPaintBackground.setColor(mColorBackgroundActiveRow);
-            else if (p % 2 == 1)
-            	mPaintBackground.setColor(mColorBackgroundPlayerOdd);
-            else
-            	mPaintBackground.setColor(mColorBackgroundPlayerEven);
-            canvas.drawRect(0, y, maxx, y + mRowHeightPlayer, mPaintBackground);
-            y += mRowHeightPlayer;
-        }
-        canvas.restore();
-        
-        // If there's an active column, inset the clip rect and draw its background and the
-        if (mSelHole >= 0) {
-            x = mSelHole * mColWidthHole;
-        	mPaintBackground.setColor(mColorBackgroundActiveRow);
-        	
-            canvas.save();
-            canvas.clipRect(mFixedLeft, 0, maxx - mFixedRight, getHeight());
-            canvas.translate(mFixedLeft - getScrollX(), 0);
-            canvas.drawRect(x, 0, x + mColWidthHole, maxy, mPaintBackground);
-            canvas.restore();
-
-            // If there's an active cell, draw it darker
-            if (mSelPlayer >= 0) {
-            	y = mSelPlayer * mRowHeightPlayer;
-            	mPaintBackground.setColor(mColorBackgroundActiveCell);
-                canvas.save();
-                canvas.clipRect(rect_scroll);
-                canvas.translate(mFixedLeft - getScrollX(), mFixedTop - getScrollY());
-                canvas.drawRect(x, y, x + mColWidthHole, y + mRowHeightPlayer, mPaintBackground);
-                canvas.restore();
-            	
-            }
-        }
-        
-        // Draw fixed grid
-        canvas.drawLine(0, mFixedTop - 2, maxx, mFixedTop - 2, mPaintGrid);
-        canvas.drawLine(0, mFixedTop, maxx, mFixedTop, mPaintGrid);
-        canvas.drawLine(mFixedLeft, 0, mFixedLeft, maxy, mPaintGrid);
-        canvas.drawLine(mFixedLeft - 2, 0, mFixedLeft - 2, maxy, mPaintGrid);
-        canvas.drawLine(maxx - mFixedRight, 0, maxx - mFixedRight, maxy, mPaintGrid);
-        canvas.drawLine(maxx - mFixedRight + 2, 0, maxx - mFixedRight + 2, maxy, mPaintGrid);
-
-        // Draw fixed top foregrounds
-        canvas.drawText(HEADER_TEXT_PLAYER, mColWidthPlayer / 2, mTextOffsetHeader, mPaintHeader);
-        canvas.drawText(HEADER_TEXT_SCORE, maxx - mColWidthScore / 2, mTextOffsetHeader, 
-        		        mPaintHeader);
-
-        // Draw headers for holes and total score
-        canvas.save();
-        canvas.clipRect(mFixedLeft, 0, maxx - mFixedRight, maxy);
-        canvas.translate(mFixedLeft - getScrollX(), 0);
-        for (int h = 0; h < holes; h++) {
-            x = h * mColWidthHole;
-            canvas.drawText(Integer.toString(h + 1), x + mColWidthHole / 2, mTextOffsetHeader, 
-            		        mPaintHeader);
-            canvas.drawLine(x + mColWidthHole, 0, x + mColWidthHole, maxy, mPaintGrid);
-        }
-        canvas.restore();
-        
-        // Draw par row
-        canvas.drawLine(0, mRowHeightHeader, maxx, mRowHeightHeader, mPaintGrid);
-        y = mRowHeightHeader + mTextOffsetPar;
-        canvas.drawText(HEADER_TEXT_PAR, mColWidthPlayer / 2, y, mPaintPar);
-        
-        canvas.save();
-        canvas.clipRect(mFixedLeft, 0, maxx - mFixedRight, maxy);
-        canvas.translate(mFixedLeft - getScrollX(), 0);
-        int total = 0;
-        for (int h = 0; h < holes; h++) {
-        	int par = mData.getPar(h);
-        	if (par <= 0)
-        		continue;
-            x = h * mColWidthHole;
-            canvas.drawText(Integer.toString(par), x + mColWidthHole / 2, y, mPaintPar);
-        	total += par;
-        }
-        canvas.restore();
-        if (mScoreRelative)
-        	canvas.drawText(HEADER_TEXT_VS_PAR, maxx - mColWidthScore / 2, y, mPaintPar);
-        else
-        	canvas.drawText(Integer.toString(total), maxx - mColWidthScore / 2, y, mPaintPar);
-        
-        // Draw scores
-        canvas.save();
-        canvas.clipRect(rect_scroll);
-        canvas.translate(mFixedLeft - getScrollX(), mFixedTop - getScrollY());
-        mPaintPlayer.setTextAlign(Align.CENTER);
-        for (int p = 0; p < players; p++) {
-            y = p * mRowHeightPlayer + mTextOffsetPlayer;
-            mPlayerTotal[p] = 0;
-            for (int h = 0; h < holes; h++) {
-            	int score = mData.getScore(p, h);
-            	if (score <= 0)
-            		continue;
-	            x = h * mColWidthHole;
-	            if (mScoreRelative) {
-	            	int delta = score - mData.getPar(h);
-	            	if (delta >= 10) {
-	            		// Use a smaller font
-	            		canvas.drawText(String.format("%+d", delta), x + mColWidthHole / 2, y, 
-	            				        mPaintHeader);
-	            	} else {
-	            		canvas.drawText(String.format("%+d", delta), x + mColWidthHole / 2, y, 
-	            				        mPaintPlayer);
-	            	}
-	            	mPlayerTotal[p] += score - mData.getPar(h);
-	            } else {
-	            	canvas.drawText(Integer.toString(score), x + mColWidthHole / 2, y, 
-	            			        mPaintPlayer);
-	            	mPlayerTotal[p] += score;
-	            }
-            }
-        }
-        canvas.restore();
-        
-        // Translate vertically to the current scroll position
-        canvas.save();
-        canvas.clipRect(0, mFixedTop, maxx, maxy - mFixedBottom);
-        canvas.translate(0, mFixedTop - getScrollY());
-        
-        // Draw the non-scrolling portions of the player rows
-        for (int p = 0; p < players; p++) {
-        	y = p * mRowHeightPlayer;
-            mPaintPlayer.setTextAlign(Align.LEFT);
-            canvas.drawText(mData.getPlayerName(p), 2, y + mTextOffsetPlayer, mPaintPlayer);
-            mPaintPlayer.setTextAlign(Align.CENTER);
-            String s = String.format(mScoreRelative ? "%+d" : "%d", mPlayerTotal[p]);
-            canvas.drawText(s, maxx - mColWidthScore / 2, y + mTextOffsetPlayer, mPaintPlayer);
-            canvas.drawLine(0, y + mRowHeightPlayer, maxx, y + mRowHeightPlayer, mPaintGrid);
-        }
-        canvas.restore();
-
-        // Restore the canvas, so that scrollbars will be drawn properly
-        canvas.restore();	// #1
-    }
-
-    @Override
-    protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect)
-    {
-    	super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
-    	// Need to redraw with/without highlight row/col 
-    	invalidate();
-    }
-
-    @Override
-    public boolean onTouchEvent (MotionEvent event)
-    {
-    	// Pass to gesture detector
-    	return mGestureDetector.onTouchEvent(event);
-    }
-
-    @Override
-    public boolean onTrackballEvent(MotionEvent event)
-    {
-    	// final CharSequence[] eventNames = {"DOWN", "UP", "MOVE", "CANCEL"};
-    	// Log.d("SheetView", String.format("TrackballEvent %s %f %f %d", eventNames[event.getAction()], event.getX(), event.getY(), event.getHistorySize()));
-
-    	switch(event.getAction()) {
-    	case MotionEvent.ACTION_DOWN:
-    		// Pop up score dialog
-    		if (mSelPlayer >=0 && mSelHole >= 0 && mOnEditListener != null)
-  				mOnEditListener.onEditScore(mSelPlayer, mSelHole);
-    		return true;
-    	case MotionEvent.ACTION_MOVE:
-    		// TODO: Use scroller to integrate small movements
-    		// TODO: Change selected player and/or hole
-    		scrollBy((int)(event.getX() * 16), (int)(event.getY() * 16));
-    		return true;
-    	}
-    	return true;
-    }
-    
-    @Override
-    public boolean onKeyDown(int keyCode, KeyEvent event)
-    {
-    	// Log.d("SheetView", String.format("KeyDown %d %d", keyCode, event.getRepeatCount()));
-
-    	switch(keyCode) {
-    	case KeyEvent.KEYCODE_DPAD_DOWN:
-			moveSelectionBy(1, 0);
-    		return true;
-    	case KeyEvent.KEYCODE_DPAD_UP:
-			moveSelectionBy(-1, 0);
-    		return true;
-    	case KeyEvent.KEYCODE_DPAD_LEFT:
-			moveSelectionBy(0, -1);
-    		return true;
-    	case KeyEvent.KEYCODE_DPAD_RIGHT:
-			moveSelectionBy(0, 1);
-    		return true;
-    	case KeyEvent.KEYCODE_DPAD_CENTER:
-    		// Pop up score dialog
-    		if (mSelPlayer >=0 && mSelHole >= 0 && mOnEditListener != null)
-  				mOnEditListener.onEditScore(mSelPlayer, mSelHole);
-    		return true;
-    	}
-		return false;
-    }
-
-    @Override
-    public void scrollTo(int x, int y)
-    {
-    	/* Clip scrolling.  Note that we also need to keep from scrolling at all if the scroll
-    	 * extent is greater than the scroll range. */
-    	
-    	if(x < 0 || mScrollableWidth <= mScrollVisibleWidth)
-    		x = 0;
-    	else if(x > 0)
-    		x = Math.min(x, mScrollableWidth - mScrollVisibleWidth);
-    	
-    	if(y < 0 || mScrollableHeight <= mScrollVisibleHeight)
-    		y = 0;
-    	else if(y > 0)
-    		y = Math.min(y, mScrollableHeight - mScrollVisibleHeight);
-    	
-    	// Log.d("SheetView", String.format("scrollTo %d,%d", x, y));
-
-    	super.scrollTo(x, y);
-    }
-
-    @Override
-    protected int computeHorizontalScrollExtent()
-    {
-    	return mScrollVisibleWidth;
-    }
-    
-    @Override
-    protected int computeVerticalScrollExtent()
-    {
-    	return mScrollVisibleHeight;
-    }
-    
-    @Override
-    protected int computeHorizontalScrollRange()
-    {
-    	return mScrollableWidth;
-    }
-    @Override
-    protected int computeVerticalScrollRange()
-    {
-    	return mScrollableHeight;
-    }
-
-    /**
-     * Set the score data backing this view.
-     * @param data
-     */
-    public void setScoreData(ScoreData data) {
-    	mData = data;
-    	requestLayout();
-    	invalidate();
-    }
-    
-    /**
-     * Set the selected hole.
-     * @param hole Hole number, or -1 if no hole selected.
-     */
-    public void setSelectedHole(int hole)
-    {
-    	if (hole < 0)
-    		hole = -1;	// No selection
-    	else if (hole >= mData.getHoleCount())
-    		hole = mData.getHoleCount() - 1;
-    	
-		mSelHole = hole;
-		
-		// If selected hole isn't visible, scroll it onscreen
-		int x = mSelHole * mColWidthHole;
-		int dx = x - getScrollX();
-		if (dx < 0)
-			scrollBy(dx, 0);
-		dx = (x + mColWidthHole) - (getScrollX() + mScrollVisibleWidth);
-		if (dx > 0)
-			scrollBy(dx, 0);
-	
-		invalidate();
-    }
-    
-    /**
-     * Set the selected player.
-     * @param player Player number, or -1 if no player selected.
-     */
-	public void setSelectedPlayer(int player) {
-    	if (player < 0)
-    		player = -1;	// No selection
-    	else if (player >= mData.getPlayerCount())
-    		player = mData.getPlayerCount() - 1;
-    	
-		mSelPlayer = player;
-		
-		// If selected player isn't visible, scroll it onscreen
-		int y = mSelPlayer * mRowHeightPlayer;
-		int dy = y - getScrollY();
-		if (dy < 0)
-			scrollBy(0, dy);
-		dy = (y + mRowHeightPlayer) - (getScrollY() + mScrollVisibleHeight);
-		if (dy > 0)
-			scrollBy(0, dy);
-		
-		invalidate();
-	}
-
-	/**
-	 * Move the selection relative to its current location.  Prevents moving the selection
-	 * out of the valid range.
-	 * @param dPlayer Amount to move player selection.
-	 * @param dHole Amount to move hole selection.
-	 */
-	public void moveSelectionBy(int dPlayer, int dHole) {
-		// Move player if necessary
-		if (dPlayer < 0 && mSelPlayer + dPlayer >= 0)
-			setSelectedPlayer(mSelPlayer + dPlayer);
-		else if (dPlayer > 0 && mSelPlayer + dPlayer < mData.getPlayerCount())
-			setSelectedPlayer(mSelPlayer + dPlayer);
-
-		// Move hole if necessary
-		if (dHole < 0 && mSelHole + dHole >= 0)
-			setSelectedHole(mSelHole + dHole);
-		else if (dHole > 0 && mSelHole + dHole < mData.getHoleCount())
-			setSelectedHole(mSelHole + dHole);
-	}
-	
-    /* Getters */
-    public boolean getScoreRelative() {
-    	return mScoreRelative;
-    }
-	public int getSelectedHole() {
-		return mSelHole;
-	}
-	public int getSelectedPlayer() {
-		return mSelPlayer;
-	}
-	
-    /**
-     * Set whether displayed scores are absolute or relative to par.
-     * @param scoreIsRelative If true, scores are displayed relative to par.
-     */
-    public void setScoreRelative(boolean scoreIsRelative) {
-    	mScoreRelative = scoreIsRelative;
-    	invalidate();
-    }
-
-    /**
-     * Handle a gesture (tap or long press).
-     * @param x X-coord of gesture.
-     * @param y Y-coord of gesture.
-     * @param isLong If true, gesture is a long-press; if false, a tap.
-     */
-    private void handlePress(int x, int y, boolean isLong) {
-    	
-		int hole = -1, player = -1;
-
-		// Translate by fixed region and padding
-		x -= getPaddingLeft() + mFixedLeft;
-		y -= getPaddingTop() + mFixedTop;
-		
-		if (x >= 0 && x < mScrollVisibleWidth)
-		{
-			hole = (x + getScrollX()) / mColWidthHole;
-			if (hole < mData.getHoleCount())
-				setSelectedHole(hole);
-			else
-				hole = -1;
-		}
-		if (y >= 0 && y < mScrollVisibleHeight)
-		{
-			player = (y + getScrollY()) / mRowHeightPlayer;
-			if (player < mData.getPlayerCount())
-				setSelectedPlayer(player);
-			else
-				player = -1;
-		}
-		
-		if (x < 0 && player >= 0)
-		{
-			// In players list
-			if (isLong)
-			{
-				// Edit player name
-				if (mOnEditListener != null)
-					mOnEditListener.onEditPlayerName(player);
-			}
-			else if (mSelHole >= 0)
-			{
-				// Increment score for selected player and hole
-				mData.setScore(player, mSelHole, mData.getScore(player, mSelHole) + 1);
-				// TODO: better way to scroll selected hole into view?
-		    	setSelectedHole(mSelHole);
-			}
-		}
-		else if (y < 0 && hole >= 0 && isLong)
-		{
-			// In holes part of header; edit par for that hole
-			if (mOnEditListener != null)
-				mOnEditListener.onEditPar(hole);
-		}
-		else if (player >=0 && hole >= 0)
-		{
-			// Edit a score
-			if (mOnEditListener != null)
-				mOnEditListener.onEditScore(player, hole);
-		}
-		else if (x > mFixedRight && y < mFixedTop)
-		{
-			// In score region, so toggle whether scores are relative
-			mScoreRelative = !mScoreRelative;
-			invalidate();
-		}
-    }
-
-    /**
-     * Public interface for listeners to be called when parts of the sheet are edited.
-     */
-    public interface OnEditListener {
-    	/**
-    	 * Called when par needs to be edited for a hole. 
-    	 * @param hole Hole index to edit.
-    	 */
-    	void onEditPar(int hole);
-    	
-    	/**
-    	 * Called when a player name needs to be edited.
-    	 * @param player Player index to edit.
-    	 */
-    	void onEditPlayerName(int player);
-    	
-    	/**
-    	 * Called when a score needs to be edited.
-    	 * @param player Player index to edit.
-    	 * @param hole Hole index to edit.
-    	 */
-    	void onEditScore(int player, int hole);
-    }
-    
-    public void SetOnEditListener(OnEditListener listener) {
-    	mOnEditListener = listener;
-    }
-}
-
-
+/* Copyright 2009 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package com.spanglers.minigolfscore;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.Paint.Align;
+import android.graphics.Paint.Style;
+import android.util.AttributeSet;
+//import android.util.Log;
+import android.view.GestureDetector;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+
+
+/**
+ * Mini golf score sheet view
+ */
+public class SheetView extends View {
+	// Constants
+	private static final String HEADER_TEXT_PLAYER = "HOLE";
+	private static final String HEADER_TEXT_SCORE = "Score";
+	private static final String HEADER_TEXT_PAR = "par";
+	private static final String HEADER_TEXT_VS_PAR = "+ / -";
+	private static final int LAYER_SCORES = 0;		// Tile layer: scores, scrolls both ways
+	private static final int LAYER_HOLES = 1;		// Tile layer: hole numbers and par, scrolls horizontally
+	private static final int LAYER_NAMES = 2;		// Tile layer: player names, scrolls vertically
+	private static final int LAYER_TOTALS = 3;		// Tile layer: player totals, scrolls vertically
+	private static final int LAYER_COUNT = 4;
+	private static final int TILE_CACHE_BYTES = 4 * 1024 * 1024;	// Most memory for cached tiles
+	private static final int TEXT_CACHE_ENTRIES = 8192;	// Most text widths to remember per paint
+	
+    // Layout fields
+    private Paint mPaintHeader;					// Painter for header row
+    private Paint mPaintPar;					// Painter for par row
+    private Paint mPaintPlayer;					// Painter for player row
+    private Paint mPaintBackground;				// Painter shared between backgrounds
+    private Paint mPaintGrid;					// Painter shared between grid lines
+    private int mColorBackgroundHeader;			// Background color of header row
+    private int mColorBackgroundPar;			// Background color of par row
+    private int mColorBackgroundPlayerEven;		// Background color of even player number 
+    private int mColorBackgroundPlayerOdd;		// Background color of odd player number
+    private int mColorBackgroundActiveRow;		// Background color of active row or column
+    private int mColorBackgroundActiveCell;		// Background color of active cell (intersection of active row and column)
+    
+    // Scratch geometry for onDraw(), kept here so drawing doesn't allocate
+    private final Rect mRectPad = new Rect();		// View inset by padding
+    private final Rect mRectScroll = new Rect();	// Scrollable region, relative to mRectPad
+    private int mTotalPar = -1;					// Total par shown in the corner; -1 = none yet
+    private String mTotalParText;				// Text of mTotalPar, remade only when it changes
+    
+    // Memoized text widths, and the width of each player's name
+    private TextWidthCache mWidthsHeader;
+    private TextWidthCache mWidthsPar;
+    private TextWidthCache mWidthsPlayer;
+    private final MaxWidthTree mNameWidths = new MaxWidthTree();
+    
+    // Pre-rendered tiles of each layer
+    private final SheetTileCache mTiles = new SheetTileCache(LAYER_COUNT, TILE_CACHE_BYTES);
+    
+    // Measured dimensions
+    private int mRowHeightHeader;				// Row height of status
+    private int mRowHeightPar;					// Row height of par
+    private int mRowHeightPlayer;				// Row height of player
+    private int mTextOffsetHeader;				// Vertical offset of text inside header row
+    private int mTextOffsetPar;					// Vertical offset of text inside par row
+    private int mTextOffsetPlayer;				// Vertical offset of text inside player row
+    private int mColWidthPlayer;				// Column width of player
+    private int mColWidthHole;					// Column width of hole
+    private int mColWidthScore;					// Column width of score
+    
+    private int mScrollableWidth;				// Width of scrollable columns
+    private int mScrollableHeight;				// Height of scrollable rows
+    private int mFixedLeft, mFixedRight, mFixedTop, mFixedBottom;	// Width of unscrollable regions at edges
+    private int mScrollVisibleWidth;			// Width of visible scrollable region 
+    private int mScrollVisibleHeight;			// Height of visible scrollable region 
+
+    // Data
+    private ScoreData mData;				// Score data
+
+    // Current control settings
+    private boolean mScoreRelative = false;		// Show relative instead of absolute score
+    private int mSelPlayer = -1;				// Selected player; -1 = none
+    private int mSelHole = -1; 					// Selected hole; -1 = none
+    
+    /* Order of player rows.  When sorting by standing, row r shows player mRowPlayer[r], and
+     * mPlayerRow is the inverse; otherwise row r shows player r.  Drawing and hit-testing go
+     * through playerAtRow() and rowOfPlayer(), so the score data itself is never reordered.
+     */
+    private Leaderboard mLeaderboard;			// Standings, if sorting by standing; else null
+    private int[] mRowPlayer = new int[0];		// Player shown in each row
+    private int[] mPlayerRow = new int[0];		// Row each player is shown in
+
+    private OnEditListener mOnEditListener;
+    private GestureDetector mGestureDetector;
+
+    
+    /** ******************************************************************************************
+     * Constructor for manual instantiation.
+     */
+    public SheetView(Context context) {
+        // Call the more complex constructor
+        this(context, null);
+    }
+
+    /** ******************************************************************************************
+     * Construct object, initializing with any attributes we understand from a
+     * layout file. These attributes are defined in
+     * SDK/assets/res/any/classes.xml.
+     *
+     * @see android.view.View#View(android.content.Context, android.util.AttributeSet)
+     */
+    public SheetView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        initSheetView();
+
+        // Read settings from XML
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SheetView);
+        // TODO: Read settings; currently all hard-coded in init.
+        a.recycle();
+    }
+
+    private final void initSheetView() {
+        // Log.d("SheetView", "initSheetView()");
+
+        mPaintHeader = new Paint();
+        mPaintHeader.setAntiAlias(true);
+        mPaintHeader.setTypeface(Typeface.DEFAULT_BOLD);
+        mPaintHeader.setTextSize(16);
+        mPaintHeader.setColor(0xFF000000);
+        mPaintHeader.setTextAlign(Align.CENTER);
+
+        mPaintPar = new Paint();
+        mPaintPar.setAntiAlias(true);
+        mPaintPar.setTextSize(16);
+        mPaintPar.setColor(0xFF000000);
+        mPaintPar.setTextAlign(Align.CENTER);
+        
+        mPaintPlayer = new Paint();
+        mPaintPlayer.setAntiAlias(true);
+        mPaintPlayer.setTextSize(30);
+        mPaintPlayer.setColor(0xFF000000);
+        
+        mWidthsHeader = new TextWidthCache(mPaintHeader, TEXT_CACHE_ENTRIES);
+        mWidthsPar = new TextWidthCache(mPaintPar, TEXT_CACHE_ENTRIES);
+        mWidthsPlayer = new TextWidthCache(mPaintPlayer, TEXT_CACHE_ENTRIES);
+
+        mPaintBackground = new Paint();
+        mPaintBackground.setStyle(Style.FILL);
+        mColorBackgroundHeader = 0xFFC0C0FF;
+        mColorBackgroundPar = 0xFFB0B0FF;
+        mColorBackgroundPlayerEven = 0xFFFFFFFF; 
+        mColorBackgroundPlayerOdd = 0xFFC0FFC0;
+        mColorBackgroundActiveRow = 0xFFFFC080;
+        mColorBackgroundActiveCell = 0xFFFF8000;
+        
+        mPaintGrid = new Paint();
+        mPaintGrid.setStyle(Style.STROKE);
+        mPaintGrid.setColor(0xFF000000);
+
+        mData = new ScoreData();
+        mData.addOnChangeListener(mDataListener);
+        
+        setPadding(0, 0, 0, 0);
+        setFocusable(true);
+        setFocusableInTouchMode(true);
+        setWillNotDraw(false);			// See View.onDraw() - since we override it, clear this flag
+
+        initGestureDetector();
+
+        setScrollBarStyle(SCROLLBARS_INSIDE_INSET);
+        
+        measurePlayerNames();
+        checkForRelayout();
+    }
+
+    /**
+     * Initialize the gesture detector.
+     */
+    private final void initGestureDetector() {
+        mGestureDetector = new GestureDetector(new GestureDetector.SimpleOnGestureListener() {
+        	@Override
+        	public boolean onDown(MotionEvent ev) {
+        		// Log.d("SheetView", "Gesture DOWN");
+            	if (!hasFocus())
+            		requestFocus();
+        		return true;
+        	}
+        	
+        	@Override
+        	public boolean onSingleTapUp(MotionEvent ev) {
+        		int x = (int)ev.getX();
+        		int y = (int)ev.getY();
+        		// Log.d("SheetView", String.format("Gesture TAP at %d, %d", x, y));
+        		handlePress(x, y, false);
+        		return true;
+        	}
+        	
+			@Override
+			public void onLongPress(MotionEvent ev) {
+        		int x = (int)ev.getX();
+        		int y = (int)ev.getY();
+        		// Log.d("SheetView", String.format("Gesture LONG at %d, %d", x, y));
+        		handlePress(x, y, true);
+			}
+
+			@Override
+			public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+        		// Log.d("SheetView", String.format("Gesture scroll %f,%f", distanceX, distanceY));
+        		// If initial motion event was out of the fixed section, only scroll row/col
+        		// TODO: Technically incorrect, since this doesn't account for padding
+        		if (e1.getX() < mFixedLeft || e1.getX() > getWidth() - mFixedRight)
+        			distanceX = 0;
+        		if (e1.getY() < mFixedTop || e1.getY() > getHeight() - mFixedBottom)
+        			distanceY = 0;
+
+        		// TODO: Probably should use scrollTo or use a scroller, so that we don't truncate small scrolls
+        		
+        		scrollBy((int)distanceX, (int)distanceY);
+        		return true;
+        	}
+        	// TODO: Handle fling
+        });
+    }
+    
+	/**
+     * @see android.view.View#measure(int, int)
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    	computeDesiredDimensions();
+        setMeasuredDimension(measureWidth(widthMeasureSpec), measureHeight(heightMeasureSpec));
+    }
+
+    /**
+     * Determines the width of this view
+     * @param measureSpec A measureSpec packed into an int
+     * @return The width of the view, honoring constraints from measureSpec
+     */
+    private int measureWidth(int measureSpec) {
+        int result = 0;
+        int specMode = MeasureSpec.getMode(measureSpec);
+        int specSize = MeasureSpec.getSize(measureSpec);
+
+        if (specMode == MeasureSpec.EXACTLY) {
+            // We were told how big to be
+            // Log.d("SheetView", "measureWidth exactly " + specSize);
+        	result = specSize;
+        } else {
+            // Measure the text
+            result = getPaddingLeft() + mFixedLeft + mScrollableWidth  + mFixedRight + getPaddingRight();
+            // Log.d("SheetView", "measureWidth desired " + result);
+            if (specMode == MeasureSpec.AT_MOST) {
+                // Respect AT_MOST value if that was what is called for by measureSpec
+                result = Math.min(result, specSize);
+                // Log.d("SheetView", "measureWidth at_most " + result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Determines the height of this view
+     * @param measureSpec A measureSpec packed into an int
+     * @return The height of the view, honoring constraints from measureSpec
+     */
+    private int measureHeight(int measureSpec) {
+        int result = 0;
+        int specMode = MeasureSpec.getMode(measureSpec);
+        int specSize = MeasureSpec.getSize(measureSpec);
+
+        if (specMode == MeasureSpec.EXACTLY) {
+            // We were told how big to be
+            // Log.d("SheetView", "measureHeight exactly " + specSize);
+            result = specSize;
+        } else {
+            // Measure the text
+            result = getPaddingTop() + mFixedTop + mScrollableHeight + mFixedBottom + getPaddingBottom();
+            // Log.d("SheetView", "measureHeight desired " + result);
+            if (specMode == MeasureSpec.AT_MOST) {
+                // Respect AT_MOST value if that was what is called for by measureSpec
+                result = Math.min(result, specSize);
+                // Log.d("SheetView", "measureHeight at_most " + result);
+            }
+        }
+        
+        return result;
+    }
+
+    /**
+     * Re-measure the contents, invalidate, and check for re-layout.  Player names are not
+     * re-measured; see measurePlayerNames().
+     */
+    public void checkForRelayout() {
+		if (computeDesiredDimensions()) {
+			requestLayout();
+			computeScollVisible();	// The fixed regions may have changed even if our size didn't
+			
+			/* Scroll to our current scroll position.  If our scroll range is smaller than it used
+			 * to be, this will clip to the new valid range.
+			 */
+			scrollTo(getScrollX(), getScrollY());
+		}
+		
+		invalidate();
+    }
+    
+    /**
+     * Measure the names of all players.  Names which have been measured before are looked up
+     * instead, so this is cheap when reloading data which hasn't changed.
+     */
+    private void measurePlayerNames() {
+    	int players = mData.getPlayerCount();
+    	mNameWidths.setCount(players);
+    	for (int p = 0; p < players; p++)
+    		mNameWidths.set(p, measurePlayerName(p));
+    }
+    
+    /**
+     * @return Width the player column needs to fit a player's name.
+     */
+    private int measurePlayerName(int player) {
+    	return 7 + (int)mWidthsPlayer.measure(mData.getPlayerName(player));
+    }
+    
+	/** 
+     * Computes the dimensions of the sheet cells, based on the current settings.
+     * These are the desired dimensions, so are not affected by measure specs from onMeasure().
+     * Text widths come from the memos, so nothing is measured twice.
+     * 
+     * The dimensions don't depend on the size of the view, so rotating the screen doesn't
+     * change them.
+     * 
+     * @return true if the size of any region of the sheet changed.
+     */
+    private boolean computeDesiredDimensions() {
+    	int oldFixedLeft = mFixedLeft, oldFixedRight = mFixedRight, oldFixedTop = mFixedTop;
+    	int oldScrollableWidth = mScrollableWidth, oldScrollableHeight = mScrollableHeight;
+    	
+    	// Make hole columns wide enough for the largest hole number
+    	String widestHole = widestNumber(Math.max(36, mData.getHoleCount()));
+        mColWidthHole = 5 + (int)Math.max(mWidthsHeader.measure(widestHole), 
+        								  mWidthsPlayer.measure(widestHole));
+        mScrollableWidth = mData.getHoleCount() * mColWidthHole;
+        
+        // Leave room for a total of up to 9 strokes a hole
+        String widestTotal = "+" + widestNumber(Math.max(36, 9 * mData.getHoleCount()));
+        mColWidthScore = 5 + (int)Math.max(mWidthsHeader.measure(HEADER_TEXT_SCORE), 
+        							       mWidthsPlayer.measure(widestTotal));
+      	mFixedRight = mColWidthScore;
+
+        mRowHeightHeader = 5 + (int)(mPaintHeader.descent() - mPaintHeader.ascent());
+        mRowHeightPar = 7 + (int)(mPaintPar.descent() - mPaintPar.ascent());
+        mFixedTop = mRowHeightHeader + mRowHeightPar;
+        mFixedBottom = 0;
+        
+        mRowHeightPlayer = 5 + (int)(mPaintPlayer.descent() - mPaintPlayer.ascent());
+        mScrollableHeight = mData.getPlayerCount() * mRowHeightPlayer;
+        
+        mTextOffsetHeader = 2 -(int)mPaintHeader.ascent();
+        mTextOffsetPar = 2 - (int)mPaintPar.ascent();
+        mTextOffsetPlayer = 2 -(int)mPaintPlayer.ascent();
+    	
+        // The player name column fits the widest name, which the name widths keep track of
+        mColWidthPlayer = computePlayerColumnWidth();
+        if (mFixedLeft != mColWidthPlayer) {
+            mFixedLeft = mColWidthPlayer;
+    		setSelectedHole(mSelHole);	// Scroll selection into view if the column width changed
+    		/* TODO: One thing that's a little odd there is that it only scrolls the hole into view 
+    		 * if the player name changed AND the player width changed.  If just the player name
+    		 * changes but the column width doesn't change, we don't scroll the hole into view.
+    		 * From a UI-design standpoint, should we be consistent and always scroll the hole 
+    		 * into view? 
+    		 */
+        }
+        
+        // Tiles are discarded for any layer whose size changed
+        mTiles.setLayerSize(LAYER_SCORES, mScrollableWidth, mScrollableHeight);
+        mTiles.setLayerSize(LAYER_HOLES, mScrollableWidth, mFixedTop);
+        mTiles.setLayerSize(LAYER_NAMES, mFixedLeft, mScrollableHeight);
+        mTiles.setLayerSize(LAYER_TOTALS, mFixedRight, mScrollableHeight);
+        
+        return mFixedLeft != oldFixedLeft || mFixedRight != oldFixedRight || mFixedTop != oldFixedTop
+        		|| mScrollableWidth != oldScrollableWidth || mScrollableHeight != oldScrollableHeight;
+    }
+    
+    /**
+     * @return Width of the player column: enough for its headers and the widest name.
+     */
+    private int computePlayerColumnWidth() {
+        int width = (int)Math.max(mWidthsHeader.measure(HEADER_TEXT_PLAYER),
+        						  mWidthsPar.measure(HEADER_TEXT_PAR));
+        return Math.max(width, mNameWidths.max());
+    }
+    
+    /**
+     * Mark the tiles showing a hole's column as needing repainting.
+     */
+    private void invalidateHoleTiles(int hole) {
+    	if (hole < 0)
+    		return;
+    	// Include the grid line on the right edge
+    	int x = hole * mColWidthHole;
+    	mTiles.invalidate(LAYER_SCORES, x, 0, x + mColWidthHole + 1, mScrollableHeight);
+    	mTiles.invalidate(LAYER_HOLES, x, 0, x + mColWidthHole + 1, mFixedTop);
+    }
+    
+    /**
+     * Mark the tiles showing a player's row as needing repainting.
+     */
+    private void invalidatePlayerTiles(int player) {
+    	if (player < 0)
+    		return;
+    	// Include the grid line on the bottom edge
+    	int y = rowOfPlayer(player) * mRowHeightPlayer;
+    	mTiles.invalidate(LAYER_SCORES, 0, y, mScrollableWidth, y + mRowHeightPlayer + 1);
+    	mTiles.invalidate(LAYER_NAMES, 0, y, mFixedLeft, y + mRowHeightPlayer + 1);
+    	mTiles.invalidate(LAYER_TOTALS, 0, y, mFixedRight, y + mRowHeightPlayer + 1);
+    }
+    
+    /**
+     * Listener for changes to the score data.  Each change is passed to the leaderboard first,
+     * if sorting by standing, so the rows are in order before anything is repainted.  Then it
+     * repaints only the tiles and the part of the screen which show what changed.
+     * 
+     * Screen areas are passed to invalidate() in scrolled coordinates, as onDraw() sees them.
+     * Cells in the scrollable region don't move in those coordinates; the fixed regions move
+     * with the scroll position.
+     */
+    private final ScoreData.OnChangeListener mDataListener = new ScoreData.OnChangeListener() {
+    	public void onScoreChanged(int player, int hole) {
+    		if (mLeaderboard != null)
+    			mLeaderboard.onScoreChanged(player, hole);
+    		
+        	int x = hole * mColWidthHole;
+        	int y = rowOfPlayer(player) * mRowHeightPlayer;
+        	mTiles.invalidate(LAYER_SCORES, x, y, x + mColWidthHole + 1, y + mRowHeightPlayer + 1);
+        	mTiles.invalidate(LAYER_TOTALS, 0, y, mFixedRight, y + mRowHeightPlayer + 1);
+        	
+        	// The cell, and the player's total
+        	x += getPaddingLeft() + mFixedLeft;
+        	y += getPaddingTop() + mFixedTop;
+        	invalidate(x, y, x + mColWidthHole + 1, y + mRowHeightPlayer + 1);
+        	x = getScrollX() + getWidth() - getPaddingRight() - mFixedRight;
+        	invalidate(x, y, x + mFixedRight, y + mRowHeightPlayer + 1);
+    	}
+    	
+    	public void onParChanged(int hole) {
+    		if (mLeaderboard != null)
+    			mLeaderboard.onParChanged(hole);
+    		
+        	int x = hole * mColWidthHole;
+        	mTiles.invalidate(LAYER_HOLES, x, 0, x + mColWidthHole + 1, mFixedTop);
+        	if (mScoreRelative) {
+        		// Scores relative to par in the hole's column, and every total, have changed
+        		mTiles.invalidate(LAYER_SCORES, x, 0, x + mColWidthHole + 1, mScrollableHeight);
+        		mTiles.invalidateLayer(LAYER_TOTALS);
+        	}
+        	
+        	// The hole's header, and its scores if they're relative
+        	x += getPaddingLeft() + mFixedLeft;
+        	int y = getScrollY() + getPaddingTop();
+        	int bottom = mScoreRelative ? y + getHeight() : y + mFixedTop;
+        	invalidate(x, y, x + mColWidthHole + 1, bottom);
+        	
+        	// Every total if they're relative, else just total par
+        	x = getScrollX() + getWidth() - getPaddingRight() - mFixedRight;
+        	if (mScoreRelative)
+        		invalidate(x, y, x + mFixedRight, bottom);
+        	else
+        		invalidate(x, y + mRowHeightHeader, x + mFixedRight, y + mFixedTop);
+    	}
+    	
+    	public void onPlayerNameChanged(int player) {
+        	// Only re-layout if the player column has to get wider or narrower
+        	mNameWidths.set(player, measurePlayerName(player));
+        	if (computePlayerColumnWidth() != mColWidthPlayer) {
+        		checkForRelayout();
+        		return;
+        	}
+        	
+        	int y = rowOfPlayer(player) * mRowHeightPlayer;
+        	mTiles.invalidate(LAYER_NAMES, 0, y, mFixedLeft, y + mRowHeightPlayer + 1);
+        	int x = getScrollX() + getPaddingLeft();
+        	y += getPaddingTop() + mFixedTop;
+        	invalidate(x, y, x + mFixedLeft, y + mRowHeightPlayer + 1);
+    	}
+    	
+    	public void onSheetChanged() {
+    		if (mLeaderboard != null)
+    			mLeaderboard.onSheetChanged();
+    		
+    		mTiles.invalidateAll();
+    		measurePlayerNames();
+    		checkForRelayout();
+    	}
+    };
+    
+    /**
+     * Listener for changes in the standings, when sorting by standing.  Only the rows whose
+     * players changed are updated and repainted.
+     */
+    private final Leaderboard.OnRanksChangedListener mRanksListener = 
+    		new Leaderboard.OnRanksChangedListener() {
+    	public void onRanksChanged(int firstRank, int lastRank) {
+    		int players = mLeaderboard.getCount();
+    		if (mRowPlayer.length < players) {
+    			mRowPlayer = new int[players];
+    			mPlayerRow = new int[players];
+    		}
+    		for (int row = firstRank; row <= lastRank; row++) {
+    			int p = mLeaderboard.getPlayerAt(row);
+    			mRowPlayer[row] = p;
+    			mPlayerRow[p] = row;
+    		}
+    		
+    		// Include the grid line below the last row
+    		int top = firstRank * mRowHeightPlayer;
+    		int bottom = (lastRank + 1) * mRowHeightPlayer + 1;
+    		mTiles.invalidate(LAYER_SCORES, 0, top, mScrollableWidth, bottom);
+    		mTiles.invalidate(LAYER_NAMES, 0, top, mFixedLeft, bottom);
+    		mTiles.invalidate(LAYER_TOTALS, 0, top, mFixedRight, bottom);
+    		
+    		int x = getScrollX();
+    		int y = getPaddingTop() + mFixedTop;
+    		invalidate(x, y + top, x + getWidth(), y + bottom);
+    	}
+    };
+    
+    /**
+     * @return Player shown in a row.
+     */
+    private int playerAtRow(int row) {
+    	return (mLeaderboard == null || row < 0) ? row : mRowPlayer[row];
+    }
+    
+    /**
+     * @return Row a player is shown in.
+     */
+    private int rowOfPlayer(int player) {
+    	return (mLeaderboard == null || player < 0) ? player : mPlayerRow[player];
+    }
+    
+    /**
+     * @return A number with as many digits as n, made of the widest digit.
+     */
+    private static String widestNumber(int n) {
+    	return Integer.toString(n).replaceAll("[0-9]", "8");
+    }
+
+    /**
+     * Called when size has changed.
+	 * @see android.view.View#onSizeChanged(int, int, int, int)
+	 */
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		
+		// Assume scrollbars will be visible, so they count against our padding
+		setHorizontalScrollBarEnabled(true);
+		setVerticalScrollBarEnabled(true);
+
+		// Determine our new scroll extents
+		computeScollVisible();
+		
+		// Disable scrollbars we didn't end up needing
+		if (mScrollVisibleWidth >= mScrollableWidth)
+			setHorizontalScrollBarEnabled(false);
+		if (mScrollVisibleHeight >= mScrollableHeight)
+			setVerticalScrollBarEnabled(false);
+			
+		// Since that could have changed the padding, recompute the scroll extents
+		computeScollVisible();
+
+		/* TODO: That's kind of lame.  Is there a better way to get scrollbars not to reserve 
+		 * their padding when invisible?
+		 */
+		
+		// Re-scroll to our current scroll position, to clip it to the screen
+		setSelectedHole(mSelHole);
+		setSelectedPlayer(mSelPlayer);
+    }
+
+	/**
+	 * Compute the scroll extents given the current padding.  Note that changing the scroll 
+	 * extents may change the state of the scrollbars, which in turn affects the padding; this
+	 * is taken care of in onSizeChanged().
+	 */
+	private void computeScollVisible() {
+		mScrollVisibleWidth = Math.max(
+				0, getWidth() - getPaddingLeft() - mFixedLeft - mFixedRight - getPaddingRight());
+		mScrollVisibleHeight = Math.max(
+				0, getHeight() - getPaddingTop() - mFixedTop - mFixedBottom - getPaddingBottom());
+	}
+
+	/**
+     * Draw the control
+     *
+     * @see android.view.View#onDraw(android.graphics.Canvas)
+     */
+    @Override
+    protected void onDraw(Canvas canvas) {
+        /* Save the canvas in its original scrolled state, so that we can restore it before exit.
+         * If we don't do this, the scroll bars end up being drawn in the wrong place
+         */
+        Rect rect_pad = mRectPad;
+        rect_pad.set(getPaddingLeft(), getPaddingTop(), getWidth() - getPaddingRight(), 
+        		     getHeight() - getPaddingBottom());
+        Rect rect_scroll = mRectScroll;
+        rect_scroll.set(mFixedLeft, mFixedTop, rect_pad.width() - mFixedRight, 
+        		        rect_pad.height() - mFixedBottom);
+
+        int maxx = rect_pad.width();
+    	int maxy = Math.min(rect_pad.height(), mFixedTop + mScrollableHeight + mFixedBottom);
+    	int scrollX = getScrollX();
+    	int scrollY = getScrollY();
+    	
+    	mTiles.startFrame();
+    	
+        // Untranslate the canvas and inset by the padding
+        canvas.save();	// #1
+        canvas.translate(scrollX, scrollY);
+        canvas.clipRect(rect_pad);
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        
+        /* Draw the layers from the tile cache.  Only tiles which are in view are drawn, so
+         * the cost of a frame depends on the size of the screen rather than the sheet.
+         */
+        
+        // Scores, which scroll both ways
+        canvas.save();
+        canvas.clipRect(rect_scroll);
+        canvas.translate(mFixedLeft - scrollX, mFixedTop - scrollY);
+        mTiles.draw(canvas, LAYER_SCORES, scrollX, scrollY, scrollX + rect_scroll.width(), 
+        		    scrollY + rect_scroll.height(), mTilePainter);
+        canvas.restore();
+        
+        // Hole numbers and par, which scroll horizontally
+        canvas.save();
+        canvas.clipRect(mFixedLeft, 0, maxx - mFixedRight, mFixedTop);
+        canvas.translate(mFixedLeft - scrollX, 0);
+        mTiles.draw(canvas, LAYER_HOLES, scrollX, 0, scrollX + rect_scroll.width(), mFixedTop, 
+        		    mTilePainter);
+        canvas.restore();
+        
+        // Player names and totals, which scroll vertically
+        canvas.save();
+        canvas.clipRect(0, mFixedTop, maxx, maxy - mFixedBottom);
+        canvas.translate(0, mFixedTop - scrollY);
+        mTiles.draw(canvas, LAYER_NAMES, 0, scrollY, mFixedLeft, scrollY + rect_scroll.height(), 
+        		    mTilePainter);
+        canvas.translate(maxx - mFixedRight, 0);
+        mTiles.draw(canvas, LAYER_TOTALS, 0, scrollY, mFixedRight, scrollY + rect_scroll.height(), 
+        		    mTilePainter);
+        canvas.restore();
+        
+        // If the holes don't fill the width, carry the row backgrounds across the gap
+        if (mScrollableWidth < rect_scroll.width()) {
+        	int left = mFixedLeft + mScrollableWidth;
+        	int right = maxx - mFixedRight;
+        	
+        	canvas.save();
+        	canvas.clipRect(left, 0, right, maxy - mFixedBottom);
+        	paintHeaderBackgrounds(canvas, left, right);
+        	canvas.clipRect(left, mFixedTop, right, maxy - mFixedBottom);
+        	canvas.translate(0, mFixedTop - scrollY);
+        	int firstRow = scrollY / mRowHeightPlayer;
+        	int endRow = (scrollY + rect_scroll.height()) / mRowHeightPlayer + 1;
+        	paintPlayerRows(canvas, left, right, firstRow, endRow);
+        	paintRowLines(canvas, left, right, firstRow, endRow);
+        	canvas.restore();
+        }
+        
+        // Draw fixed corners
+        paintHeaderBackgrounds(canvas, 0, mFixedLeft);
+        paintHeaderBackgrounds(canvas, maxx - mFixedRight, maxx);
+        canvas.drawLine(0, mRowHeightHeader, maxx, mRowHeightHeader, mPaintGrid);
+        canvas.drawText(HEADER_TEXT_PLAYER, mColWidthPlayer / 2, mTextOffsetHeader, mPaintHeader);
+        canvas.drawText(HEADER_TEXT_SCORE, maxx - mColWidthScore / 2, mTextOffsetHeader, 
+        		        mPaintHeader);
+        int y = mRowHeightHeader + mTextOffsetPar;
+        canvas.drawText(HEADER_TEXT_PAR, mColWidthPlayer / 2, y, mPaintPar);
+        if (mScoreRelative)
+        	canvas.drawText(HEADER_TEXT_VS_PAR, maxx - mColWidthScore / 2, y, mPaintPar);
+        else
+        	canvas.drawText(getTotalParText(), maxx - mColWidthScore / 2, y, mPaintPar);
+        
+        // Draw fixed grid
+        canvas.drawLine(0, mFixedTop - 2, maxx, mFixedTop - 2, mPaintGrid);
+        canvas.drawLine(0, mFixedTop, maxx, mFixedTop, mPaintGrid);
+        canvas.drawLine(mFixedLeft, 0, mFixedLeft, maxy, mPaintGrid);
+        canvas.drawLine(mFixedLeft - 2, 0, mFixedLeft - 2, maxy, mPaintGrid);
+        canvas.drawLine(maxx - mFixedRight, 0, maxx - mFixedRight, maxy, mPaintGrid);
+        canvas.drawLine(maxx - mFixedRight + 2, 0, maxx - mFixedRight + 2, maxy, mPaintGrid);
+
+        // Restore the canvas, so that scrollbars will be drawn properly
+        canvas.restore();	// #1
+    }
+    
+    /**
+     * @return Total par as text.  It's drawn every frame, so the text is only made again when
+     *         the total changes, even if it's too large for ScoreText to have cached.
+     */
+    private String getTotalParText() {
+    	int totalPar = mData.getTotalPar();
+    	if (totalPar != mTotalPar) {
+    		mTotalPar = totalPar;
+    		mTotalParText = ScoreText.number(totalPar);
+    	}
+    	return mTotalParText;
+    }
+    
+    /**
+     * Paints tiles for the tile cache.
+     */
+    private final SheetTileCache.Painter mTilePainter = new SheetTileCache.Painter() {
+    	public void paintTile(int layer, Canvas canvas, int left, int top, int right, int bottom) {
+    		// Include the cells on either side, since their grid lines may fall in this tile
+    		int firstHole = Math.max(0, left / mColWidthHole - 1);
+    		int endHole = Math.min(mData.getHoleCount(), right / mColWidthHole + 1);
+    		int firstRow = Math.max(0, top / mRowHeightPlayer - 1);
+    		int endRow = Math.min(mData.getPlayerCount(), bottom / mRowHeightPlayer + 1);
+    		
+    		switch (layer) {
+    		case LAYER_SCORES:
+    			paintScores(canvas, left, top, right, bottom, firstHole, endHole, firstRow, endRow);
+    			break;
+    		case LAYER_HOLES:
+    			paintHoles(canvas, left, right, firstHole, endHole);
+    			break;
+    		case LAYER_NAMES:
+    		case LAYER_TOTALS:
+    			paintPlayerRows(canvas, left, right, firstRow, endRow);
+    			paintRowLines(canvas, left, right, firstRow, endRow);
+    			paintPlayerColumn(canvas, layer, left, right, firstRow, endRow);
+    			break;
+    		}
+    	}
+    };
+    
+    /**
+     * Paint the backgrounds of the header and par rows.
+     */
+    private void paintHeaderBackgrounds(Canvas canvas, int left, int right) {
+        mPaintBackground.setColor(mColorBackgroundHeader);
+        canvas.drawRect(left, 0, right, mRowHeightHeader, mPaintBackground);
+        mPaintBackground.setColor(mColorBackgroundPar);
+        canvas.drawRect(left, mRowHeightHeader, right, mFixedTop, mPaintBackground);
+    }
+    
+    /**
+     * Paint the background stripes for a range of player rows, in coordinates where the first
+     * player row is at the top.
+     */
+    private void paintPlayerRows(Canvas canvas, int left, int right, int firstRow, int endRow) {
+    	endRow = Math.min(endRow, mData.getPlayerCount());
+    	int selRow = rowOfPlayer(mSelPlayer);
+        for (int r = Math.max(0, firstRow); r < endRow; r++) {
+            if (r == selRow)
+            	mPaintBackground.setColor(mColorBackgroundActiveRow);
+            else if (r % 2 == 1)
+            	mPaintBackground.setColor(mColorBackgroundPlayerOdd);
+            else
+            	mPaintBackground.setColor(mColorBackgroundPlayerEven);
+            int y = r * mRowHeightPlayer;
+            canvas.drawRect(left, y, right, y + mRowHeightPlayer, mPaintBackground);
+        }
+    }
+    
+    /**
+     * Paint the lines below a range of player rows.
+     */
+    private void paintRowLines(Canvas canvas, int left, int right, int firstRow, int endRow) {
+    	endRow = Math.min(endRow, mData.getPlayerCount());
+        for (int r = Math.max(0, firstRow); r < endRow; r++) {
+        	int y = (r + 1) * mRowHeightPlayer;
+            canvas.drawLine(left, y, right, y, mPaintGrid);
+        }
+    }
+    
+    /**
+     * Paint part of the score layer.
+     */
+    private void paintScores(Canvas canvas, int left, int top, int right, int bottom, 
+    		                 int firstHole, int endHole, int firstRow, int endRow) {
+    	int x, y;
+    	
+    	paintPlayerRows(canvas, left, right, firstRow, endRow);
+    	
+        // If there's an active column, draw its background
+        if (mSelHole >= firstHole && mSelHole < endHole) {
+            x = mSelHole * mColWidthHole;
+        	mPaintBackground.setColor(mColorBackgroundActiveRow);
+            canvas.drawRect(x, top, x + mColWidthHole, bottom, mPaintBackground);
+
+            // If there's an active cell, draw it darker
+            if (mSelPlayer >= 0) {
+            	y = rowOfPlayer(mSelPlayer) * mRowHeightPlayer;
+            	mPaintBackground.setColor(mColorBackgroundActiveCell);
+                canvas.drawRect(x, y, x + mColWidthHole, y + mRowHeightPlayer, mPaintBackground);
+            }
+        }
+        
+        // Draw grid over the backgrounds
+        for (int h = firstHole; h < endHole; h++) {
+            x = (h + 1) * mColWidthHole;
+            canvas.drawLine(x, top, x, bottom, mPaintGrid);
+        }
+        paintRowLines(canvas, left, right, firstRow, endRow);
+        
+        // Draw scores
+        mPaintPlayer.setTextAlign(Align.CENTER);
+        for (int r = firstRow; r < endRow; r++) {
+        	int p = playerAtRow(r);
+            y = r * mRowHeightPlayer + mTextOffsetPlayer;
+            for (int h = firstHole; h < endHole; h++) {
+            	int score = mData.getScore(p, h);
+            	if (score <= 0)
+            		continue;
+	            x = h * mColWidthHole;
+	            if (mScoreRelative) {
+	            	int delta = score - mData.getPar(h);
+	            	if (delta >= 10) {
+	            		// Use a smaller font
+	            		canvas.drawText(ScoreText.signed(delta), x + mColWidthHole / 2, y, 
+	            				        mPaintHeader);
+	            	} else {
+	            		canvas.drawText(ScoreText.signed(delta), x + mColWidthHole / 2, y, 
+	            				        mPaintPlayer);
+	            	}
+	            } else {
+	            	canvas.drawText(ScoreText.number(score), x + mColWidthHole / 2, y, 
+	            			        mPaintPlayer);
+	            }
+            }
+        }
+    }
+    
+    /**
+     * Paint part of the hole number and par layer.
+     */
+    private void paintHoles(Canvas canvas, int left, int right, int firstHole, int endHole) {
+    	int x;
+    	
+    	paintHeaderBackgrounds(canvas, left, right);
+    	
+    	// If there's an active column, draw its background
+        if (mSelHole >= firstHole && mSelHole < endHole) {
+            x = mSelHole * mColWidthHole;
+        	mPaintBackground.setColor(mColorBackgroundActiveRow);
+            canvas.drawRect(x, 0, x + mColWidthHole, mFixedTop, mPaintBackground);
+        }
+        canvas.drawLine(left, mRowHeightHeader, right, mRowHeightHeader, mPaintGrid);
+        
+        int y = mRowHeightHeader + mTextOffsetPar;
+        for (int h = firstHole; h < endHole; h++) {
+            x = h * mColWidthHole;
+            canvas.drawText(ScoreText.number(h + 1), x + mColWidthHole / 2, mTextOffsetHeader, 
+            		        mPaintHeader);
+        	int par = mData.getPar(h);
+        	if (par > 0)
+        		canvas.drawText(ScoreText.number(par), x + mColWidthHole / 2, y, mPaintPar);
+            canvas.drawLine(x + mColWidthHole, 0, x + mColWidthHole, mFixedTop, mPaintGrid);
+        }
+    }
+    
+    /**
+     * Paint the names or totals for a range of player rows.
+     */
+    private void paintPlayerColumn(Canvas canvas, int layer, int left, int right, int firstRow, 
+    		                       int endRow) {
+        for (int r = firstRow; r < endRow; r++) {
+        	int p = playerAtRow(r);
+        	int y = r * mRowHeightPlayer + mTextOffsetPlayer;
+        	if (layer == LAYER_NAMES) {
+        		mPaintPlayer.setTextAlign(Align.LEFT);
+        		canvas.drawText(mData.getPlayerName(p), 2, y, mPaintPlayer);
+        	} else {
+        		mPaintPlayer.setTextAlign(Align.CENTER);
+        		String s = mScoreRelative ? ScoreText.signed(mData.getTotalVsPar(p)) 
+        				                  : ScoreText.number(mData.getTotalStrokes(p));
+        		canvas.drawText(s, mFixedRight / 2, y, mPaintPlayer);
+        	}
+        }
+        mPaintPlayer.setTextAlign(Align.CENTER);
+    }
+
+    /**
+     * View is no longer shown; free the tile bitmaps.  They're re-rendered if it's shown again.
+     * @see android.view.View#onDetachedFromWindow()
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+    	super.onDetachedFromWindow();
+    	mTiles.clear();
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect)
+    {
+    	super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+    	// Need to redraw with/without highlight row/col 
+    	invalidate();
+    }
+
+    @Override
+    public boolean onTouchEvent (MotionEvent event)
+    {
+    	// Pass to gesture detector
+    	return mGestureDetector.onTouchEvent(event);
+    }
+
+    @Override
+    public boolean onTrackballEvent(MotionEvent event)
+    {
+    	// final CharSequence[] eventNames = {"DOWN", "UP", "MOVE", "CANCEL"};
+    	// Log.d("SheetView", String.format("TrackballEvent %s %f %f %d", eventNames[event.getAction()], event.getX(), event.getY(), event.getHistorySize()));
+
+    	switch(event.getAction()) {
+    	case MotionEvent.ACTION_DOWN:
+    		// Pop up score dialog
+    		if (mSelPlayer >=0 && mSelHole >= 0 && mOnEditListener != null)
+  				mOnEditListener.onEditScore(mSelPlayer, mSelHole);
+    		return true;
+    	case MotionEvent.ACTION_MOVE:
+    		// TODO: Use scroller to integrate small movements
+    		// TODO: Change selected player and/or hole
+    		scrollBy((int)(event.getX() * 16), (int)(event.getY() * 16));
+    		return true;
+    	}
+    	return true;
+    }
+    
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event)
+    {
+    	// Log.d("SheetView", String.format("KeyDown %d %d", keyCode, event.getRepeatCount()));
+
+    	switch(keyCode) {
+    	case KeyEvent.KEYCODE_DPAD_DOWN:
+			moveSelectionBy(1, 0);
+    		return true;
+    	case KeyEvent.KEYCODE_DPAD_UP:
+			moveSelectionBy(-1, 0);
+    		return true;
+    	case KeyEvent.KEYCODE_DPAD_LEFT:
+			moveSelectionBy(0, -1);
+    		return true;
+    	case KeyEvent.KEYCODE_DPAD_RIGHT:
+			moveSelectionBy(0, 1);
+    		return true;
+    	case KeyEvent.KEYCODE_DPAD_CENTER:
+    		// Pop up score dialog
+    		if (mSelPlayer >=0 && mSelHole >= 0 && mOnEditListener != null)
+  				mOnEditListener.onEditScore(mSelPlayer, mSelHole);
+    		return true;
+    	}
+		return false;
+    }
+
+    @Override
+    public void scrollTo(int x, int y)
+    {
+    	/* Clip scrolling.  Note that we also need to keep from scrolling at all if the scroll
+    	 * extent is greater than the scroll range. */
+    	
+    	if(x < 0 || mScrollableWidth <= mScrollVisibleWidth)
+    		x = 0;
+    	else if(x > 0)
+    		x = Math.min(x, mScrollableWidth - mScrollVisibleWidth);
+    	
+    	if(y < 0 || mScrollableHeight <= mScrollVisibleHeight)
+    		y = 0;
+    	else if(y > 0)
+    		y = Math.min(y, mScrollableHeight - mScrollVisibleHeight);
+    	
+    	// Log.d("SheetView", String.format("scrollTo %d,%d", x, y));
+
+    	super.scrollTo(x, y);
+    }
+
+    @Override
+    protected int computeHorizontalScrollExtent()
+    {
+    	return mScrollVisibleWidth;
+    }
+    
+    @Override
+    protected int computeVerticalScrollExtent()
+    {
+    	return mScrollVisibleHeight;
+    }
+    
+    @Override
+    protected int computeHorizontalScrollRange()
+    {
+    	return mScrollableWidth;
+    }
+    @Override
+    protected int computeVerticalScrollRange()
+    {
+    	return mScrollableHeight;
+    }
+
+    /**
+     * Set the score data backing this view.
+     * @param data
+     */
+    public void setScoreData(ScoreData data) {
+    	boolean sorted = getSortByStanding();
+    	setSortByStanding(false);
+    	mData.removeOnChangeListener(mDataListener);
+    	mData = data;
+    	mData.addOnChangeListener(mDataListener);
+    	setSortByStanding(sorted);
+    	mTiles.invalidateAll();	// Tiles show the old data
+    	measurePlayerNames();
+    	requestLayout();
+    	invalidate();
+    }
+    
+    /**
+     * Stop listening to the score data, and free the tile bitmaps.  The data may outlive the
+     * view, and would otherwise keep it from being collected.  The view mustn't be used again
+     * afterwards, unless it's given data with setScoreData().
+     */
+    public void detach() {
+    	mData.removeOnChangeListener(mDataListener);
+    	mTiles.clear();
+    }
+    
+    /**
+     * Set the selected hole.
+     * @param hole Hole number, or -1 if no hole selected.
+     */
+    public void setSelectedHole(int hole)
+    {
+    	if (hole < 0)
+    		hole = -1;	// No selection
+    	else if (hole >= mData.getHoleCount())
+    		hole = mData.getHoleCount() - 1;
+    	
+    	boolean changed = (hole != mSelHole);
+    	if (changed) {
+    		invalidateHoleTiles(mSelHole);
+    		invalidateHoleTiles(hole);
+    	}
+		mSelHole = hole;
+		
+		// If selected hole isn't visible, scroll it onscreen
+		int x = mSelHole * mColWidthHole;
+		int dx = x - getScrollX();
+		if (dx < 0)
+			scrollBy(dx, 0);
+		dx = (x + mColWidthHole) - (getScrollX() + mScrollVisibleWidth);
+		if (dx > 0)
+			scrollBy(dx, 0);
+	
+		// Scrolling redraws by itself
+		if (changed)
+			invalidate();
+    }
+    
+    /**
+     * Set the selected player.
+     * @param player Player number, or -1 if no player selected.
+     */
+	public void setSelectedPlayer(int player) {
+    	if (player < 0)
+    		player = -1;	// No selection
+    	else if (player >= mData.getPlayerCount())
+    		player = mData.getPlayerCount() - 1;
+    	
+    	boolean changed = (player != mSelPlayer);
+    	if (changed) {
+    		invalidatePlayerTiles(mSelPlayer);
+    		invalidatePlayerTiles(player);
+    	}
+		mSelPlayer = player;
+		
+		// If selected player isn't visible, scroll it onscreen
+		int y = rowOfPlayer(mSelPlayer) * mRowHeightPlayer;
+		int dy = y - getScrollY();
+		if (dy < 0)
+			scrollBy(0, dy);
+		dy = (y + mRowHeightPlayer) - (getScrollY() + mScrollVisibleHeight);
+		if (dy > 0)
+			scrollBy(0, dy);
+		
+		// Scrolling redraws by itself
+		if (changed)
+			invalidate();
+	}
+
+	/**
+	 * Move the selection relative to its current location.  Prevents moving the selection
+	 * out of the valid range.
+	 * @param dPlayer Amount to move player selection.
+	 * @param dHole Amount to move hole selection.
+	 */
+	public void moveSelectionBy(int dPlayer, int dHole) {
+		// Move player if necessary.  This moves by rows, which may not be in player order.
+		int selRow = rowOfPlayer(mSelPlayer);
+		if (dPlayer < 0 && selRow + dPlayer >= 0)
+			setSelectedPlayer(playerAtRow(selRow + dPlayer));
+		else if (dPlayer > 0 && selRow + dPlayer < mData.getPlayerCount())
+			setSelectedPlayer(playerAtRow(selRow + dPlayer));
+
+		// Move hole if necessary
+		if (dHole < 0 && mSelHole + dHole >= 0)
+			setSelectedHole(mSelHole + dHole);
+		else if (dHole > 0 && mSelHole + dHole < mData.getHoleCount())
+			setSelectedHole(mSelHole + dHole);
+	}
+	
+    /* Getters */
+    public boolean getScoreRelative() {
+    	return mScoreRelative;
+    }
+    public boolean getSortByStanding() {
+    	return mLeaderboard != null;
+    }
+	public int getSelectedHole() {
+		return mSelHole;
+	}
+	public int getSelectedPlayer() {
+		return mSelPlayer;
+	}
+	
+    /**
+     * Set whether displayed scores are absolute or relative to par.
+     * @param scoreIsRelative If true, scores are displayed relative to par.
+     */
+    public void setScoreRelative(boolean scoreIsRelative) {
+    	if (mScoreRelative != scoreIsRelative) {
+    		mTiles.invalidateLayer(LAYER_SCORES);
+    		mTiles.invalidateLayer(LAYER_TOTALS);
+    	}
+    	mScoreRelative = scoreIsRelative;
+    	if (mLeaderboard != null)
+    		mLeaderboard.setOrder(getStandingOrder(), Leaderboard.TIEBREAK_BACK_NINE);
+    	invalidate();
+    }
+    
+    /**
+     * @return Order to sort by standing in: by the totals which are being shown.
+     */
+    private int getStandingOrder() {
+    	return mScoreRelative ? Leaderboard.ORDER_VS_PAR : Leaderboard.ORDER_STROKES;
+    }
+    
+    /**
+     * Set whether players are shown in order of standing, or in the order they were entered.
+     * @param sort If true, the leader is shown first.
+     */
+    public void setSortByStanding(boolean sort) {
+    	if (sort == getSortByStanding())
+    		return;
+    	
+    	if (sort) {
+    		mLeaderboard = new Leaderboard(mData, getStandingOrder(), Leaderboard.TIEBREAK_BACK_NINE);
+    		mLeaderboard.setOnRanksChangedListener(mRanksListener);
+    		mRanksListener.onRanksChanged(0, mLeaderboard.getCount() - 1);
+    	} else {
+    		mLeaderboard = null;
+    	}
+    	
+    	// Every row may have moved
+    	mTiles.invalidateLayer(LAYER_SCORES);
+    	mTiles.invalidateLayer(LAYER_NAMES);
+    	mTiles.invalidateLayer(LAYER_TOTALS);
+    	invalidate();
+    }
+
+    /**
+     * Handle a gesture (tap or long press).
+     * @param x X-coord of gesture.
+     * @param y Y-coord of gesture.
+     * @param isLong If true, gesture is a long-press; if false, a tap.
+     */
+    private void handlePress(int x, int y, boolean isLong) {
+    	
+		int hole = -1, player = -1;
+
+		// Translate by fixed region and padding
+		x -= getPaddingLeft() + mFixedLeft;
+		y -= getPaddingTop() + mFixedTop;
+		
+		if (x >= 0 && x < mScrollVisibleWidth)
+		{
+			hole = (x + getScrollX()) / mColWidthHole;
+			if (hole < mData.getHoleCount())
+				setSelectedHole(hole);
+			else
+				hole = -1;
+		}
+		if (y >= 0 && y < mScrollVisibleHeight)
+		{
+			int row = (y + getScrollY()) / mRowHeightPlayer;
+			if (row < mData.getPlayerCount()) {
+				player = playerAtRow(row);
+				setSelectedPlayer(player);
+			}
+		}
+		
+		if (x < 0 && player >= 0)
+		{
+			// In players list
+			if (isLong)
+			{
+				// Edit player name
+				if (mOnEditListener != null)
+					mOnEditListener.onEditPlayerName(player);
+			}
+			else if (mSelHole >= 0)
+			{
+				// Increment score for selected player and hole
+				mData.setScore(player, mSelHole, mData.getScore(player, mSelHole) + 1);
+				// TODO: better way to scroll selected hole into view?
+		    	setSelectedHole(mSelHole);
+			}
+		}
+		else if (y < 0 && hole >= 0 && isLong)
+		{
+			// In holes part of header; edit par for that hole
+			if (mOnEditListener != null)
+				mOnEditListener.onEditPar(hole);
+		}
+		else if (player >=0 && hole >= 0)
+		{
+			// Edit a score
+			if (mOnEditListener != null)
+				mOnEditListener.onEditScore(player, hole);
+		}
+		else if (isLong && x >= mScrollVisibleWidth && y < -mRowHeightPar)
+		{
+			// Long press on "Score", so toggle whether players are sorted by standing
+			setSortByStanding(!getSortByStanding());
+		}
+		else if (x > mFixedRight && y < mFixedTop)
+		{
+			// In score region, so toggle whether scores are relative
+			setScoreRelative(!mScoreRelative);
+		}
+    }
+
+    /**
+     * Public interface for listeners to be called when parts of the sheet are edited.
+     */
+    public interface OnEditListener {
+    	/**
+    	 * Called when par needs to be edited for a hole. 
+    	 * @param hole Hole index to edit.
+    	 */
+    	void onEditPar(int hole);
+    	
+    	/**
+    	 * Called when a player name needs to be edited.
+    	 * @param player Player index to edit.
+    	 */
+    	void onEditPlayerName(int player);
+    	
+    	/**
+    	 * Called when a score needs to be edited.
+    	 * @param player Player index to edit.
+    	 * @param hole Hole index to edit.
+    	 */
+    	void onEditScore(int player, int hole);
+    }
+    
+    public void SetOnEditListener(OnEditListener listener) {
+    	mOnEditListener = listener;
+    }
+}
+
+
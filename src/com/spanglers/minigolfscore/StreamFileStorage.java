@@ -0,0 +1,82 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Storage which keeps files in a directory and reads and writes them through buffered streams,
+ * as Context.openFileInput() and openFileOutput() do for the app's private files.  Unlike
+ * those, a replaced file is written to a temporary file, which is renamed over it when the
+ * stream is closed; see FileReplacer.
+ */
+class StreamFileStorage implements ScoreStorage {
+	static final int BUFFER_SIZE = 8192;	// Bytes buffered per stream
+
+	private final File mDirectory;		// Directory holding the files
+
+	StreamFileStorage(File directory) {
+		mDirectory = directory;
+	}
+
+	public InputStream openInput(String name) throws IOException {
+		return new BufferedInputStream(new FileInputStream(getFile(name)), BUFFER_SIZE);
+	}
+
+	public OutputStream openOutput(String name, boolean append) throws IOException {
+		final File file = getFile(name);
+		if (append)
+			return new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE);
+
+		final FileOutputStream fileOut = new FileOutputStream(FileReplacer.tempFileFor(file));
+		return new BufferedOutputStream(fileOut, BUFFER_SIZE) {
+			private boolean mClosed = false;
+
+			@Override
+			public void close() throws IOException {
+				if (mClosed)
+					return;
+				mClosed = true;
+				try {
+					flush();
+					fileOut.getChannel().force(true);
+				} finally {
+					fileOut.close();
+				}
+				FileReplacer.commit(file);
+			}
+		};
+	}
+
+	public long lastModified(String name) {
+		return getFile(name).lastModified();
+	}
+
+	public long length(String name) {
+		return getFile(name).length();
+	}
+
+	public File getFile(String name) {
+		return new File(mDirectory, name);
+	}
+}
@@ -0,0 +1,92 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * Memo of text widths measured with one Paint.  Widths depend on the paint's text settings as
+ * well as the string, so the memo is emptied whenever those settings change.  The least recently
+ * used widths are forgotten once there are more than a fixed number.
+ */
+class TextWidthCache {
+	private final Paint mPaint;		// Paint to measure with
+
+	// Text settings of the paint when the widths were measured
+	private float mTextSize;
+	private float mTextScaleX;
+	private float mTextSkewX;
+	private Typeface mTypeface;
+	private int mFlags;
+
+	private final LinkedHashMap<String, Float> mWidths;	// Measured widths, by string
+
+	/**
+	 * Constructor.
+	 *
+	 * @param paint
+	 *            Paint to measure with.
+	 * @param maxEntries
+	 *            Most widths to remember.
+	 */
+	TextWidthCache(Paint paint, final int maxEntries) {
+		mPaint = paint;
+		mWidths = new LinkedHashMap<String, Float>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Float> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @return Width of a string, as Paint.measureText() would return it.
+	 */
+	float measure(String s) {
+		if (paintChanged())
+			mWidths.clear();
+		Float width = mWidths.get(s);
+		if (width == null) {
+			width = mPaint.measureText(s);
+			mWidths.put(s, width);
+		}
+		return width;
+	}
+
+	/**
+	 * Check whether the paint's text settings have changed since the widths were measured, and
+	 * remember the new settings if so.
+	 */
+	private boolean paintChanged() {
+		Paint p = mPaint;
+		if (p.getTextSize() == mTextSize && p.getTextScaleX() == mTextScaleX
+				&& p.getTextSkewX() == mTextSkewX && p.getTypeface() == mTypeface
+				&& p.getFlags() == mFlags)
+			return false;
+		mTextSize = p.getTextSize();
+		mTextScaleX = p.getTextScaleX();
+		mTextSkewX = p.getTextSkewX();
+		mTypeface = p.getTypeface();
+		mFlags = p.getFlags();
+		return true;
+	}
+}
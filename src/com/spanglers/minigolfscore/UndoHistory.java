@@ -0,0 +1,312 @@
+/* Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spanglers.minigolfscore;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * Undo/redo history, kept in a fixed-size ring so memory use is bounded however long the round
+ * goes on.  Once the ring is full, each new edit pushes out the oldest one.
+ *
+ * Each edit is packed into a single long:
+ * <pre>
+ *   bits 60-63  type (ScoreData.UNDO_*)
+ *   bits 44-59  player
+ *   bits 28-43  hole
+ *   bits 14-27  old value
+ *   bits  0-13  new value
+ * </pre>
+ * For name edits, the old and new values are indices into a small pool of strings, so pushing
+ * an edit allocates nothing.
+ */
+class UndoHistory {
+	// Packed entry layout
+	private static final int SHIFT_TYPE = 60;
+	private static final int SHIFT_PLAYER = 44;
+	private static final int SHIFT_HOLE = 28;
+	private static final int SHIFT_OLD = 14;
+	private static final int MASK_SHORT = 0xFFFF;
+	private static final int MASK_VALUE = 0x3FFF;
+
+	// Ring of entries.  Entries [mStart, mStart + mUndoCount) can be undone; the mRedoCount
+	// entries after those have been undone and can be redone.
+	private final long[] mEntries;
+	private int mStart = 0;			// Index of oldest entry
+	private int mUndoCount = 0;		// Number of entries which can be undone
+	private int mRedoCount = 0;		// Number of entries which can be redone
+
+	// Pool of names used by entries.  Each name edit holds its own two slots, which are freed
+	// when the edit is forgotten, so the pool never needs more than two slots per entry.
+	private final String[] mNames;
+	private final int[] mFreeNames;	// Stack of unused name indices
+	private int mFreeNameCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity
+	 *            Maximum number of edits to remember.
+	 */
+	UndoHistory(int capacity) {
+		mEntries = new long[capacity];
+		mNames = new String[capacity * 2];
+		mFreeNames = new int[capacity * 2];
+		clear();
+	}
+
+	/**
+	 * @return A copy of the history.
+	 */
+	UndoHistory copy() {
+		UndoHistory h = new UndoHistory(mEntries.length);
+		System.arraycopy(mEntries, 0, h.mEntries, 0, mEntries.length);
+		System.arraycopy(mNames, 0, h.mNames, 0, mNames.length);
+		System.arraycopy(mFreeNames, 0, h.mFreeNames, 0, mFreeNames.length);
+		h.mFreeNameCount = mFreeNameCount;
+		h.mStart = mStart;
+		h.mUndoCount = mUndoCount;
+		h.mRedoCount = mRedoCount;
+		return h;
+	}
+
+	/**
+	 * Forget all edits.
+	 */
+	void clear() {
+		mStart = 0;
+		mUndoCount = 0;
+		mRedoCount = 0;
+		for (int i = 0; i < mNames.length; i++) {
+			mNames[i] = null;
+			mFreeNames[i] = mNames.length - 1 - i;
+		}
+		mFreeNameCount = mNames.length;
+	}
+
+	boolean canUndo() {
+		return mUndoCount > 0;
+	}
+
+	boolean canRedo() {
+		return mRedoCount > 0;
+	}
+
+	/**
+	 * Remember a score or par edit.  Any edits which had been undone can no longer be redone.
+	 */
+	void push(int type, int player, int hole, int oldValue, int newValue) {
+		discardRedo();
+		if (mUndoCount == mEntries.length) {
+			// Full; forget the oldest edit
+			release(mEntries[mStart]);
+			mStart = (mStart + 1) % mEntries.length;
+			mUndoCount--;
+		}
+		mEntries[(mStart + mUndoCount) % mEntries.length] = pack(type, player, hole, oldValue, newValue);
+		mUndoCount++;
+	}
+
+	/**
+	 * Remember a player name edit.
+	 */
+	void pushName(int player, String oldName, String newName) {
+		discardRedo();
+		if (mUndoCount == mEntries.length) {
+			// Release the oldest edit first, so its names can be reused
+			release(mEntries[mStart]);
+			mStart = (mStart + 1) % mEntries.length;
+			mUndoCount--;
+		}
+		push(ScoreData.UNDO_PLAYER_NAME, player, 0, addName(oldName), addName(newName));
+	}
+
+	/**
+	 * Step back one edit.
+	 *
+	 * @return The edit to undo, or 0 if there isn't one.
+	 */
+	long undo() {
+		if (mUndoCount == 0)
+			return 0;
+		mUndoCount--;
+		mRedoCount++;
+		return mEntries[(mStart + mUndoCount) % mEntries.length];
+	}
+
+	/**
+	 * Step forward one edit.
+	 *
+	 * @return The edit to redo, or 0 if there isn't one.
+	 */
+	long redo() {
+		if (mRedoCount == 0)
+			return 0;
+		long e = mEntries[(mStart + mUndoCount) % mEntries.length];
+		mUndoCount++;
+		mRedoCount--;
+		return e;
+	}
+
+	/**
+	 * @return The most recent edit which can be undone, or 0 if there isn't one.
+	 */
+	long peekUndo() {
+		if (mUndoCount == 0)
+			return 0;
+		return mEntries[(mStart + mUndoCount - 1) % mEntries.length];
+	}
+
+	/* Unpacking */
+	static int type(long entry) {
+		return (int) (entry >>> SHIFT_TYPE);
+	}
+	static int player(long entry) {
+		return (int) (entry >>> SHIFT_PLAYER) & MASK_SHORT;
+	}
+	static int hole(long entry) {
+		return (int) (entry >>> SHIFT_HOLE) & MASK_SHORT;
+	}
+	static int oldValue(long entry) {
+		return (int) (entry >>> SHIFT_OLD) & MASK_VALUE;
+	}
+	static int newValue(long entry) {
+		return (int) entry & MASK_VALUE;
+	}
+
+	/**
+	 * @return Name referenced by an old or new value of a name edit.
+	 */
+	String name(int index) {
+		return mNames[index];
+	}
+
+	private static long pack(int type, int player, int hole, int oldValue, int newValue) {
+		return ((long) type << SHIFT_TYPE) | ((long) (player & MASK_SHORT) << SHIFT_PLAYER)
+				| ((long) (hole & MASK_SHORT) << SHIFT_HOLE) | ((long) (oldValue & MASK_VALUE) << SHIFT_OLD)
+				| (newValue & MASK_VALUE);
+	}
+
+	private int addName(String name) {
+		int i = mFreeNames[--mFreeNameCount];
+		mNames[i] = name;
+		return i;
+	}
+
+	/**
+	 * Release the names referenced by an edit which is being forgotten.
+	 */
+	private void release(long entry) {
+		if (type(entry) != ScoreData.UNDO_PLAYER_NAME)
+			return;
+		releaseName(oldValue(entry));
+		releaseName(newValue(entry));
+	}
+
+	private void releaseName(int i) {
+		mNames[i] = null;
+		mFreeNames[mFreeNameCount++] = i;
+	}
+
+	private void discardRedo() {
+		for (int i = 0; i < mRedoCount; i++)
+			release(mEntries[(mStart + mUndoCount + i) % mEntries.length]);
+		mRedoCount = 0;
+	}
+
+	/**
+	 * @return Number of bytes write() will need.
+	 */
+	int serializedSize() throws UnsupportedEncodingException {
+		int size = 4;
+		for (int i = 0; i < mUndoCount + mRedoCount; i++) {
+			long e = mEntries[(mStart + i) % mEntries.length];
+			size += 5;
+			if (type(e) == ScoreData.UNDO_PLAYER_NAME)
+				size += 4 + mNames[oldValue(e)].getBytes("UTF-8").length
+						+ mNames[newValue(e)].getBytes("UTF-8").length;
+			else
+				size += 2;
+		}
+		return size;
+	}
+
+	/**
+	 * Write the history, oldest edit first.  Names are written out in full, so the pool doesn't
+	 * need saving.
+	 */
+	void write(ByteBuffer b) throws UnsupportedEncodingException {
+		b.putShort((short) mUndoCount);
+		b.putShort((short) mRedoCount);
+		for (int i = 0; i < mUndoCount + mRedoCount; i++) {
+			long e = mEntries[(mStart + i) % mEntries.length];
+			b.put((byte) type(e));
+			b.putShort((short) player(e));
+			b.putShort((short) hole(e));
+			if (type(e) == ScoreData.UNDO_PLAYER_NAME) {
+				putString(b, mNames[oldValue(e)]);
+				putString(b, mNames[newValue(e)]);
+			} else {
+				b.put((byte) oldValue(e));
+				b.put((byte) newValue(e));
+			}
+		}
+	}
+
+	/**
+	 * Read a history written by write(), replacing the current one.
+	 */
+	void read(DataInputStream s) throws IOException {
+		clear();
+		int undoCount = s.readUnsignedShort();
+		int redoCount = s.readUnsignedShort();
+		for (int i = 0; i < undoCount + redoCount; i++) {
+			int type = s.readUnsignedByte();
+			int player = s.readUnsignedShort();
+			int hole = s.readUnsignedShort();
+			if (type == ScoreData.UNDO_PLAYER_NAME) {
+				String oldName = readString(s);
+				pushName(player, oldName, readString(s));
+			} else if (type == ScoreData.UNDO_PAR || type == ScoreData.UNDO_SCORE) {
+				int oldValue = s.readUnsignedByte();
+				push(type, player, hole, oldValue, s.readUnsignedByte());
+			} else {
+				throw new IOException("Bad undo type");
+			}
+		}
+		// Step back over the edits which had been undone
+		for (int i = 0; i < redoCount && canUndo(); i++)
+			undo();
+	}
+
+	/**
+	 * Write a length-prefixed UTF-8 string.  Names are clamped to ScoreData.MAX_NAME_BYTES
+	 * before they reach the history, so the length fits.
+	 */
+	private static void putString(ByteBuffer b, String s) throws UnsupportedEncodingException {
+		byte[] utf8 = s.getBytes("UTF-8");
+		b.putShort((short) utf8.length);
+		b.put(utf8);
+	}
+
+	private static String readString(DataInputStream s) throws IOException {
+		byte[] b = new byte[s.readUnsignedShort()];
+		s.readFully(b);
+		return new String(b, "UTF-8");
+	}
+}